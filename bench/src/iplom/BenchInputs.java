@@ -0,0 +1,120 @@
+/**
+ * Class: BenchInputs
+ *
+ * Deterministic syslog inputs for the benchmarks, at a given size and partition-skew profile:
+ *   uniform - 50 templates, equally frequent
+ *   skewed  - 50 templates, one of them carries 90% of the lines
+ *   wide    - 2000 templates, equally frequent (many small partitions)
+ * Every 20th record is followed by a continuation line without time-stamp.
+ *
+ * Initially Created: 2026-10-16
+ *
+ */
+
+package iplom;
+
+import java.io.*;
+import java.util.*;
+
+final class BenchInputs {
+
+  static final String UNIFORM = "uniform";
+  static final String SKEWED = "skewed";
+  static final String WIDE = "wide";
+
+  private static final String[] MONTHS = { "Jan", "Feb", "Mar", "Apr", "May", "Jun",
+                                           "Jul", "Aug", "Sep", "Oct", "Nov", "Dec" };
+  private static final String[] PROGRAMS = { "sshd", "kernel", "cron", "postfix", "app", "dhclient", "systemd" };
+  private static final String[] WORDS = { "session", "opened", "closed", "for", "user", "from", "port",
+                                          "connection", "accepted", "failed", "link", "up", "down", "request",
+                                          "status", "took", "ms", "queue", "message", "delivered", "retry",
+                                          "timeout", "error", "warning", "started", "stopped", "reload" };
+
+  private BenchInputs() { }
+
+
+  /**
+   * Generate the lines of an input
+   * @param
+   * int records: number of log records
+   * String profile: UNIFORM, SKEWED or WIDE
+   * long seed: same seed, same lines
+   */
+  static List<String> generate(int records, String profile, long seed) {
+
+    Random random = new Random(seed);
+    int templateCount = profile.equals(WIDE) ? 2000 : 50;
+    String[][] templates = new String[templateCount][];
+    for (int t = 0; t < templateCount; t++) {
+      templates[t] = template(random);
+    }
+
+    List<String> lines = new ArrayList<>(records + records / 20);
+    StringBuilder builder = new StringBuilder(128);
+    for (int r = 0; r < records; r++) {
+      int t = (profile.equals(SKEWED) && random.nextInt(10) != 0) ? 0 : random.nextInt(templateCount);
+      builder.setLength(0);
+      builder.append(MONTHS[random.nextInt(12)]).append(' ');
+      int day = 1 + random.nextInt(28);
+      builder.append(day < 10 ? " " : "").append(day).append(' ');
+      builder.append(twoDigits(random.nextInt(24))).append(':')
+             .append(twoDigits(random.nextInt(60))).append(':')
+             .append(twoDigits(random.nextInt(60))).append(" host").append(1 + random.nextInt(4));
+      for (String token: templates[t]) {
+        builder.append(' ').append(token != null ? token : variable(random));
+      }
+      lines.add(builder.toString());
+      if (r % 20 == 19) {
+        lines.add("  continuation " + random.nextInt(1000));
+      }
+    }
+    return lines;
+
+  }
+
+
+  /**
+   * Write lines to a temporary file, deleted on exit
+   */
+  static File write(List<String> lines) throws IOException {
+    File file = File.createTempFile("iplom-bench", ".log");
+    file.deleteOnExit();
+    try (BufferedWriter writer = new BufferedWriter(new FileWriter(file))) {
+      for (String line: lines) {
+        writer.write(line);
+        writer.newLine();
+      }
+    }
+    return file;
+  }
+
+
+  /**
+   * A program name, then 3 to 9 tokens of which about a third are variables (null)
+   */
+  private static String[] template(Random random) {
+    int length = 4 + random.nextInt(7);
+    String[] template = new String[length];
+    template[0] = PROGRAMS[random.nextInt(PROGRAMS.length)] + ":";
+    for (int i = 1; i < length; i++) {
+      template[i] = (random.nextInt(3) == 0) ? null : WORDS[random.nextInt(WORDS.length)];
+    }
+    return template;
+  }
+
+  private static String variable(Random random) {
+    switch (random.nextInt(3)) {
+      case 0:
+        return Integer.toString(random.nextInt(100000));
+      case 1:
+        return "user" + random.nextInt(500);
+      default:
+        return "10.0." + random.nextInt(256) + "." + random.nextInt(256);
+    }
+  }
+
+  private static String twoDigits(int value) {
+    return (value < 10 ? "0" : "") + value;
+  }
+
+}
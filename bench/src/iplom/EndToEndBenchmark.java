@@ -0,0 +1,364 @@
+/**
+ * Class: EndToEndBenchmark
+ *
+ * End-to-end run of IPLoM on synthetic logs (see SyntheticLogGenerator), which reports
+ * the throughput, the peak heap and the clustering accuracy at several scales, so a
+ * performance change can not silently change the results.
+ *
+ * For every size, the log and its ground truth are generated into temporary files
+ * (not timed), then dicoverLogTemplate runs on the log, its line assignments written by
+ * an AssignmentFileSink. The heap only grows between two collections, so the peak heap
+ * is the largest heap usage right before a collection (from the GC notifications) or at
+ * the end of the run.
+ *
+ * The accuracy is the grouping accuracy of the miner's own assignments: a line is
+ * correctly grouped if its mined template groups exactly the lines of its ground-truth
+ * template. Lines without assignment are counted as wrong.
+ *
+ * Usage: EndToEndBenchmark [--records 1000000,10000000] [--seed 42] [--templates 100]
+ *                          [--zipf 1.0] [--continuation 0.05] [--cardinality 1000]
+ *                          [--memory-budget bytes] [--mapped] [--parallel] [--dir path]
+ *
+ * Initially Created: 2026-10-16
+ *
+ */
+
+package iplom;
+
+import java.io.*;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+public class EndToEndBenchmark {
+
+  private final PrintStream report;
+  private final SyntheticLogGenerator generator;
+  private final long memoryBudget;
+  private final boolean mappedIngestion;
+  private final boolean parallelExecution;
+  private final File directory;
+
+
+  EndToEndBenchmark(PrintStream report, SyntheticLogGenerator generator, long memoryBudget,
+                    boolean mappedIngestion, boolean parallelExecution, File directory) {
+    this.report = report;
+    this.generator = generator;
+    this.memoryBudget = memoryBudget;
+    this.mappedIngestion = mappedIngestion;
+    this.parallelExecution = parallelExecution;
+    this.directory = directory;
+  }
+
+
+  /**
+   * Generate, mine and score one size, then print its line of the report
+   */
+  void run(long records) throws IOException {
+
+    File logFile = File.createTempFile("iplom-e2e", ".log", this.directory);
+    File truthFile = File.createTempFile("iplom-e2e", ".truth", this.directory);
+    File assignmentFile = File.createTempFile("iplom-e2e", ".assignments", this.directory);
+    try {
+      long lines = this.generator.generate(logFile, truthFile, records);
+
+      IPLoM miner = new IPLoM(logFile.getPath());
+      miner.setMemoryBudget(this.memoryBudget);
+      miner.setMappedIngestion(this.mappedIngestion);
+      miner.setParallelExecution(this.parallelExecution);
+      AssignmentFileSink assignments = new AssignmentFileSink(assignmentFile, AssignmentFileSink.Format.BINARY);
+      miner.setResultSink(assignments);
+
+      System.gc();
+      HeapPeak heapPeak = new HeapPeak();
+      long start = System.nanoTime();
+      List<LogTemplate> templates = miner.dicoverLogTemplate();
+      assignments.close();
+      long elapsed = System.nanoTime() - start;
+      long peakHeap = heapPeak.stop();
+
+      Accuracy accuracy = score(assignmentFile, truthFile, lines);
+
+      this.report.printf("%12d %12d %8d %8d %10.2f s %12.0f lines/s %10.1f MB %10.4f %10d%n",
+                         records, lines, this.generator.getTemplates().size(), templates.size(),
+                         elapsed / 1e9, lines * 1e9 / elapsed, peakHeap / 1048576.0,
+                         accuracy.groupingAccuracy(), accuracy.unmatched);
+    } finally {
+      if (!logFile.delete()) {
+        logFile.deleteOnExit();
+      }
+      if (!truthFile.delete()) {
+        truthFile.deleteOnExit();
+      }
+      if (!assignmentFile.delete()) {
+        assignmentFile.deleteOnExit();
+      }
+    }
+
+  }
+
+
+  /**
+   * Score the assignments of the miner (see AssignmentFileSink, BINARY) against the
+   * ground truth of every line
+   * The assignments follow the partitions, they are first put in line order.
+   */
+  private static Accuracy score(File assignmentFile, File truthFile, long lines) throws IOException {
+
+    if (lines >= Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Too many lines to score: " + lines);
+    }
+    int[] mined = new int[(int) lines + 1];
+    Arrays.fill(mined, TemplateIndex.NO_MATCH);
+    try (DataInputStream input = new DataInputStream(
+            new BufferedInputStream(new FileInputStream(assignmentFile), 1 << 16))) {
+      byte[] magic = new byte[AssignmentFileSink.BINARY_MAGIC.length];
+      input.readFully(magic);
+      if (!Arrays.equals(magic, AssignmentFileSink.BINARY_MAGIC) || input.readInt() != AssignmentFileSink.BINARY_VERSION) {
+        throw new IOException("Not an assignment file: " + assignmentFile);
+      }
+      long assignments = (assignmentFile.length() - magic.length - 4) / 12;
+      for (long a = 0; a < assignments; a++) {
+        long lineNumber = input.readLong();
+        int templateId = input.readInt();
+        if (lineNumber >= 1 && lineNumber <= lines) {
+          mined[(int) lineNumber] = templateId;
+        }
+      }
+    }
+
+    Accuracy accuracy = new Accuracy();
+    try (BufferedReader truth = new BufferedReader(new FileReader(truthFile), 1 << 16)) {
+      for (int lineNumber = 1; lineNumber <= lines; lineNumber++) {
+        accuracy.add(mined[lineNumber], Integer.parseInt(truth.readLine()));
+      }
+    }
+    return accuracy;
+
+  }
+
+
+  /**
+   * Peak heap usage from now on, read from the GC notifications: the heap usage right
+   * before each collection, summed over the heap pools; stop() adds the usage at the end
+   */
+  private static final class HeapPeak implements NotificationListener {
+
+    private final Set<String> heapPools = new HashSet<>();
+    private final Map<String, Long> startCounts = new HashMap<>();
+    private final AtomicLong peak = new AtomicLong();
+    private final AtomicLong notifications = new AtomicLong();
+
+    HeapPeak() {
+      for (MemoryPoolMXBean pool: ManagementFactory.getMemoryPoolMXBeans()) {
+        if (pool.getType() == MemoryType.HEAP) {
+          this.heapPools.add(pool.getName());
+        }
+      }
+      for (GarbageCollectorMXBean collector: ManagementFactory.getGarbageCollectorMXBeans()) {
+        this.startCounts.put(collector.getName(), collector.getCollectionCount());
+        ((NotificationEmitter) collector).addNotificationListener(this, null, null);
+      }
+      update(ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed());
+    }
+
+    /**
+     * Collections numbered up to the start count ran before the measure, e.g. System.gc()
+     */
+    @Override
+    public void handleNotification(Notification notification, Object handback) {
+      if (!notification.getType().equals(GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION)) {
+        return;
+      }
+      GarbageCollectionNotificationInfo info =
+          GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+      Long startCount = this.startCounts.get(info.getGcName());
+      if (startCount != null && info.getGcInfo().getId() <= startCount) {
+        return;
+      }
+      long used = 0;
+      for (Map.Entry<String, MemoryUsage> pool: info.getGcInfo().getMemoryUsageBeforeGc().entrySet()) {
+        if (this.heapPools.contains(pool.getKey())) {
+          used += pool.getValue().getUsed();
+        }
+      }
+      update(used);
+      this.notifications.incrementAndGet();
+    }
+
+    /**
+     * Wait (up to a second) for the notifications of the collections run so far, which
+     * are sent asynchronously, then stop listening
+     * @return the peak heap usage, bytes
+     */
+    long stop() {
+      update(ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed());
+      long collections = 0;
+      for (GarbageCollectorMXBean collector: ManagementFactory.getGarbageCollectorMXBeans()) {
+        Long startCount = this.startCounts.get(collector.getName());
+        collections += collector.getCollectionCount() - ((startCount == null) ? 0 : startCount);
+      }
+      long deadline = System.nanoTime() + 1000000000L;
+      while (this.notifications.get() < collections && System.nanoTime() < deadline) {
+        Thread.yield();
+      }
+      for (GarbageCollectorMXBean collector: ManagementFactory.getGarbageCollectorMXBeans()) {
+        try {
+          ((NotificationEmitter) collector).removeNotificationListener(this);
+        } catch (ListenerNotFoundException e) {
+          // not registered, nothing to remove
+        }
+      }
+      return this.peak.get();
+    }
+
+    private void update(long used) {
+      long current = this.peak.get();
+      while (used > current && !this.peak.compareAndSet(current, used)) {
+        current = this.peak.get();
+      }
+    }
+
+  }
+
+
+  /**
+   * Counts of the (mined, ground-truth) template pairs
+   */
+  private static final class Accuracy {
+
+    private final Map<Long, long[]> pairCounts = new HashMap<>();
+    private final Map<Integer, long[]> minedCounts = new HashMap<>();
+    private final Map<Integer, long[]> truthCounts = new HashMap<>();
+    private long lines;
+    private long unmatched;
+
+    void add(int mined, int truth) {
+      this.lines++;
+      if (mined == TemplateIndex.NO_MATCH) {
+        this.unmatched++;
+        return;
+      }
+      increment(this.pairCounts, ((long) mined << 32) | truth);
+      increment(this.minedCounts, mined);
+      increment(this.truthCounts, truth);
+    }
+
+    /**
+     * Share of the lines whose mined template and ground-truth template hold the same lines
+     */
+    double groupingAccuracy() {
+      long correct = 0;
+      for (Map.Entry<Long, long[]> entry: this.pairCounts.entrySet()) {
+        long count = entry.getValue()[0];
+        int mined = (int)(entry.getKey() >>> 32);
+        int truth = (int)(long) entry.getKey();
+        if (count == this.minedCounts.get(mined)[0] && count == this.truthCounts.get(truth)[0]) {
+          correct += count;
+        }
+      }
+      return (this.lines == 0) ? 1.0 : (double) correct / this.lines;
+    }
+
+    private static <K> void increment(Map<K, long[]> counts, K key) {
+      long[] count = counts.get(key);
+      if (count == null) {
+        count = new long[1];
+        counts.put(key, count);
+      }
+      count[0]++;
+    }
+
+  }
+
+
+  /**
+   * @param args
+   */
+  public static void main(String[] args) throws IOException {
+
+    List<Long> sizes = Arrays.asList(1000000L, 10000000L, 100000000L);
+    long seed = 42L;
+    int templateCount = 100;
+    double zipfExponent = 1.0;
+    double continuationRate = 0.05;
+    int parameterCardinality = 1000;
+    long memoryBudget = 0;
+    boolean mappedIngestion = false;
+    boolean parallelExecution = false;
+    File directory = null;
+
+    for (int i = 0; i < args.length; i++) {
+      if (args[i].equals("--mapped")) {
+        mappedIngestion = true;
+        continue;
+      } else if (args[i].equals("--parallel")) {
+        parallelExecution = true;
+        continue;
+      } else if (i + 1 == args.length) {
+        throw new IllegalArgumentException("Missing value of option: " + args[i]);
+      }
+      String value = args[++i];
+      switch (args[i - 1]) {
+        case "--records":
+          sizes = new ArrayList<>();
+          for (String size: value.split(",")) {
+            sizes.add(Long.parseLong(size.trim()));
+          }
+          break;
+        case "--seed":
+          seed = Long.parseLong(value);
+          break;
+        case "--templates":
+          templateCount = Integer.parseInt(value);
+          break;
+        case "--zipf":
+          zipfExponent = Double.parseDouble(value);
+          break;
+        case "--continuation":
+          continuationRate = Double.parseDouble(value);
+          break;
+        case "--cardinality":
+          parameterCardinality = Integer.parseInt(value);
+          break;
+        case "--memory-budget":
+          memoryBudget = Long.parseLong(value);
+          break;
+        case "--dir":
+          directory = new File(value);
+          break;
+        default:
+          throw new IllegalArgumentException("Unknown option: " + args[i - 1]);
+      }
+    }
+
+    SyntheticLogGenerator generator = new SyntheticLogGenerator(seed);
+    generator.setTemplateCount(templateCount);
+    generator.setZipfExponent(zipfExponent);
+    generator.setContinuationRate(continuationRate);
+    generator.setParameterCardinality(parameterCardinality);
+
+    PrintStream report = System.out;
+    EndToEndBenchmark benchmark = new EndToEndBenchmark(report, generator, memoryBudget,
+                                                        mappedIngestion, parallelExecution, directory);
+    report.printf("%12s %12s %8s %8s %12s %20s %13s %10s %10s%n",
+                  "records", "lines", "truth", "mined", "time", "throughput", "peak heap", "accuracy", "unmatched");
+    for (long records: sizes) {
+      benchmark.run(records);
+    }
+
+  }
+
+}
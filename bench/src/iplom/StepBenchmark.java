@@ -0,0 +1,207 @@
+/**
+ * Class: StepBenchmark
+ *
+ * JMH benchmarks of every IPLoM step and of the helpers on the hot path, at several
+ * input sizes and partition-skew profiles (see BenchInputs).
+ *
+ * The benchmarks run in throughput mode. One operation processes the whole input, and
+ * every benchmark also counts the lines it processed (LineCounter, a JMH auxiliary
+ * counter), so the ":lines" rows of the report are in lines/s. @OperationsPerInvocation
+ * can not be used, it takes a constant and the #lines is the size parameter. main runs
+ * the benchmarks with the GC profiler (-prof gc): gc.alloc.rate.norm is the bytes
+ * allocated by one pass, divide it by size for the bytes per line.
+ *
+ * Every iteration starts with a fresh miner, so its token dictionary and metrics are not
+ * carried over, and computes the inputs of each step from the previous step. Step 2
+ * interns the tokens: its benchmark encodes into a miner created for each invocation,
+ * whose dictionary is empty, so every pass pays for the interning.
+ *
+ * The miners keep their default result sink (NoOpResultSink), nothing is printed.
+ *
+ * Usage: StepBenchmark [JMH options], e.g. -p size=10000 -p profile=skewed -wi 3 -i 5
+ *        or org.openjdk.jmh.Main StepBenchmark -prof gc
+ *
+ * Initially Created: 2026-10-16
+ *
+ */
+
+package iplom;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class StepBenchmark {
+
+  /**
+   * Number of log records of the input
+   */
+  @Param({"10000", "100000"})
+  public int size;
+
+  /**
+   * Partition-skew profile of the input
+   */
+  @Param({BenchInputs.UNIFORM, BenchInputs.SKEWED, BenchInputs.WIDE})
+  public String profile;
+
+  private List<String> lines;
+  private File file;
+  private IPLoM miner;
+
+  /**
+   * Miner with an empty dictionary, for the Step 2 benchmark
+   */
+  private IPLoM coldMiner;
+
+  /**
+   * Inputs of each step, computed once per iteration from the previous step
+   */
+  private Map<Integer, ArrayList<String>> partitionsBySize;
+  private Map<PartitionKey, ColumnarPartition> partitionByPosition;
+  private Map<PartitionKey, ColumnarPartition> partitionByBijection;
+
+
+  /**
+   * Lines processed by the benchmarks of an iteration, reported per second
+   */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  public static class LineCounter {
+
+    public long lines;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+      this.lines = 0;
+    }
+
+  }
+
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    this.lines = BenchInputs.generate(this.size, this.profile, 42L);
+    this.file = BenchInputs.write(this.lines);
+  }
+
+  @Setup(Level.Iteration)
+  public void setUpIteration() {
+    this.miner = new IPLoM(this.file.getPath());
+    this.partitionsBySize = this.miner.partitionByTokenSize();
+    this.partitionByPosition = this.miner.partitionByTokenPosition(this.partitionsBySize);
+    this.partitionByBijection = this.miner.partitionByTokenBijection(this.partitionByPosition);
+  }
+
+  /**
+   * A miner with an empty dictionary takes a few objects, far below the time of a pass
+   */
+  @Setup(Level.Invocation)
+  public void setUpInvocation() {
+    this.coldMiner = new IPLoM(this.file.getPath());
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    for (File written: new File[] { this.file, LineOffsetIndex.indexFileOf(this.file) }) {
+      if (!written.delete()) {
+        written.deleteOnExit();
+      }
+    }
+  }
+
+
+  @Benchmark
+  public long tokenSizeOfString(LineCounter counter) {
+    DelimiterTokenizer tokenizer = this.miner.getTokenizer();
+    long tokens = 0;
+    for (String line: this.lines) {
+      tokens += tokenizer.countTokens(line);
+    }
+    counter.lines += this.lines.size();
+    return tokens;
+  }
+
+  @Benchmark
+  public long isRecordHeader(LineCounter counter) {
+    long headers = 0;
+    for (String line: this.lines) {
+      headers += this.miner.isRecordHeader(line) ? 1 : 0;
+    }
+    counter.lines += this.lines.size();
+    return headers;
+  }
+
+  @Benchmark
+  public Map<Integer, ArrayList<String>> partitionByTokenSize(LineCounter counter) {
+    counter.lines += this.lines.size();
+    return this.miner.partitionByTokenSize();
+  }
+
+  @Benchmark
+  public Map<PartitionKey, ColumnarPartition> partitionByTokenPosition(LineCounter counter) {
+    counter.lines += this.lines.size();
+    return this.coldMiner.partitionByTokenPosition(this.partitionsBySize);
+  }
+
+  @Benchmark
+  public Map<PartitionKey, ColumnarPartition> partitionByTokenBijection(LineCounter counter) {
+    counter.lines += this.lines.size();
+    return this.miner.partitionByTokenBijection(this.partitionByPosition);
+  }
+
+  @Benchmark
+  public List<LogTemplate> dicoverLogTemplate(LineCounter counter) {
+    counter.lines += this.lines.size();
+    return this.miner.dicoverLogTemplate(this.partitionByBijection);
+  }
+
+  /**
+   * (token, position) pairs, the way the partition keys used to be built
+   */
+  @Benchmark
+  public Map<Pair<Integer, Integer>, Integer> pairHashCode(LineCounter counter) {
+    Map<Pair<Integer, Integer>, Integer> counts = new HashMap<>();
+    for (int i = 0; i < this.lines.size(); i++) {
+      Pair<Integer, Integer> pair = new Pair<>(i % 4096, i % 13);
+      Integer count = counts.get(pair);
+      counts.put(pair, (count == null) ? 1 : count + 1);
+    }
+    counter.lines += this.lines.size();
+    return counts;
+  }
+
+  /**
+   * One line read per operation
+   */
+  @Benchmark
+  public void readSelectedLine(LineCounter counter) throws IOException {
+    ReadSelectedLine.readAppointedLineNumber(this.file, this.lines.size() / 2);
+    counter.lines ++;
+  }
+
+
+  /**
+   * Run the benchmarks of this class with the GC profiler, the arguments are JMH options
+   */
+  public static void main(String[] args) throws Exception {
+    new Runner(new OptionsBuilder()
+        .parent(new CommandLineOptions(args))
+        .include(StepBenchmark.class.getName())
+        .addProfiler(GCProfiler.class)
+        .build()).run();
+  }
+
+}
@@ -0,0 +1,405 @@
+/**
+ * Class: SyntheticLogGenerator
+ *
+ * Deterministic generator of syslog-formatted logs with known templates, for scale and
+ * accuracy testing without production logs.
+ *
+ * A set of random templates is drawn first: a program name followed by words and
+ * parameters, with a token count spread over [minTokenCount, maxTokenCount]. Records
+ * then pick their template with a Zipf-skewed frequency (rank r has weight 1 / r^s) and
+ * fill each parameter with one of parameterCardinality values. The records of some
+ * templates are followed by a continuation line without time-stamp (a stack frame),
+ * which IPLoM merges into the record.
+ *
+ * Along with the log, the ground truth is written: the template ID of every log line
+ * (a continuation line carries the ID of its record). The same seed and settings give
+ * the same logs and ground truth.
+ *
+ * Usage: SyntheticLogGenerator logFile truthFile records [seed]
+ *
+ * Initially Created: 2026-10-16
+ *
+ */
+
+package iplom;
+
+import java.io.*;
+import java.util.*;
+
+public class SyntheticLogGenerator {
+
+  private static final String[] MONTHS = { "Jan", "Feb", "Mar", "Apr", "May", "Jun",
+                                           "Jul", "Aug", "Sep", "Oct", "Nov", "Dec" };
+  private static final int[] DAYS_IN_MONTH = { 31, 28, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31 };
+  private static final String[] PROGRAMS = { "sshd", "kernel", "cron", "postfix", "app", "dhclient",
+                                             "systemd", "nginx", "dockerd", "ntpd" };
+  private static final String[] WORDS = { "session", "opened", "closed", "for", "user", "from", "port",
+                                          "connection", "accepted", "failed", "link", "up", "down", "request",
+                                          "status", "took", "ms", "queue", "message", "delivered", "retry",
+                                          "timeout", "error", "warning", "started", "stopped", "reload",
+                                          "client", "server", "disk", "usage", "above", "below", "limit",
+                                          "job", "completed", "scheduled", "cache", "miss", "hit", "lease",
+                                          "renewed", "expired", "volume", "mounted", "unmounted", "packet",
+                                          "dropped", "route", "added", "removed", "worker", "spawned", "exited",
+                                          "config", "loaded", "invalid", "token", "refreshed", "denied" };
+
+  /**
+   * Template tokens, null for a parameter
+   */
+  private final List<String[]> templates = new ArrayList<>();
+
+  /**
+   * Continuation line of every template, null if its records are single lines
+   */
+  private final List<String> continuations = new ArrayList<>();
+
+  /**
+   * Kind of value of every parameter, see appendParameter()
+   */
+  private final List<int[]> parameterKinds = new ArrayList<>();
+
+  /**
+   * Cumulative Zipf distribution of the templates
+   */
+  private double[] cumulativeWeights;
+
+  /**
+   * Number of records generated from each template
+   */
+  private long[] supports;
+
+  private final long seed;
+
+  /**
+   * Define the number of templates
+   * Default: 100
+   */
+  private int templateCount = 100;
+
+  /**
+   * Define the range of the #tokens of a template message, host name included
+   * Default: 4 to 14
+   */
+  private int minTokenCount = 4;
+  private int maxTokenCount = 14;
+
+  /**
+   * Define the share of the template tokens (program name excluded) which are parameters
+   * Default: 0.3
+   */
+  private double parameterRate = 0.3;
+
+  /**
+   * Define the number of distinct values of a parameter
+   * Default: 1000
+   */
+  private int parameterCardinality = 1000;
+
+  /**
+   * Define the exponent s of the Zipf distribution of the templates, 0 for uniform
+   * Default: 1.0
+   */
+  private double zipfExponent = 1.0;
+
+  /**
+   * Define the share of the templates whose records are followed by a continuation line
+   * Default: 0.05
+   */
+  private double continuationRate = 0.05;
+
+  /**
+   * Define the number of host names, the host name is a parameter if there are several
+   * Default: 1
+   */
+  private int hostCount = 1;
+
+
+  /**
+   * @param
+   * long seed: same seed and settings, same logs
+   */
+  public SyntheticLogGenerator(long seed) {
+    this.seed = seed;
+  }
+
+
+  public void setTemplateCount(int templateCount) {
+    this.templateCount = templateCount;
+    this.templates.clear();
+  }
+
+  public void setTokenCountRange(int minTokenCount, int maxTokenCount) {
+    if (minTokenCount < 2 || maxTokenCount < minTokenCount) {
+      throw new IllegalArgumentException("Invalid token count range: " + minTokenCount + " to " + maxTokenCount);
+    }
+    this.minTokenCount = minTokenCount;
+    this.maxTokenCount = maxTokenCount;
+    this.templates.clear();
+  }
+
+  public void setParameterRate(double parameterRate) {
+    this.parameterRate = parameterRate;
+    this.templates.clear();
+  }
+
+  public void setParameterCardinality(int parameterCardinality) {
+    this.parameterCardinality = Math.max(1, parameterCardinality);
+  }
+
+  public void setZipfExponent(double zipfExponent) {
+    this.zipfExponent = zipfExponent;
+    this.templates.clear();
+  }
+
+  public void setContinuationRate(double continuationRate) {
+    this.continuationRate = continuationRate;
+    this.templates.clear();
+  }
+
+  public void setHostCount(int hostCount) {
+    this.hostCount = Math.max(1, hostCount);
+    this.templates.clear();
+  }
+
+
+  /**
+   * Get the ground-truth templates, indexed by template ID
+   * The tokens are the blank-separated words of the records, continuation line included;
+   * the support of a template is its number of records in the last generate() call.
+   */
+  public List<LogTemplate> getTemplates() {
+    drawTemplates();
+    List<LogTemplate> tempTemplates = new ArrayList<>(this.templates.size());
+    for (int t = 0; t < this.templates.size(); t++) {
+      List<String> tokens = new ArrayList<>(Arrays.asList(this.templates.get(t)));
+      if (this.continuations.get(t) != null) {
+        tokens.addAll(Arrays.asList(this.continuations.get(t).trim().split(" ")));
+      }
+      tempTemplates.add(new LogTemplate(tokens.toArray(new String[tokens.size()]),
+                                        (int)Math.min(this.supports[t], Integer.MAX_VALUE)));
+    }
+    return tempTemplates;
+  }
+
+
+  /**
+   * Generate log records into files
+   * @param
+   * File logFile: the log lines
+   * File truthFile: the template ID of every log line
+   * long records: number of records, continuation lines not counted
+   * @return the number of log lines
+   */
+  public long generate(File logFile, File truthFile, long records) throws IOException {
+    try (Writer log = new BufferedWriter(new FileWriter(logFile), 1 << 16);
+         Writer truth = new BufferedWriter(new FileWriter(truthFile), 1 << 16)) {
+      return generate(log, truth, records);
+    }
+  }
+
+
+  /**
+   * Generate log records
+   * @param
+   * Writer log: receives the log lines
+   * Writer truth: receives the template ID of every log line, may be null
+   * long records: number of records, continuation lines not counted
+   * @return the number of log lines
+   */
+  public long generate(Writer log, Writer truth, long records) throws IOException {
+
+    drawTemplates();
+    Random random = new Random(this.seed + 1);
+    Arrays.fill(this.supports, 0);
+
+    /*
+     * Time-stamps go forward from Jan 1 00:00:00, without going through a Calendar
+     */
+    int month = 0;
+    int day = 1;
+    int secondOfDay = 0;
+
+    StringBuilder builder = new StringBuilder(256);
+    long lines = 0;
+    for (long r = 0; r < records; r++) {
+      int t = pickTemplate(random);
+      this.supports[t]++;
+      String[] template = this.templates.get(t);
+      int[] kinds = this.parameterKinds.get(t);
+
+      secondOfDay += random.nextInt(3);
+      if (secondOfDay >= 86400) {
+        secondOfDay -= 86400;
+        if (++day > DAYS_IN_MONTH[month]) {
+          day = 1;
+          month = (month + 1) % 12;
+        }
+      }
+
+      builder.setLength(0);
+      builder.append(MONTHS[month]).append(' ');
+      builder.append(day < 10 ? " " : "").append(day).append(' ');
+      appendTwoDigits(builder, secondOfDay / 3600).append(':');
+      appendTwoDigits(builder, secondOfDay / 60 % 60).append(':');
+      appendTwoDigits(builder, secondOfDay % 60);
+      for (int i = 0; i < template.length; i++) {
+        builder.append(' ');
+        if (template[i] != null) {
+          builder.append(template[i]);
+        } else if (i == 0) {
+          builder.append("host").append(random.nextInt(this.hostCount));
+        } else {
+          appendParameter(builder, kinds[i], random.nextInt(this.parameterCardinality));
+        }
+      }
+      builder.append('\n');
+      log.append(builder);
+      writeTruth(truth, t);
+      lines++;
+
+      String continuation = this.continuations.get(t);
+      if (continuation != null) {
+        log.append(continuation).append('\n');
+        writeTruth(truth, t);
+        lines++;
+      }
+    }
+    return lines;
+
+  }
+
+
+  /**
+   * Draw the templates and their Zipf distribution, once per settings
+   * Two templates of the same #tokens always differ in a position where both are constant,
+   * so the ground truth is unambiguous.
+   */
+  private void drawTemplates() {
+
+    if (!this.templates.isEmpty()) {
+      return;
+    }
+
+    Random random = new Random(this.seed);
+    this.parameterKinds.clear();
+    this.continuations.clear();
+    for (int t = 0; t < this.templateCount; t++) {
+      String[] template = null;
+      int[] kinds = null;
+      for (int attempt = 0; template == null; attempt++) {
+        if (attempt == 1000) {
+          throw new IllegalArgumentException("Can not draw " + this.templateCount +
+                                             " distinct templates of " + this.minTokenCount + " to " + this.maxTokenCount + " tokens");
+        }
+        int tokenCount = this.minTokenCount + random.nextInt(this.maxTokenCount - this.minTokenCount + 1);
+        template = new String[tokenCount];
+        kinds = new int[tokenCount];
+        template[0] = (this.hostCount == 1) ? "host0" : null;
+        template[1] = PROGRAMS[random.nextInt(PROGRAMS.length)] + ":";
+        for (int i = 2; i < tokenCount; i++) {
+          if (random.nextDouble() < this.parameterRate) {
+            kinds[i] = random.nextInt(4);
+          } else {
+            template[i] = WORDS[random.nextInt(WORDS.length)];
+          }
+        }
+        for (String[] other: this.templates) {
+          if (overlaps(template, other)) {
+            template = null;
+            break;
+          }
+        }
+      }
+      this.templates.add(template);
+      this.parameterKinds.add(kinds);
+      String program = template[1].substring(0, template[1].length() - 1);
+      int frameLine = random.nextInt(500);
+      this.continuations.add((random.nextDouble() < this.continuationRate) ?
+                             "    at " + program + ".Worker.run(Worker.java:" + frameLine + ")" : null);
+    }
+
+    this.cumulativeWeights = new double[this.templateCount];
+    double total = 0;
+    for (int t = 0; t < this.templateCount; t++) {
+      total += 1.0 / Math.pow(t + 1, this.zipfExponent);
+      this.cumulativeWeights[t] = total;
+    }
+    for (int t = 0; t < this.templateCount; t++) {
+      this.cumulativeWeights[t] /= total;
+    }
+    this.supports = new long[this.templateCount];
+
+  }
+
+
+  /**
+   * Check whether one record could come from either of two templates
+   */
+  private static boolean overlaps(String[] template, String[] other) {
+    if (template.length != other.length) {
+      return false;
+    }
+    for (int i = 0; i < template.length; i++) {
+      if (template[i] != null && other[i] != null && !template[i].equals(other[i])) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+
+  private int pickTemplate(Random random) {
+    int t = Arrays.binarySearch(this.cumulativeWeights, random.nextDouble());
+    return Math.min((t >= 0) ? t : -t - 1, this.templateCount - 1);
+  }
+
+
+  /**
+   * Parameter values never collide with the template words
+   */
+  private static void appendParameter(StringBuilder builder, int kind, int value) {
+    switch (kind) {
+      case 0:
+        builder.append(value);
+        break;
+      case 1:
+        builder.append("user").append(value);
+        break;
+      case 2:
+        builder.append("0x").append(Integer.toHexString(value));
+        break;
+      default:
+        builder.append("10.").append(value >>> 16).append('.').append((value >>> 8) & 0xFF).append('.').append(value & 0xFF);
+        break;
+    }
+  }
+
+  private static StringBuilder appendTwoDigits(StringBuilder builder, int value) {
+    return builder.append((char)('0' + value / 10)).append((char)('0' + value % 10));
+  }
+
+  private static void writeTruth(Writer truth, int templateId) throws IOException {
+    if (truth != null) {
+      truth.write(Integer.toString(templateId));
+      truth.write('\n');
+    }
+  }
+
+
+  /**
+   * @param args
+   */
+  public static void main(String[] args) throws IOException {
+
+    if (args.length < 3) {
+      System.err.println("Usage: SyntheticLogGenerator logFile truthFile records [seed]");
+      System.exit(1);
+    }
+    long seed = (args.length > 3) ? Long.parseLong(args[3]) : 42L;
+    SyntheticLogGenerator generator = new SyntheticLogGenerator(seed);
+    long lines = generator.generate(new File(args[0]), new File(args[1]), Long.parseLong(args[2]));
+    System.out.println(lines + " lines, " + generator.getTemplates().size() + " templates");
+
+  }
+
+}
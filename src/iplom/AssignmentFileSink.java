@@ -0,0 +1,253 @@
+/**
+ * Class: AssignmentFileSink
+ *
+ * Result sink writing the template of every log line (the event ID column) to a file,
+ * as Step 4 finalises each partition.
+ *
+ * The assignments are encoded into a 1MB buffer on the calling thread; a full buffer is
+ * handed over to a writer thread and the caller goes on with the other buffer, so the
+ * file only sees large sequential writes. The other results go to a delegate sink.
+ *
+ * The assignments follow the partitions, not the line order: sort the file by line if
+ * needed. Formats:
+ *   CSV: a "line,template" header, then one "lineNumber,templateId" row per line
+ *   BINARY: "IPLA", the version (int), then one lineNumber (long), templateId (int)
+ *           pair per line, big-endian
+ *
+ * Initially Created: 2026-10-16
+ *
+ */
+
+package iplom;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+public class AssignmentFileSink implements ResultSink {
+
+  public enum Format { CSV, BINARY }
+
+  static final byte[] BINARY_MAGIC = { 'I', 'P', 'L', 'A' };
+  static final int BINARY_VERSION = 1;
+
+  /**
+   * Size of each of the two buffers
+   */
+  private static final int BUFFER_SIZE = 1 << 20;
+
+  /**
+   * Longest encoded assignment: a long, a comma, an int and a newline in CSV
+   */
+  private static final int MAX_RECORD_SIZE = 20 + 1 + 11 + 1;
+
+  /**
+   * Handed over by close() to stop the writer thread
+   */
+  private static final ByteBuffer END_OF_RESULTS = ByteBuffer.allocate(0);
+
+  private final Format format;
+  private final ResultSink delegate;
+
+  /**
+   * Full buffers waiting for the writer thread, and the buffers it gave back
+   */
+  private final BlockingQueue<ByteBuffer> fullBuffers = new ArrayBlockingQueue<>(2);
+  private final BlockingQueue<ByteBuffer> freeBuffers = new ArrayBlockingQueue<>(2);
+  private final Thread writerThread;
+  private ByteBuffer buffer;
+  private final byte[] digits = new byte[20];
+  private long assignments = 0;
+  private boolean closed = false;
+
+  /**
+   * First error of the writer thread, thrown by close()
+   */
+  private volatile IOException writeError = null;
+
+
+  /**
+   * @param
+   * File file: output file, overwritten
+   * Format format: CSV or BINARY
+   * ResultSink delegate: receives everything but the assignments, null to drop it
+   */
+  public AssignmentFileSink(File file, Format format, ResultSink delegate) throws IOException {
+    this.format = format;
+    this.delegate = (delegate == null) ? new NoOpResultSink() : delegate;
+
+    final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    this.freeBuffers.add(ByteBuffer.allocateDirect(BUFFER_SIZE));
+
+    if (format == Format.BINARY) {
+      this.buffer.put(BINARY_MAGIC).putInt(BINARY_VERSION);
+    } else {
+      this.buffer.put("line,template\n".getBytes(Charset.forName("US-ASCII")));
+    }
+
+    this.writerThread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        writeBuffers(channel);
+      }
+    }, "iplom-assignment-sink");
+    this.writerThread.setDaemon(true);
+    this.writerThread.start();
+  }
+
+  public AssignmentFileSink(File file, Format format) throws IOException {
+    this(file, format, null);
+  }
+
+
+  @Override
+  public void message(String message) {
+    this.delegate.message(message);
+  }
+
+  @Override
+  public void partitionSupport(PartitionKey key, double supportRatio, TokenDictionary dictionary) {
+    this.delegate.partitionSupport(key, supportRatio, dictionary);
+  }
+
+  @Override
+  public void partitions(int step, Map<PartitionKey, ColumnarPartition> partitions, TokenDictionary dictionary) {
+    this.delegate.partitions(step, partitions, dictionary);
+  }
+
+  @Override
+  public void template(int templateId, LogTemplate template) {
+    this.delegate.template(templateId, template);
+  }
+
+  @Override
+  public synchronized void assignment(long lineNumber, int templateId) {
+    if (this.closed) {
+      throw new IllegalStateException("The assignment sink is closed");
+    }
+    if (this.buffer.remaining() < MAX_RECORD_SIZE) {
+      handOver();
+    }
+    if (this.format == Format.BINARY) {
+      this.buffer.putLong(lineNumber).putInt(templateId);
+    } else {
+      putDecimal(lineNumber);
+      this.buffer.put((byte) ',');
+      putDecimal(templateId);
+      this.buffer.put((byte) '\n');
+    }
+    this.assignments ++;
+  }
+
+  /**
+   * Number of assignments written so far
+   */
+  public synchronized long assignments() {
+    return this.assignments;
+  }
+
+
+  /**
+   * Hand the last buffer over, wait for the writer thread to write everything, close
+   * the file and the delegate
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    if (this.closed) {
+      return;
+    }
+    this.closed = true;
+    try {
+      if (this.buffer.position() > 0) {
+        this.buffer.flip();
+        this.fullBuffers.put(this.buffer);
+      }
+      this.fullBuffers.put(END_OF_RESULTS);
+      this.writerThread.join();
+    } catch (InterruptedException e) {
+      this.writerThread.interrupt();
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while closing the assignment sink");
+    } finally {
+      this.delegate.close();
+    }
+    if (this.writeError != null) {
+      throw this.writeError;
+    }
+  }
+
+
+  /**
+   * Hand the full buffer over to the writer thread and take the other one
+   */
+  private void handOver() {
+    try {
+      this.buffer.flip();
+      this.fullBuffers.put(this.buffer);
+      this.buffer = this.freeBuffers.take();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while handing assignments over", e);
+    }
+  }
+
+  /**
+   * ASCII decimal of a non-negative number, or of -1 (NO_LINE)
+   */
+  private void putDecimal(long value) {
+    if (value < 0) {
+      this.buffer.put((byte) '-');
+      value = -value;
+    }
+    int length = 0;
+    do {
+      this.digits[length++] = (byte) ('0' + value % 10);
+      value /= 10;
+    } while (value > 0);
+    while (length > 0) {
+      this.buffer.put(this.digits[--length]);
+    }
+  }
+
+
+  /**
+   * Body of the writer thread
+   * Buffers are given back even after an error, so callers never block.
+   */
+  private void writeBuffers(FileChannel channel) {
+    try {
+      ByteBuffer full;
+      while ((full = this.fullBuffers.take()) != END_OF_RESULTS) {
+        if (this.writeError == null) {
+          try {
+            while (full.hasRemaining()) {
+              channel.write(full);
+            }
+          } catch (IOException e) {
+            this.writeError = e;
+          }
+        }
+        full.clear();
+        this.freeBuffers.put(full);
+      }
+    } catch (InterruptedException e) {
+      this.writeError = new InterruptedIOException("The assignment writer was interrupted");
+    } finally {
+      try {
+        channel.close();
+      } catch (IOException e) {
+        if (this.writeError == null) {
+          this.writeError = e;
+        }
+      }
+    }
+  }
+
+}
@@ -0,0 +1,193 @@
+/**
+ * Class: AsyncFileResultSink
+ *
+ * Result sink writing to a file on a background thread.
+ *
+ * The calling thread only formats its results into a batch; full batches are handed
+ * over through a bounded queue to the writer thread, which does all the I/O. When the
+ * writer falls behind by more than QUEUE_CAPACITY batches, the callers wait for it.
+ * An I/O error stops the writing and is thrown by close().
+ *
+ * File format, one line per result, the keys of the partitions decoded with the token
+ * dictionary (see PartitionKey.describe) and last on their line, as they contain blanks:
+ *   # message
+ *   S supportRatio key
+ *   P step #logs key
+ *   T templateId support template
+ *   A lineNumber templateId
+ *
+ * Initially Created: 2026-10-16
+ *
+ */
+
+package iplom;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+public class AsyncFileResultSink implements ResultSink {
+
+  /**
+   * Size (chars) of a batch handed over to the writer thread
+   */
+  private static final int BATCH_SIZE = 64 * 1024;
+
+  /**
+   * Number of full batches waiting for the writer thread
+   */
+  private static final int QUEUE_CAPACITY = 16;
+
+  /**
+   * Handed over by close() to stop the writer thread
+   */
+  private static final String END_OF_RESULTS = new String("");
+
+  private final BlockingQueue<String> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+  private final Thread writerThread;
+  private final StringBuilder batch = new StringBuilder(BATCH_SIZE + 256);
+  private boolean closed = false;
+
+  /**
+   * First error of the writer thread, thrown by close()
+   */
+  private volatile IOException writeError = null;
+
+
+  /**
+   * @param
+   * File file: output file, overwritten
+   */
+  public AsyncFileResultSink(File file) throws IOException {
+    final Writer writer = new BufferedWriter(
+        new OutputStreamWriter(new FileOutputStream(file), Charset.forName("UTF-8")), 1 << 16);
+    this.writerThread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        writeBatches(writer);
+      }
+    }, "iplom-result-sink");
+    this.writerThread.setDaemon(true);
+    this.writerThread.start();
+  }
+
+
+  @Override
+  public synchronized void message(String message) {
+    this.batch.append("# ").append(message.trim()).append('\n');
+    handOver(false);
+  }
+
+  @Override
+  public synchronized void partitionSupport(PartitionKey key, double supportRatio, TokenDictionary dictionary) {
+    this.batch.append("S ").append(supportRatio).append(' ').append(key.describe(dictionary)).append('\n');
+    handOver(false);
+  }
+
+  @Override
+  public synchronized void partitions(int step, Map<PartitionKey, ColumnarPartition> partitions, TokenDictionary dictionary) {
+    for (Map.Entry<PartitionKey, ColumnarPartition> entry: partitions.entrySet()) {
+      this.batch.append("P ").append(step).append(' ').append(entry.getValue().rowCount())
+                .append(' ').append(entry.getKey().describe(dictionary)).append('\n');
+      handOver(false);
+    }
+  }
+
+  @Override
+  public synchronized void template(int templateId, LogTemplate template) {
+    this.batch.append("T ").append(templateId).append(' ').append(template.getSupport())
+              .append(' ').append(template).append('\n');
+    handOver(false);
+  }
+
+  @Override
+  public synchronized void assignment(long lineNumber, int templateId) {
+    this.batch.append("A ").append(lineNumber).append(' ').append(templateId).append('\n');
+    handOver(false);
+  }
+
+
+  /**
+   * Hand the last batch over, wait for the writer thread to write everything and close the file
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    if (this.closed) {
+      return;
+    }
+    handOver(true);
+    this.closed = true;
+    if (!put(END_OF_RESULTS)) {
+      this.writerThread.interrupt();
+    }
+    try {
+      this.writerThread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while closing the result sink");
+    }
+    if (this.writeError != null) {
+      throw this.writeError;
+    }
+  }
+
+
+  /**
+   * Hand the batch over to the writer thread once full (or always, if forced)
+   */
+  private void handOver(boolean force) {
+    if (this.closed) {
+      throw new IllegalStateException("The result sink is closed");
+    }
+    if (this.batch.length() >= BATCH_SIZE || (force && this.batch.length() > 0)) {
+      put(this.batch.toString());
+      this.batch.setLength(0);
+    }
+  }
+
+  private boolean put(String item) {
+    try {
+      this.queue.put(item);
+      return true;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      if (this.writeError == null) {
+        this.writeError = new InterruptedIOException("Interrupted while handing results over, some are lost");
+      }
+      return false;
+    }
+  }
+
+
+  /**
+   * Body of the writer thread
+   * After an error, batches are still taken (and dropped) so callers never block.
+   */
+  private void writeBatches(Writer writer) {
+    try {
+      String item;
+      while ((item = this.queue.take()) != END_OF_RESULTS) {
+        if (this.writeError == null) {
+          try {
+            writer.write(item);
+          } catch (IOException e) {
+            this.writeError = e;
+          }
+        }
+      }
+    } catch (InterruptedException e) {
+      this.writeError = new InterruptedIOException("The result writer was interrupted");
+    } finally {
+      try {
+        writer.close();
+      } catch (IOException e) {
+        if (this.writeError == null) {
+          this.writeError = e;
+        }
+      }
+    }
+  }
+
+}
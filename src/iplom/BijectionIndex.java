@@ -0,0 +1,294 @@
+/**
+ * Class: BijectionIndex
+ *
+ * Index of one partition for Step 3 (partition by search bijection).
+ *
+ * Built once per partition for the chosen positions P1 and P2: for every token at
+ * P1 (resp. P2) it keeps the number of rows carrying it and the distinct tokens it
+ * co-occurs with at P2 (resp. P1). The tokens linked by a 1-1, 1-M, M-1 or M-M
+ * relation are then found by an iterative connected-component walk over this
+ * bipartite graph, instead of re-scanning the partition for every token.
+ *
+ * The index also drives the split: every token at the chosen split position is
+ * assigned an output bucket, and the columns are then gathered into their buckets
+ * by row index. Rows left without bucket are the outliers.
+ *
+ * Initially Created: 2026-10-16
+ *
+ */
+
+package iplom;
+
+import java.util.Arrays;
+import java.util.List;
+
+final class BijectionIndex {
+
+  /**
+   * Token ID at P1 / P2 of each local ID
+   */
+  private final int[] tokens1;
+  private final int[] tokens2;
+
+  /**
+   * Number of rows carrying each local token
+   */
+  private final int[] rowCounts1;
+  private final int[] rowCounts2;
+
+  /**
+   * Adjacency in CSR form: the P2 neighbours of local P1 token a are
+   * neighbours1[neighbourStart1[a] .. neighbourStart1[a + 1]), and the other way round
+   */
+  private final int[] neighbourStart1;
+  private final int[] neighbours1;
+  private final int[] neighbourStart2;
+  private final int[] neighbours2;
+
+  /**
+   * Local IDs at P1 and P2 of each row
+   */
+  private final int[] rowTokens1;
+  private final int[] rowTokens2;
+
+  /**
+   * Token ID at P1 / P2 -> local ID
+   */
+  private final LocalIds localIds1;
+  private final LocalIds localIds2;
+
+  /**
+   * Output bucket of each local token, -1 if none
+   */
+  private final int[] buckets1;
+  private final int[] buckets2;
+
+  /**
+   * Number of rows covered by the assigned buckets
+   */
+  private int assignedRows = 0;
+
+  /**
+   * Tokens already assigned to a component
+   */
+  private final boolean[] visited1;
+  private final boolean[] visited2;
+
+  /**
+   * Work queues of the component walk
+   */
+  private final int[] queue1;
+  private final int[] queue2;
+
+
+  /**
+   * Build the index of a partition
+   * @param
+   * ColumnarPartition partition: the rows of the partition, only the columns P1 and P2 are read
+   * int P1, int P2: the two token positions
+   */
+  BijectionIndex(ColumnarPartition partition, int P1, int P2) {
+
+    int rowCount = partition.rowCount();
+    LocalIds ids1 = new LocalIds(rowCount);
+    LocalIds ids2 = new LocalIds(rowCount);
+    int[] local1 = ids1.localIds(partition.column(P1), rowCount);
+    int[] local2 = ids2.localIds(partition.column(P2), rowCount);
+    this.rowTokens1 = local1;
+    this.rowTokens2 = local2;
+    this.localIds1 = ids1;
+    this.localIds2 = ids2;
+    this.tokens1 = ids1.tokens();
+    this.tokens2 = ids2.tokens();
+
+    int size1 = this.tokens1.length;
+    int size2 = this.tokens2.length;
+    this.rowCounts1 = new int[size1];
+    this.rowCounts2 = new int[size2];
+    for (int r = 0; r < rowCount; r++) {
+      this.rowCounts1[local1[r]] ++;
+      this.rowCounts2[local2[r]] ++;
+    }
+
+    this.neighbourStart1 = new int[size1 + 1];
+    this.neighbourStart2 = new int[size2 + 1];
+    this.neighbours1 = distinctNeighbours(local1, local2, this.rowCounts1, size2, this.neighbourStart1);
+    this.neighbours2 = distinctNeighbours(local2, local1, this.rowCounts2, size1, this.neighbourStart2);
+
+    this.visited1 = new boolean[size1];
+    this.visited2 = new boolean[size2];
+    this.queue1 = new int[size1];
+    this.queue2 = new int[size2];
+    this.buckets1 = new int[size1];
+    this.buckets2 = new int[size2];
+    Arrays.fill(this.buckets1, -1);
+    Arrays.fill(this.buckets2, -1);
+
+  }
+
+
+  /**
+   * Check whether a token at P1 already belongs to a walked component
+   */
+  boolean isCovered(int token1) {
+    int local = this.localIds1.find(token1);
+    return local >= 0 && this.visited1[local];
+  }
+
+
+  /**
+   * Walk the connected component of a token at P1
+   * The tokens of the component are marked as covered.
+   * @return the tokens of the component at P1 and at P2, each counted with the number of rows carrying it
+   */
+  Pair<TokenCounter, TokenCounter> component(int token1) {
+
+    int seed = this.localIds1.find(token1);
+    int head1 = 0, tail1 = 0;
+    int head2 = 0, tail2 = 0;
+    if (seed >= 0 && !this.visited1[seed]) {
+      this.visited1[seed] = true;
+      this.queue1[tail1++] = seed;
+    }
+
+    /*
+     * Breadth-first, alternating between the two sides until neither grows
+     */
+    while (head1 < tail1 || head2 < tail2) {
+      while (head1 < tail1) {
+        int a = this.queue1[head1++];
+        for (int i = this.neighbourStart1[a]; i < this.neighbourStart1[a + 1]; i++) {
+          int b = this.neighbours1[i];
+          if (!this.visited2[b]) {
+            this.visited2[b] = true;
+            this.queue2[tail2++] = b;
+          }
+        }
+      }
+      while (head2 < tail2) {
+        int b = this.queue2[head2++];
+        for (int i = this.neighbourStart2[b]; i < this.neighbourStart2[b + 1]; i++) {
+          int a = this.neighbours2[i];
+          if (!this.visited1[a]) {
+            this.visited1[a] = true;
+            this.queue1[tail1++] = a;
+          }
+        }
+      }
+    }
+
+    TokenCounter tokensSet1 = new TokenCounter(tail1);
+    for (int i = 0; i < tail1; i++) {
+      tokensSet1.add(this.tokens1[this.queue1[i]], this.rowCounts1[this.queue1[i]]);
+    }
+    TokenCounter tokensSet2 = new TokenCounter(tail2);
+    for (int i = 0; i < tail2; i++) {
+      tokensSet2.add(this.tokens2[this.queue2[i]], this.rowCounts2[this.queue2[i]]);
+    }
+    return new Pair<>(tokensSet1, tokensSet2);
+
+  }
+
+
+  /**
+   * Send all the rows carrying a token at P1 (or at P2) to an output bucket
+   * @param
+   * boolean atP1: whether the token is at P1 or at P2
+   * int token: the token ID
+   * int bucket: the output bucket (0, 1, 2, ...)
+   */
+  void assignBucket(boolean atP1, int token, int bucket) {
+    int local = atP1 ? this.localIds1.find(token) : this.localIds2.find(token);
+    if (local < 0) {
+      return;
+    }
+    int[] buckets = atP1 ? this.buckets1 : this.buckets2;
+    if (buckets[local] < 0) {
+      this.assignedRows += atP1 ? this.rowCounts1[local] : this.rowCounts2[local];
+    }
+    buckets[local] = bucket;
+  }
+
+
+  /**
+   * Check whether every row of the partition has an output bucket
+   */
+  boolean isFullyAssigned() {
+    return this.assignedRows == this.rowTokens1.length;
+  }
+
+
+  /**
+   * Gather the rows of the partition into their buckets by row index
+   * A row goes to the bucket of its P1 token, else to the bucket of its P2 token.
+   * @param
+   * ColumnarPartition partition: the indexed partition
+   * int bucketCount: number of assigned buckets
+   * @return bucketCount partitions, followed by the partition of rows without bucket (the outliers)
+   */
+  List<ColumnarPartition> splitRows(ColumnarPartition partition, int bucketCount) {
+
+    int rowCount = this.rowTokens1.length;
+    int[] rowBuckets = new int[rowCount];
+    for (int r = 0; r < rowCount; r++) {
+      int bucket = this.buckets1[this.rowTokens1[r]];
+      if (bucket < 0) {
+        bucket = this.buckets2[this.rowTokens2[r]];
+      }
+      rowBuckets[r] = (bucket < 0) ? bucketCount : bucket;
+    }
+
+    return partition.split(rowBuckets, bucketCount + 1);
+
+  }
+
+
+  /**
+   * Distinct neighbours of every local token, in CSR form
+   * @param
+   * int[] from, int[] to: local IDs of each row on both sides
+   * int[] rowCounts: rows per local ID on the from side
+   * int sizeTo: number of local IDs on the to side
+   * int[] start: output, start offsets (length = #from IDs + 1)
+   */
+  private static int[] distinctNeighbours(int[] from, int[] to, int[] rowCounts, int sizeTo, int[] start) {
+
+    int sizeFrom = rowCounts.length;
+
+    /*
+     * Group the rows by their from token
+     */
+    int[] rowStart = new int[sizeFrom + 1];
+    for (int a = 0; a < sizeFrom; a++) {
+      rowStart[a + 1] = rowStart[a] + rowCounts[a];
+    }
+    int[] fill = Arrays.copyOf(rowStart, sizeFrom);
+    int[] rowsByFrom = new int[from.length];
+    for (int r = 0; r < from.length; r++) {
+      rowsByFrom[fill[from[r]]++] = r;
+    }
+
+    /*
+     * Keep each to token once per from token, using the from token as a stamp
+     */
+    int[] stamp = new int[sizeTo];
+    Arrays.fill(stamp, -1);
+    int[] neighbours = new int[from.length];
+    int size = 0;
+    for (int a = 0; a < sizeFrom; a++) {
+      start[a] = size;
+      for (int i = rowStart[a]; i < rowStart[a + 1]; i++) {
+        int b = to[rowsByFrom[i]];
+        if (stamp[b] != a) {
+          stamp[b] = a;
+          neighbours[size++] = b;
+        }
+      }
+    }
+    start[sizeFrom] = size;
+
+    return Arrays.copyOf(neighbours, size);
+
+  }
+
+}
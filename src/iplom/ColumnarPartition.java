@@ -0,0 +1,247 @@
+/**
+ * Class: ColumnarPartition
+ *
+ * Partition of encoded logs stored column by column (struct of arrays):
+ * one contiguous int[] of token IDs per token position, plus the row count.
+ * When the logs come from the source file, a long[] and an int[] column carry the first
+ * line and the #lines of every row, for the per-line template assignment of Step 4.
+ *
+ * The per-position statistics of Steps 2 to 4 read a single column sequentially
+ * instead of touching every row object, and a split into sub-partitions gathers
+ * each column by row index. Rows keep their order through every split.
+ *
+ * Initially Created: 2026-10-16
+ *
+ */
+
+package iplom;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public final class ColumnarPartition {
+
+  /**
+   * columns[position][row]: token ID at a position of a row
+   */
+  private final int[][] columns;
+  private final int rowCount;
+
+  /**
+   * lineNumbers[row]: first line of the log in the source file, null if unknown
+   * lineCounts[row]: #lines of the log in the source file
+   */
+  private final long[] lineNumbers;
+  private final int[] lineCounts;
+
+
+  /**
+   * Create an empty partition to be filled column by column
+   * @param
+   * int tokenCount: number of token positions
+   * int rowCount: number of rows
+   */
+  public ColumnarPartition(int tokenCount, int rowCount) {
+    this(tokenCount, rowCount, false);
+  }
+
+  /**
+   * Create an empty partition to be filled column by column
+   * @param
+   * boolean withLineNumbers: whether the rows carry their lines (see setLines)
+   */
+  public ColumnarPartition(int tokenCount, int rowCount, boolean withLineNumbers) {
+    this(new int[tokenCount][rowCount], rowCount,
+         withLineNumbers ? new long[rowCount] : null, withLineNumbers ? new int[rowCount] : null);
+  }
+
+  private ColumnarPartition(int[][] columns, int rowCount, long[] lineNumbers, int[] lineCounts) {
+    this.columns = columns;
+    this.rowCount = rowCount;
+    this.lineNumbers = lineNumbers;
+    this.lineCounts = lineCounts;
+  }
+
+
+  /**
+   * Number of rows (logs)
+   */
+  public int rowCount() {
+    return this.rowCount;
+  }
+
+  /**
+   * Number of token positions of every row
+   */
+  public int tokenCount() {
+    return this.columns.length;
+  }
+
+  public boolean isEmpty() {
+    return this.rowCount == 0;
+  }
+
+  /**
+   * The token IDs at one position, indexed by row
+   * The array is shared, not copied.
+   */
+  int[] column(int position) {
+    return this.columns[position];
+  }
+
+  /**
+   * Token ID at a position of a row
+   */
+  public int token(int row, int position) {
+    return this.columns[position][row];
+  }
+
+  /**
+   * Set the token ID at a position of a row, used while encoding
+   */
+  void set(int row, int position, int token) {
+    this.columns[position][row] = token;
+  }
+
+  /**
+   * Check whether the rows carry their line numbers
+   */
+  public boolean hasLineNumbers() {
+    return this.lineNumbers != null;
+  }
+
+  /**
+   * First line of a row in the source file
+   */
+  public long lineNumber(int row) {
+    return this.lineNumbers[row];
+  }
+
+  /**
+   * #lines of a row in the source file, from its first line on
+   */
+  public int lineCount(int row) {
+    return this.lineCounts[row];
+  }
+
+  /**
+   * Set the lines of a row, used while encoding
+   */
+  void setLines(int row, long lineNumber, int lineCount) {
+    this.lineNumbers[row] = lineNumber;
+    this.lineCounts[row] = lineCount;
+  }
+
+  /**
+   * Copy one row out of the columns, mainly for printing
+   */
+  public int[] row(int row) {
+    int[] logMatrix = new int[this.columns.length];
+    for (int i = 0; i < logMatrix.length; i++) {
+      logMatrix[i] = this.columns[i][row];
+    }
+    return logMatrix;
+  }
+
+
+  /**
+   * Count the tokens of one position, in a single scan of its column
+   */
+  public TokenCounter counter(int position) {
+    TokenCounter counter = new TokenCounter();
+    int[] column = this.columns[position];
+    for (int r = 0; r < this.rowCount; r++) {
+      counter.add(column[r]);
+    }
+    return counter;
+  }
+
+  /**
+   * Count the tokens of every position, one counter per position
+   */
+  public TokenCounter[] tokenCollection() {
+    TokenCounter[] tokenCollection = new TokenCounter[this.columns.length];
+    for (int i = 0; i < tokenCollection.length; i++) {
+      tokenCollection[i] = counter(i);
+    }
+    return tokenCollection;
+  }
+
+  /**
+   * Check whether every row carries the same token at a position
+   * Stops at the first differing row, no counter is built.
+   */
+  public boolean isConstant(int position) {
+    int[] column = this.columns[position];
+    for (int r = 1; r < this.rowCount; r++) {
+      if (column[r] != column[0]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+
+  /**
+   * Split the rows into buckets, gathering every column by row index
+   * @param
+   * int[] rowBuckets: bucket of each row, in [0, bucketCount)
+   * int bucketCount: number of buckets
+   * @return one partition per bucket, an empty partition for a bucket without rows
+   */
+  List<ColumnarPartition> split(int[] rowBuckets, int bucketCount) {
+
+    int[] bucketSizes = new int[bucketCount];
+    for (int r = 0; r < this.rowCount; r++) {
+      bucketSizes[rowBuckets[r]] ++;
+    }
+
+    /*
+     * Row r goes to slot rowSlots[r] of its bucket, in the order of the rows
+     */
+    int[] fill = new int[bucketCount];
+    int[] rowSlots = new int[this.rowCount];
+    for (int r = 0; r < this.rowCount; r++) {
+      rowSlots[r] = fill[rowBuckets[r]] ++;
+    }
+
+    int[][][] bucketColumns = new int[bucketCount][this.columns.length][];
+    for (int bucket = 0; bucket < bucketCount; bucket++) {
+      for (int i = 0; i < this.columns.length; i++) {
+        bucketColumns[bucket][i] = new int[bucketSizes[bucket]];
+      }
+    }
+
+    /*
+     * One sequential pass over each column
+     */
+    for (int i = 0; i < this.columns.length; i++) {
+      int[] column = this.columns[i];
+      for (int r = 0; r < this.rowCount; r++) {
+        bucketColumns[rowBuckets[r]][i][rowSlots[r]] = column[r];
+      }
+    }
+
+    long[][] bucketLines = new long[bucketCount][];
+    int[][] bucketLineCounts = new int[bucketCount][];
+    if (this.lineNumbers != null) {
+      for (int bucket = 0; bucket < bucketCount; bucket++) {
+        bucketLines[bucket] = new long[bucketSizes[bucket]];
+        bucketLineCounts[bucket] = new int[bucketSizes[bucket]];
+      }
+      for (int r = 0; r < this.rowCount; r++) {
+        bucketLines[rowBuckets[r]][rowSlots[r]] = this.lineNumbers[r];
+        bucketLineCounts[rowBuckets[r]][rowSlots[r]] = this.lineCounts[r];
+      }
+    }
+
+    List<ColumnarPartition> buckets = new ArrayList<>(bucketCount);
+    for (int bucket = 0; bucket < bucketCount; bucket++) {
+      buckets.add(new ColumnarPartition(bucketColumns[bucket], bucketSizes[bucket],
+                                        bucketLines[bucket], bucketLineCounts[bucket]));
+    }
+    return buckets;
+
+  }
+
+}
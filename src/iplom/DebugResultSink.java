@@ -0,0 +1,91 @@
+/**
+ * Class: DebugResultSink
+ *
+ * Result sink printing everything to a stream, the debugging output the steps used to
+ * print on stdout: step messages, support ratios, the decoded partitions of 8 tokens
+ * after Steps 2 and 3, and the templates. The per-line assignments are not printed,
+ * see AssignmentFileSink.
+ *
+ * Printing is synchronous and slow, it is meant for debugging only.
+ *
+ * Initially Created: 2026-10-16
+ *
+ */
+
+package iplom;
+
+import java.io.PrintStream;
+import java.util.*;
+
+public class DebugResultSink implements ResultSink {
+
+  /**
+   * Only the partitions of this token count are printed, to keep the output readable
+   */
+  private static final int PRINTED_TOKEN_COUNT = 8;
+
+  private final PrintStream out;
+
+
+  /**
+   * Print to the current System.out
+   */
+  public DebugResultSink() {
+    this(System.out);
+  }
+
+  public DebugResultSink(PrintStream out) {
+    this.out = out;
+  }
+
+
+  @Override
+  public void message(String message) {
+    this.out.println(message);
+  }
+
+  @Override
+  public void partitionSupport(PartitionKey key, double supportRatio, TokenDictionary dictionary) {
+    this.out.println("" + supportRatio);
+  }
+
+  @Override
+  public void partitions(int step, Map<PartitionKey, ColumnarPartition> partitions, TokenDictionary dictionary) {
+    for (Map.Entry<PartitionKey, ColumnarPartition> entry: partitions.entrySet()) {
+      PartitionKey key = entry.getKey();
+      if (key.getTokenCount() == PRINTED_TOKEN_COUNT) {
+        this.out.println(key.describe(dictionary) + " " + decodePartition(entry.getValue(), dictionary));
+      }
+    }
+  }
+
+  @Override
+  public void template(int templateId, LogTemplate template) {
+    this.out.println(template);
+  }
+
+  @Override
+  public void assignment(long lineNumber, int templateId) { }
+
+  @Override
+  public void close() {
+    this.out.flush();
+  }
+
+
+  /**
+   * Decode a partition of token ID rows
+   */
+  private static List<List<String>> decodePartition(ColumnarPartition partition, TokenDictionary dictionary) {
+    List<List<String>> logs = new ArrayList<>(partition.rowCount());
+    for (int r = 0; r < partition.rowCount(); r++) {
+      List<String> tokens = new ArrayList<>(partition.tokenCount());
+      for (int tokenId: partition.row(r)) {
+        tokens.add(dictionary.token(tokenId));
+      }
+      logs.add(tokens);
+    }
+    return logs;
+  }
+
+}
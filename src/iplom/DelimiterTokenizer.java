@@ -0,0 +1,134 @@
+/**
+ * Class: DelimiterTokenizer
+ *
+ * Allocation-free replacement for StringTokenizer.
+ * The delimiter string is compiled once into a char-class lookup table, and a log
+ * is tokenized in a single pass into offset/length spans of the original
+ * CharSequence, without creating a substring for every token.
+ *
+ * Tokens are the same as with new StringTokenizer(str, delimiter): maximal runs of
+ * non-delimiter characters.
+ *
+ * Initially Created: 2026-10-16
+ *
+ */
+
+package iplom;
+
+import java.util.Arrays;
+
+public final class DelimiterTokenizer {
+
+  /**
+   * delimiters[c] is true if char c is a delimiter; chars beyond the table are not
+   */
+  private final boolean[] delimiters;
+
+
+  public DelimiterTokenizer(String delimiter) {
+    char maxChar = 0;
+    for (int i = 0; i < delimiter.length(); i++) {
+      maxChar = (char)Math.max(maxChar, delimiter.charAt(i));
+    }
+    this.delimiters = new boolean[maxChar + 1];
+    for (int i = 0; i < delimiter.length(); i++) {
+      this.delimiters[delimiter.charAt(i)] = true;
+    }
+  }
+
+
+  /**
+   * Check whether a char is one of the delimiters
+   */
+  public boolean isDelimiter(char c) {
+    return c < this.delimiters.length && this.delimiters[c];
+  }
+
+
+  /**
+   * Count the #tokens of a string
+   * @param
+   * CharSequence str: input string
+   */
+  public int countTokens(CharSequence str) {
+    boolean[] table = this.delimiters;
+    int length = str.length();
+    int count = 0;
+    boolean inToken = false;
+    for (int i = 0; i < length; i++) {
+      char c = str.charAt(i);
+      boolean delimiter = c < table.length && table[c];
+      if (!delimiter && !inToken) {
+        count ++;
+      }
+      inToken = !delimiter;
+    }
+    return count;
+  }
+
+
+  /**
+   * Split a string into token spans
+   * @param
+   * CharSequence str: input string
+   * Spans spans: reusable output, cleared first
+   * @return the #tokens
+   */
+  public int tokenize(CharSequence str, Spans spans) {
+    boolean[] table = this.delimiters;
+    int length = str.length();
+    spans.count = 0;
+    int i = 0;
+    while (i < length) {
+      char c = str.charAt(i);
+      if (c < table.length && table[c]) {
+        i ++;
+        continue;
+      }
+      int start = i;
+      do {
+        i ++;
+      } while (i < length && !((c = str.charAt(i)) < table.length && table[c]));
+      spans.add(start, i - start);
+    }
+    return spans.count;
+  }
+
+
+  /**
+   * Token boundaries of one tokenized string, as offset/length pairs
+   * Meant to be reused from one string to the next by a single thread.
+   */
+  public static final class Spans {
+
+    private int[] offsets;
+    private int[] lengths;
+    private int count = 0;
+
+    public Spans() {
+      this(32);
+    }
+
+    public Spans(int capacity) {
+      this.offsets = new int[Math.max(1, capacity)];
+      this.lengths = new int[Math.max(1, capacity)];
+    }
+
+    public int count() { return this.count; }
+    public int offset(int i) { return this.offsets[i]; }
+    public int length(int i) { return this.lengths[i]; }
+    public int end(int i) { return this.offsets[i] + this.lengths[i]; }
+
+    private void add(int offset, int length) {
+      if (this.count == this.offsets.length) {
+        this.offsets = Arrays.copyOf(this.offsets, this.count * 2);
+        this.lengths = Arrays.copyOf(this.lengths, this.count * 2);
+      }
+      this.offsets[this.count] = offset;
+      this.lengths[this.count] = length;
+      this.count ++;
+    }
+
+  }
+
+}
@@ -0,0 +1,34 @@
+/**
+ * Class: EpochMillisHeaderDetector
+ *
+ * Matcher for a header made of the epoch time in milliseconds (13 digits),
+ * followed by a blank.
+ *
+ * Initially Created: 2026-10-16
+ *
+ */
+
+package iplom;
+
+public class EpochMillisHeaderDetector implements RecordHeaderDetector {
+
+  private static final long serialVersionUID = 1L;
+
+  private static final int DIGITS = 13;
+
+  @Override
+  public long match(CharSequence line) {
+
+    if (line.length() < DIGITS) {
+      return NO_MATCH;
+    }
+    long millis = HeaderFields.digits(line, 0, DIGITS);
+    int headerLength = (millis < 0) ? -1 : HeaderFields.endOfHeader(line, DIGITS);
+    if (headerLength < 0) {
+      return NO_MATCH;
+    }
+    return RecordHeaderDetector.pack(headerLength, millis);
+
+  }
+
+}
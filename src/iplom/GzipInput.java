@@ -0,0 +1,699 @@
+/**
+ * Class: GzipInput
+ *
+ * Decompressed input of a gzip log file, for the readers of Step 1 and readByLines.
+ *
+ * Three ways to decompress, by the number of threads:
+ *   0: on the reading thread (GZIPInputStream)
+ *   1: pipelined, on a background thread which decompresses 1MB blocks ahead of the
+ *      reader, so decompression overlaps the Step 1 work of the reader
+ *   n: for multi-member files (e.g. appended rotations, bgzip), the file is cut into
+ *      segments starting on a member header, decompressed in parallel and read back in
+ *      order; a single-member file falls back to the pipelined way
+ *
+ * Every segment streams its blocks through a queue of PIPELINE_BLOCKS blocks, as the
+ * pipelined way does: a worker ahead of the reader waits once its queue is full, so at
+ * most (threads + 1) x PIPELINE_BLOCKS blocks are held, however large the members.
+ *
+ * Member headers are found by their signature only, so a segment cut may be a false
+ * header inside compressed data. A segment is decompressed member by member and must
+ * end exactly on its end cut, so that segment and the one before it then fail (bad
+ * header, CRC or truncated member). The reader only moves on to a segment once the one
+ * before it ended exactly on their cut, so it never reads a segment starting on a false
+ * header. The rest of the file is decompressed serially from the start of the first
+ * failing segment, which is always a true member, skipping the bytes of that segment
+ * the reader already had.
+ *
+ * Initially Created: 2026-10-16
+ *
+ */
+
+package iplom;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+final class GzipInput {
+
+  /**
+   * Size of the blocks handed over by the decompressing threads
+   */
+  private static final int BLOCK_SIZE = 1 << 20;
+
+  /**
+   * Decompressed blocks the pipelined thread may keep ahead of the reader
+   */
+  private static final int PIPELINE_BLOCKS = 8;
+
+  /**
+   * Minimum compressed bytes of a segment decompressed by one worker
+   */
+  private static final long SEGMENT_SIZE = 1L << 20;
+
+  /**
+   * Bytes mapped at once when searching for member headers
+   */
+  private static final long MAP_SIZE = 256L << 20;
+
+  /**
+   * Bytes of a gzip header checked when searching for members
+   */
+  private static final int HEADER_SIZE = 10;
+
+  private GzipInput() { }
+
+
+  /**
+   * Whether a file starts with the gzip magic number
+   */
+  static boolean isGzip(File file) throws IOException {
+    try (InputStream input = new FileInputStream(file)) {
+      return input.read() == 0x1f && input.read() == 0x8b;
+    }
+  }
+
+
+  /**
+   * Open the decompressed content of a gzip file
+   * @param
+   * int threads: 0 to decompress on the reading thread, 1 to pipeline the decompression
+   *              on a background thread, more to decompress members in parallel
+   */
+  static InputStream open(File file, int threads) throws IOException {
+
+    if (threads <= 0) {
+      return new GZIPInputStream(new FileInputStream(file), 1 << 16);
+    }
+
+    if (threads > 1) {
+      RandomAccessFile randomAccess = new RandomAccessFile(file, "r");
+      try {
+        long[] cuts = segmentCuts(randomAccess.getChannel());
+        if (cuts.length > 2) {
+          return new SegmentStream(file, randomAccess, cuts, threads);
+        }
+      } catch (IOException | RuntimeException e) {
+        randomAccess.close();
+        throw e;
+      }
+      randomAccess.close();
+    }
+
+    return new PipelinedStream(new GZIPInputStream(new FileInputStream(file), 1 << 16));
+
+  }
+
+
+  /**
+   * Offsets cutting the file into segments of at least SEGMENT_SIZE bytes, each starting
+   * on a member header, the file size last
+   */
+  private static long[] segmentCuts(FileChannel channel) throws IOException {
+
+    long fileSize = channel.size();
+    List<Long> cuts = new ArrayList<>();
+    cuts.add(0L);
+    long lastCut = 0;
+    byte[] header = new byte[HEADER_SIZE];
+
+    for (long start = 0; start < fileSize; start += MAP_SIZE) {
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start,
+                                            Math.min(MAP_SIZE + HEADER_SIZE, fileSize - start));
+      int limit = (int)Math.min(MAP_SIZE, buffer.limit() - HEADER_SIZE + 1);
+      for (int i = 0; i < limit; i++) {
+        if (buffer.get(i) == 0x1f && start + i >= lastCut + SEGMENT_SIZE) {
+          for (int j = 0; j < HEADER_SIZE; j++) {
+            header[j] = buffer.get(i + j);
+          }
+          if (isMemberHeader(header)) {
+            lastCut = start + i;
+            cuts.add(lastCut);
+          }
+        }
+      }
+    }
+
+    cuts.add(fileSize);
+    long[] result = new long[cuts.size()];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = cuts.get(i);
+    }
+    return result;
+
+  }
+
+  /**
+   * Magic, deflate method, no reserved flag, a known extra flag and operating system
+   */
+  private static boolean isMemberHeader(byte[] header) {
+    int xfl = header[8] & 0xff;
+    int os = header[9] & 0xff;
+    return (header[0] & 0xff) == 0x1f && (header[1] & 0xff) == 0x8b && header[2] == 8
+        && (header[3] & 0xe0) == 0 && (xfl == 0 || xfl == 2 || xfl == 4) && (os <= 13 || os == 255);
+  }
+
+
+  /**
+   * Decompress the whole members in [start, end) into blocks of BLOCK_SIZE bytes
+   * @throws ZipException or EOFException if [start, end) is not exactly a sequence of
+   *         whole members with valid headers and trailers
+   */
+  static List<byte[]> decodeMembers(FileChannel channel, long start, long end) throws IOException {
+    final List<byte[]> blocks = new ArrayList<>();
+    decodeMembers(channel, start, end, new BlockSink() {
+      @Override
+      public void put(byte[] block) {
+        blocks.add(block);
+      }
+    });
+    return blocks;
+  }
+
+  /**
+   * Decompress the whole members in [start, end), handing each block of BLOCK_SIZE bytes
+   * (shorter at the end) over to a sink as soon as it is full
+   */
+  private static void decodeMembers(FileChannel channel, long start, long end, BlockSink blocks) throws IOException {
+
+    MemberInput input = new MemberInput(channel, start, end);
+    Inflater inflater = new Inflater(true);
+    CRC32 crc = new CRC32();
+    byte[] block = new byte[BLOCK_SIZE];
+    int length = 0;
+
+    try {
+      while (input.offset() < end) {
+        input.skipHeader();
+        inflater.reset();
+        crc.reset();
+        while (!inflater.finished()) {
+          if (inflater.needsInput()) {
+            input.feed(inflater);
+          }
+          int inflated = inflater.inflate(block, length, BLOCK_SIZE - length);
+          if (inflated == 0 && inflater.needsDictionary()) {
+            throw new ZipException("Gzip member at " + input.offset() + " needs a dictionary");
+          }
+          crc.update(block, length, inflated);
+          length += inflated;
+          if (length == BLOCK_SIZE) {
+            blocks.put(block);
+            block = new byte[BLOCK_SIZE];
+            length = 0;
+          }
+        }
+        input.giveBack(inflater.getRemaining());
+        if (input.readInt() != (int)crc.getValue() || input.readInt() != (int)inflater.getBytesWritten()) {
+          throw new ZipException("Corrupt gzip trailer before " + input.offset());
+        }
+      }
+    } catch (DataFormatException e) {
+      throw new ZipException("Corrupt gzip data: " + e.getMessage());
+    } finally {
+      inflater.end();
+    }
+
+    if (length > 0) {
+      blocks.put(Arrays.copyOf(block, length));
+    }
+
+  }
+
+
+  /**
+   * Receiver of the decompressed blocks of decodeMembers
+   */
+  private interface BlockSink {
+    void put(byte[] block) throws IOException;
+  }
+
+
+  /**
+   * Decompress the next block of BLOCK_SIZE bytes (shorter at the end) of a source
+   * @return false at the end of the source
+   */
+  private static boolean readBlock(InputStream source, List<byte[]> blocks) throws IOException {
+    byte[] block = new byte[BLOCK_SIZE];
+    int length = 0;
+    int read = 0;
+    while (length < BLOCK_SIZE && (read = source.read(block, length, BLOCK_SIZE - length)) >= 0) {
+      length += read;
+    }
+    if (length > 0) {
+      blocks.add((length == BLOCK_SIZE) ? block : Arrays.copyOf(block, length));
+    }
+    return read >= 0;
+  }
+
+
+  /**
+   * Stream reading decompressed blocks one after another
+   */
+  private abstract static class BlockStream extends InputStream {
+
+    private byte[] block = new byte[0];
+    private int index = 0;
+
+    /**
+     * The next decompressed block, null at the end
+     */
+    abstract byte[] nextBlock() throws IOException;
+
+    @Override
+    public int read() throws IOException {
+      if (!hasBytes()) {
+        return -1;
+      }
+      return this.block[this.index++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) throws IOException {
+      if (length == 0) {
+        return 0;
+      }
+      if (!hasBytes()) {
+        return -1;
+      }
+      int count = Math.min(length, this.block.length - this.index);
+      System.arraycopy(this.block, this.index, bytes, offset, count);
+      this.index += count;
+      return count;
+    }
+
+    private boolean hasBytes() throws IOException {
+      while (this.block != null && this.index == this.block.length) {
+        this.block = nextBlock();
+        this.index = 0;
+      }
+      return this.block != null;
+    }
+
+  }
+
+
+  /**
+   * Decompression on a background thread, up to PIPELINE_BLOCKS blocks ahead of the reader
+   */
+  private static final class PipelinedStream extends BlockStream {
+
+    private static final byte[] END_OF_INPUT = new byte[0];
+
+    private final BlockingQueue<byte[]> queue = new ArrayBlockingQueue<>(PIPELINE_BLOCKS);
+    private final Thread decoderThread;
+    private volatile IOException decodeError = null;
+    private boolean ended = false;
+
+    PipelinedStream(final InputStream source) {
+      this.decoderThread = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          decode(source);
+        }
+      }, "iplom-gzip-decoder");
+      this.decoderThread.setDaemon(true);
+      this.decoderThread.start();
+    }
+
+    private void decode(InputStream source) {
+      try {
+        List<byte[]> blocks = new ArrayList<>(1);
+        boolean more = true;
+        while (more) {
+          more = readBlock(source, blocks);
+          for (byte[] block: blocks) {
+            this.queue.put(block);
+          }
+          blocks.clear();
+        }
+      } catch (IOException e) {
+        this.decodeError = e;
+      } catch (InterruptedException e) {
+        return;
+      } finally {
+        try {
+          source.close();
+        } catch (IOException e) { }
+      }
+      try {
+        this.queue.put(END_OF_INPUT);
+      } catch (InterruptedException e) { }
+    }
+
+    @Override
+    byte[] nextBlock() throws IOException {
+      if (this.ended) {
+        return null;
+      }
+      byte[] block;
+      try {
+        block = this.queue.take();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while waiting for decompressed input");
+      }
+      if (block == END_OF_INPUT) {
+        this.ended = true;
+        if (this.decodeError != null) {
+          throw this.decodeError;
+        }
+        return null;
+      }
+      return block;
+    }
+
+    @Override
+    public void close() {
+      this.ended = true;
+      this.decoderThread.interrupt();
+    }
+
+  }
+
+
+  /**
+   * Segments of members decompressed by a pool of workers, at most one segment per
+   * worker ahead of the reader, and read back in order
+   */
+  private static final class SegmentStream extends BlockStream {
+
+    private final File sourceFile;
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final long[] cuts;
+    private final int windowSize;
+    private final ExecutorService executor;
+    private final Deque<Segment> pending = new ArrayDeque<>();
+    private int nextSegment = 0;
+    private int readSegment = 0;
+
+    /**
+     * The segment being read, and the bytes it gave the reader so far
+     */
+    private Segment current = null;
+    private long currentBytes = 0;
+
+    /**
+     * Serial decompression of the rest of the file, after a false member header
+     */
+    private InputStream fallback = null;
+
+    SegmentStream(File sourceFile, RandomAccessFile file, long[] cuts, int threads) {
+      this.sourceFile = sourceFile;
+      this.file = file;
+      this.channel = file.getChannel();
+      this.cuts = cuts;
+      this.windowSize = threads + 1;
+      this.executor = Executors.newFixedThreadPool(threads);
+    }
+
+    @Override
+    byte[] nextBlock() throws IOException {
+
+      if (this.fallback != null) {
+        List<byte[]> next = new ArrayList<>(1);
+        readBlock(this.fallback, next);
+        return next.isEmpty() ? null : next.get(0);
+      }
+
+      while (true) {
+        if (this.current == null) {
+          if (this.readSegment == this.cuts.length - 1) {
+            return null;
+          }
+          while (this.nextSegment < this.cuts.length - 1 && this.pending.size() < this.windowSize) {
+            Segment segment = new Segment(this.cuts[this.nextSegment], this.cuts[this.nextSegment + 1]);
+            this.executor.execute(segment);
+            this.pending.add(segment);
+            this.nextSegment ++;
+          }
+          this.current = this.pending.poll();
+          this.currentBytes = 0;
+        }
+        byte[] block;
+        try {
+          block = this.current.take();
+        } catch (ZipException | EOFException e) {
+          startFallback();
+          return nextBlock();
+        }
+        if (block != null) {
+          this.currentBytes += block.length;
+          return block;
+        }
+        this.current = null;
+        this.readSegment ++;
+      }
+
+    }
+
+    /**
+     * Decompress the rest of the file serially, from its own stream
+     * The workers are not interrupted: that would close the channel under them.
+     */
+    private void startFallback() throws IOException {
+      for (Segment segment: this.pending) {
+        segment.cancel();
+      }
+      this.current.cancel();
+      this.pending.clear();
+      this.executor.shutdown();
+      FileInputStream rest = new FileInputStream(this.sourceFile);
+      try {
+        rest.getChannel().position(this.cuts[this.readSegment]);
+        this.fallback = new GZIPInputStream(rest, 1 << 16);
+        long skipped = 0;
+        while (skipped < this.currentBytes) {
+          long skip = this.fallback.skip(this.currentBytes - skipped);
+          if (skip <= 0) {
+            throw new EOFException("Gzip input ended before offset " + this.currentBytes + " of its segment");
+          }
+          skipped += skip;
+        }
+      } catch (IOException e) {
+        rest.close();
+        throw e;
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      for (Segment segment: this.pending) {
+        segment.cancel();
+      }
+      if (this.current != null) {
+        this.current.cancel();
+      }
+      this.executor.shutdownNow();
+      this.file.close();
+      if (this.fallback != null) {
+        this.fallback.close();
+      }
+    }
+
+
+    /**
+     * One segment decompressed by a worker into a queue of PIPELINE_BLOCKS blocks
+     */
+    private final class Segment implements Runnable, BlockSink {
+
+      private final long start;
+      private final long end;
+      private final BlockingQueue<byte[]> queue = new ArrayBlockingQueue<>(PIPELINE_BLOCKS);
+      private volatile boolean cancelled = false;
+      private volatile IOException decodeError = null;
+
+      Segment(long start, long end) {
+        this.start = start;
+        this.end = end;
+      }
+
+      @Override
+      public void run() {
+        try {
+          decodeMembers(SegmentStream.this.channel, this.start, this.end, this);
+        } catch (IOException e) {
+          this.decodeError = e;
+        } catch (RuntimeException e) {
+          this.decodeError = new IOException("Failed to decompress", e);
+        }
+        try {
+          offer(PipelinedStream.END_OF_INPUT);
+        } catch (IOException e) {
+          // cancelled, nobody reads the queue anymore
+        }
+      }
+
+      /**
+       * Wait for room in the queue, giving up once cancelled
+       */
+      @Override
+      public void put(byte[] block) throws IOException {
+        offer(block);
+      }
+
+      private void offer(byte[] block) throws IOException {
+        try {
+          while (!this.queue.offer(block, 100, TimeUnit.MILLISECONDS)) {
+            if (this.cancelled) {
+              throw new InterruptedIOException("Decompression of the segment was cancelled");
+            }
+          }
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new InterruptedIOException("Interrupted while handing decompressed input over");
+        }
+      }
+
+      /**
+       * The next block, null at the end of the segment
+       * @throws IOException the error of the worker, once the blocks before it are read
+       */
+      byte[] take() throws IOException {
+        byte[] block;
+        try {
+          block = this.queue.take();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new InterruptedIOException("Interrupted while waiting for decompressed input");
+        }
+        if (block == PipelinedStream.END_OF_INPUT) {
+          if (this.decodeError != null) {
+            throw this.decodeError;
+          }
+          return null;
+        }
+        return block;
+      }
+
+      void cancel() {
+        this.cancelled = true;
+      }
+
+    }
+
+  }
+
+
+
+  /**
+   * Compressed bytes [start, end) of a file, read in 64KB buffers, for decodeMembers
+   * Reading past end throws EOFException: a member must not cross the end cut.
+   */
+  private static final class MemberInput {
+
+    private static final int FLAG_HCRC = 2;
+    private static final int FLAG_EXTRA = 4;
+    private static final int FLAG_NAME = 8;
+    private static final int FLAG_COMMENT = 16;
+
+    private final FileChannel channel;
+    private final long end;
+    private final byte[] buffer = new byte[1 << 16];
+
+    /**
+     * The buffer holds [bufferOffset, bufferOffset + length), the next byte is at index
+     */
+    private long bufferOffset;
+    private int length = 0;
+    private int index = 0;
+
+    MemberInput(FileChannel channel, long start, long end) {
+      this.channel = channel;
+      this.bufferOffset = start;
+      this.end = end;
+    }
+
+    long offset() {
+      return this.bufferOffset + this.index;
+    }
+
+    /**
+     * Check and skip a member header
+     */
+    void skipHeader() throws IOException {
+      long headerOffset = offset();
+      if (readByte() != 0x1f || readByte() != 0x8b || readByte() != 8) {
+        throw new ZipException("No gzip member at " + headerOffset);
+      }
+      int flags = readByte();
+      for (int i = 0; i < 6; i++) {
+        readByte();
+      }
+      if ((flags & FLAG_EXTRA) != 0) {
+        int extraLength = readByte() | (readByte() << 8);
+        for (int i = 0; i < extraLength; i++) {
+          readByte();
+        }
+      }
+      if ((flags & FLAG_NAME) != 0) {
+        while (readByte() != 0) { }
+      }
+      if ((flags & FLAG_COMMENT) != 0) {
+        while (readByte() != 0) { }
+      }
+      if ((flags & FLAG_HCRC) != 0) {
+        readByte();
+        readByte();
+      }
+    }
+
+    /**
+     * Hand the rest of the buffer to the inflater (it gives back what it does not use)
+     */
+    void feed(Inflater inflater) throws IOException {
+      if (this.index == this.length) {
+        fill();
+      }
+      inflater.setInput(this.buffer, this.index, this.length - this.index);
+      this.index = this.length;
+    }
+
+    void giveBack(int unused) {
+      this.index -= unused;
+    }
+
+    /**
+     * Little-endian int, as in gzip trailers
+     */
+    int readInt() throws IOException {
+      return readByte() | (readByte() << 8) | (readByte() << 16) | (readByte() << 24);
+    }
+
+    private int readByte() throws IOException {
+      if (this.index == this.length) {
+        fill();
+      }
+      return this.buffer[this.index++] & 0xff;
+    }
+
+    private void fill() throws IOException {
+      this.bufferOffset += this.length;
+      this.index = 0;
+      this.length = 0;
+      int toRead = (int)Math.min(this.buffer.length, this.end - this.bufferOffset);
+      while (this.length < toRead) {
+        int read = this.channel.read(ByteBuffer.wrap(this.buffer, this.length, toRead - this.length),
+                                     this.bufferOffset + this.length);
+        if (read <= 0) {
+          break;
+        }
+        this.length += read;
+      }
+      if (this.length == 0) {
+        throw new EOFException("Gzip member truncated at " + this.bufferOffset);
+      }
+    }
+
+  }
+
+}
@@ -0,0 +1,122 @@
+/**
+ * Class: HeaderFields
+ *
+ * Allocation-free field parsing shared by the record header detectors.
+ * All the methods return -1 when the characters do not form the field.
+ *
+ * Initially Created: 2026-10-16
+ *
+ */
+
+package iplom;
+
+final class HeaderFields {
+
+  private HeaderFields() { }
+
+  /**
+   * Value of the decimal digit at index i
+   */
+  static int digit(CharSequence str, int i) {
+    char c = str.charAt(i);
+    return (c >= '0' && c <= '9') ? c - '0' : -1;
+  }
+
+  /**
+   * Value of the count decimal digits from index i
+   */
+  static long digits(CharSequence str, int i, int count) {
+    long value = 0;
+    for (int end = i + count; i < end; i++) {
+      int d = digit(str, i);
+      if (d < 0) {
+        return -1;
+      }
+      value = value * 10 + d;
+    }
+    return value;
+  }
+
+  /**
+   * Value of the two decimal digits at index i
+   */
+  static int twoDigits(CharSequence str, int i) {
+    int high = digit(str, i);
+    int low = digit(str, i + 1);
+    return (high < 0 || low < 0) ? -1 : high * 10 + low;
+  }
+
+  /**
+   * Month (1-12) of the English three-letter abbreviation at index i
+   */
+  static int month(CharSequence str, int i) {
+    char a = str.charAt(i);
+    char b = str.charAt(i + 1);
+    char c = str.charAt(i + 2);
+    switch (a) {
+      case 'J':
+        if (b == 'a' && c == 'n') return 1;
+        if (b == 'u' && c == 'n') return 6;
+        if (b == 'u' && c == 'l') return 7;
+        break;
+      case 'F':
+        if (b == 'e' && c == 'b') return 2;
+        break;
+      case 'M':
+        if (b == 'a' && c == 'r') return 3;
+        if (b == 'a' && c == 'y') return 5;
+        break;
+      case 'A':
+        if (b == 'p' && c == 'r') return 4;
+        if (b == 'u' && c == 'g') return 8;
+        break;
+      case 'S':
+        if (b == 'e' && c == 'p') return 9;
+        break;
+      case 'O':
+        if (b == 'c' && c == 't') return 10;
+        break;
+      case 'N':
+        if (b == 'o' && c == 'v') return 11;
+        break;
+      case 'D':
+        if (b == 'e' && c == 'c') return 12;
+        break;
+      default:
+        break;
+    }
+    return -1;
+  }
+
+  /**
+   * Days since 1970-01-01 of a proleptic Gregorian date
+   */
+  static long epochDay(int year, int month, int day) {
+    long y = (month <= 2) ? year - 1 : year;
+    long era = Math.floorDiv(y, 400);
+    long yearOfEra = y - era * 400;
+    long dayOfYear = (153 * (month + ((month > 2) ? -3 : 9)) + 2) / 5 + day - 1;
+    long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+    return era * 146097 + dayOfEra - 719468;
+  }
+
+  /**
+   * Epoch milliseconds (UTC) of a date and time
+   */
+  static long epochMillis(int year, int month, int day, int hour, int minute, int second) {
+    return ((epochDay(year, month, day) * 24 + hour) * 60 * 60 + minute * 60 + second) * 1000L;
+  }
+
+  /**
+   * Check that a header ending at index end is followed by a blank or by the end of the line
+   * @return the header length including the blank, or -1
+   */
+  static int endOfHeader(CharSequence str, int end) {
+    if (end == str.length()) {
+      return end;
+    }
+    char c = str.charAt(end);
+    return (c == ' ' || c == '\t') ? end + 1 : -1;
+  }
+
+}
@@ -19,6 +19,7 @@ package iplom;
 
 import static java.lang.System.out;
 import java.io.*;
+import java.nio.charset.Charset;
 import java.util.*;
 
 
@@ -35,6 +36,11 @@ public class IPLoM {
    */
   private String delimiter = " []=:()/|\'\"";
   
+  /**
+   * The delimiter compiled into a char lookup table
+   */
+  private DelimiterTokenizer tokenizer = new DelimiterTokenizer(delimiter);
+  
   /**
    * Define the partition support threshold
    * Default: 0.00
@@ -59,6 +65,78 @@ public class IPLoM {
    */
   private File sourceFile = null;
   
+  /**
+   * Define whether Step 1 memory-maps the source file and ingests it in parallel byte ranges
+   * Default: false
+   */
+  private boolean mappedIngestion = false;
+  
+  /**
+   * Define the number of worker threads used by the parallel modes
+   * Default: number of available processors
+   */
+  private int parallelism = Runtime.getRuntime().availableProcessors();
+  
+  /**
+   * Define whether Step 2 runs every token size partition as a ForkJoin task
+   * Default: false
+   */
+  private boolean parallelExecution = false;
+  
+  /**
+   * Define whether a gzip source file is decompressed on background threads, overlapping
+   * Step 1 (members of a multi-member file are decompressed in parallel, see GzipInput)
+   * Default: false, it is decompressed by the reading thread
+   */
+  private boolean pipelinedDecompression = false;
+  
+  /**
+   * Define the global token dictionary, every log is carried as a row of token IDs from Step 2 on
+   * Out-of-core, it only holds the tokens of the Step 1 bucket being mined: it is cleared
+   * before each bucket (see dicoverLogTemplateOutOfCore)
+   */
+  private final TokenDictionary dictionary = new TokenDictionary();
+  
+  /**
+   * Define the detector of the header (time-stamp) which leads every log record
+   * Default: syslog "MMM dd HH:mm:ss "
+   */
+  private RecordHeaderDetector headerDetector = new SyslogHeaderDetector();
+  
+  /**
+   * Define the memory budget (bytes) of the out-of-core mode
+   * Above it, Steps 1 to 3 spill their partitions to temporary files, and the next steps
+   * process one partition at a time (see dicoverLogTemplateOutOfCore). The token
+   * dictionary is not counted: it only holds the tokens of one token size bucket.
+   * Default: 0, everything is kept in memory
+   */
+  private long memoryBudget = 0;
+  
+  /**
+   * Define the directory of the temporary spill files
+   * Default: null, java.io.tmpdir
+   */
+  private File spillDirectory = null;
+  
+  /**
+   * Names of the mapping types of Step 3, by type number (see determineMappingType)
+   */
+  private static final String[] MAPPING_TYPES = { "none", "1-1", "1-M", "M-1", "M-M" };
+  
+  /**
+   * Define the sink receiving the messages, partitions and templates of the steps
+   * Default: NoOpResultSink, nothing is printed (see DebugResultSink). The results go to
+   * a file only when asked (see AsyncFileResultSink, AssignmentFileSink): a miner has no
+   * output file of its own, and writing one next to the source file would fail for
+   * read-only log directories and double the I/O of runs which only use the templates.
+   */
+  private ResultSink resultSink = new NoOpResultSink();
+  
+  /**
+   * Define the counters and timers of the steps (see IPLoMMetrics)
+   */
+  private final IPLoMMetrics metrics = new IPLoMMetrics();
+  
   
   /* ------------------------------------------------------------------------------------ */
   /*                                  Constructors                                        */
@@ -89,11 +167,63 @@ public class IPLoM {
     return this.sourceFile;
   }
   
+  /**
+   * Set the detector of the record header (time-stamp)
+   */
+  public void setRecordHeaderDetector(RecordHeaderDetector headerDetector) {
+    this.headerDetector = headerDetector;
+  }
+  
+  /**
+   * Get the detector of the record header (time-stamp)
+   */
+  public RecordHeaderDetector getRecordHeaderDetector() {
+    return this.headerDetector;
+  }
+  
+  /**
+   * Get the tokenizer compiled from the delimiter
+   */
+  DelimiterTokenizer getTokenizer() {
+    return this.tokenizer;
+  }
+  
+  /**
+   * Set the sink receiving the messages, partitions and templates of the steps
+   * The sink is not closed by the miner.
+   */
+  public void setResultSink(ResultSink resultSink) {
+    this.resultSink = resultSink;
+  }
+  
+  /**
+   * Get the sink receiving the messages, partitions and templates of the steps
+   */
+  public ResultSink getResultSink() {
+    return this.resultSink;
+  }
+  
+  /**
+   * Get the counters and timers of the steps, they can be published over JMX
+   */
+  public IPLoMMetrics getMetrics() {
+    return this.metrics;
+  }
+  
+  /**
+   * Get the token dictionary used to encode the logs
+   * After an out-of-core run, it only holds the tokens of the last token size bucket.
+   */
+  public TokenDictionary getDictionary() {
+    return this.dictionary;
+  }
+  
   /**
    * Set the delimiter
    */
   public void setDelimiter(String delimiter) {
     this.delimiter = delimiter;
+    this.tokenizer = new DelimiterTokenizer(delimiter);
   }
   
   /**
@@ -132,6 +262,135 @@ public class IPLoM {
     this.upperBound = upperBound;
   }
   
+  /**
+   * Get the delimiter
+   */
+  public String getDelimiter() {
+    return this.delimiter;
+  }
+  
+  /**
+   * Get the partition support threshold
+   */
+  public double getPartitionSupportThreshold() {
+    return this.partitionSupportThreshold;
+  }
+  
+  /**
+   * Get the cluster goodness threshold
+   */
+  public double getClusterGoodnessThreshold() {
+    return this.clusterGoodnessThreshold;
+  }
+  
+  /**
+   * Get lower bound
+   */
+  public double getLowerBound() {
+    return this.lowerBound;
+  }
+  
+  /**
+   * Get upper bound
+   */
+  public double getUpperBound() {
+    return this.upperBound;
+  }
+  
+  /**
+   * Get whether Step 1 uses the memory-mapped ingestion
+   */
+  public boolean isMappedIngestion() {
+    return this.mappedIngestion;
+  }
+  
+  /**
+   * Get whether the partition steps run in parallel
+   */
+  public boolean isParallelExecution() {
+    return this.parallelExecution;
+  }
+  
+  /**
+   * Get whether a gzip source file is decompressed on background threads
+   */
+  public boolean isPipelinedDecompression() {
+    return this.pipelinedDecompression;
+  }
+  
+  /**
+   * Get the memory budget of the out-of-core mode, 0 if everything is kept in memory
+   */
+  public long getMemoryBudget() {
+    return this.memoryBudget;
+  }
+  
+  /**
+   * Get the directory of the temporary spill files, null for java.io.tmpdir
+   */
+  public File getSpillDirectory() {
+    return this.spillDirectory;
+  }
+  
+  /**
+   * A new miner with the parameters of this one (delimiter, thresholds, bounds, header
+   * detector, parallel execution), an empty token dictionary and no source file
+   * It mines given records (see partitionByTokenSize(List)) and can be dropped with its tokens.
+   */
+  IPLoM newMinerWithParameters() {
+    IPLoM miner = new IPLoM();
+    miner.setDelimiter(this.delimiter);
+    miner.setPartitionSupportThreshold(this.partitionSupportThreshold);
+    miner.setClusterGoodnessThreshold(this.clusterGoodnessThreshold);
+    miner.setBounds(this.lowerBound, this.upperBound);
+    miner.setRecordHeaderDetector(this.headerDetector);
+    miner.setParallelExecution(this.parallelExecution);
+    miner.setParallelism(this.parallelism);
+    return miner;
+  }
+  
+  /**
+   * Set whether Step 1 uses the memory-mapped, chunk-parallel ingestion
+   */
+  public void setMappedIngestion(boolean mappedIngestion) {
+    this.mappedIngestion = mappedIngestion;
+  }
+  
+  /**
+   * Set whether the partition steps run in parallel
+   */
+  public void setParallelExecution(boolean parallelExecution) {
+    this.parallelExecution = parallelExecution;
+  }
+  
+  /**
+   * Set whether a gzip source file is decompressed on background threads
+   */
+  public void setPipelinedDecompression(boolean pipelinedDecompression) {
+    this.pipelinedDecompression = pipelinedDecompression;
+  }
+  
+  /**
+   * Set the memory budget (bytes) of the out-of-core mode, 0 to keep everything in memory
+   */
+  public void setMemoryBudget(long memoryBudget) {
+    this.memoryBudget = memoryBudget;
+  }
+  
+  /**
+   * Set the directory of the temporary spill files
+   */
+  public void setSpillDirectory(File spillDirectory) {
+    this.spillDirectory = spillDirectory;
+  }
+  
+  /**
+   * Set the number of worker threads
+   */
+  public void setParallelism(int parallelism) {
+    this.parallelism = parallelism;
+  }
+  
   /**
    * Check the token type
    */
@@ -172,7 +431,7 @@ public class IPLoM {
     
     try {
       out.println("\nRead the file by lines.");
-      reader = new BufferedReader(new FileReader(this.sourceFile));
+      reader = openSourceReader();
       String tempString = null;
       int currentLine = 1;
       
@@ -196,6 +455,41 @@ public class IPLoM {
   }
   
   
+  /**
+   * Open the source file by lines, decompressing it if it is a gzip file
+   */
+  private BufferedReader openSourceReader() throws IOException {
+    if (!GzipInput.isGzip(this.sourceFile)) {
+      return new BufferedReader(new FileReader(this.sourceFile));
+    }
+    InputStream input = GzipInput.open(this.sourceFile, this.pipelinedDecompression ? this.parallelism : 0);
+    return new BufferedReader(new InputStreamReader(input, Charset.defaultCharset()), 1 << 16);
+  }
+  
+  /**
+   * Whether the mapped ingestion can read the source file: gzip files are read serially
+   */
+  private boolean canMapSource() {
+    if (isCompressedSource()) {
+      this.resultSink.message("Compressed source file, mapped ingestion is not used.");
+      return false;
+    }
+    return true;
+  }
+  
+  /**
+   * Whether the source file is a gzip file
+   */
+  boolean isCompressedSource() {
+    try {
+      return GzipInput.isGzip(this.sourceFile);
+    } catch (IOException e) {
+      // Reported by the reader of the file
+      return false;
+    }
+  }
+  
+  
   /**
    * Process a single line of the log
    * @param 
@@ -214,8 +508,7 @@ public class IPLoM {
    * String str: input string
    */
 	private int tokenSizeOfString(String str) {
-	  StringTokenizer tokens = new StringTokenizer(str, this.delimiter);
-	  return tokens.countTokens();
+	  return this.tokenizer.countTokens(str);
 	}
 
 	
@@ -236,46 +529,63 @@ public class IPLoM {
 	 */
   public Map<Integer, ArrayList<String>> partitionByTokenSize() {
     
-    out.println("\nPartition by token size.");
+    this.resultSink.message("\nPartition by token size.");
+    
+    if (this.mappedIngestion && canMapSource()) {
+      return partitionByTokenSize(0, Long.MAX_VALUE);
+    }
+    
+    return partitionByTimeWindow(Long.MIN_VALUE, Long.MAX_VALUE);
+    
+  }
+  
+  
+  /**
+   * Partition the log records of a time window based on the #tokens
+   * The source file is read serially; a record is kept if the time of its time-stamp
+   * (see RecordHeaderDetector) is within the window.
+   * @param 
+   * long fromMillis: start of the window, epoch milliseconds (inclusive)
+   * long toMillis: end of the window, epoch milliseconds (exclusive)
+   */
+  public Map<Integer, ArrayList<String>> partitionByTimeWindow(long fromMillis, long toMillis) {
     
     BufferedReader reader = null;
     Map<Integer, ArrayList<String>> partitionsBySize = new HashMap<>();
-    String timeRegex = "^((Jan|Feb|Mar|Apr|Jun|Jul|Aug|Sep|Oct|Nov|Dec) (0?[0-9]|[12][0-9]|3[01]) (([0-1][0-9]|2[0-4]):[0-5][0-9]:[0-5][0-9]) )"; 
+    boolean wholeFile = (fromMillis == Long.MIN_VALUE && toMillis == Long.MAX_VALUE);
+    long startTime = System.nanoTime();
     
     try {
-      out.println("Partition by token size.");
-      reader = new BufferedReader(new FileReader(this.sourceFile));
-      String currString = reader.readLine();
-      String addedString = currString;
-      //int currentLine = 1;
-      do {
+      this.resultSink.message("Partition by token size.");
+      reader = openSourceReader();
+      String currString = null;
+      String addedString = null;
+      long currentLine = 0;
+      long recordLine = 0;
+      while ((currString = reader.readLine()) != null) {
       	
+        currentLine ++;
         /* 
          * Check whether it is a line without time-stamp
          * And merge the logs without time-stamp with their nearest previous one with time-stamp
          */
-      	if (currString.length() < 16) {
-      		addedString = addedString + " " + currString;
-      		continue;
-      	} else if (!currString.substring(0, 16).matches(timeRegex)) {
-      		addedString = addedString + " " + currString;
-      		continue;
+      	if (!isRecordHeader(currString)) {
+      	  this.metrics.lineRead(currString.length() + 1, addedString != null);
+      	  recordLine = (addedString == null) ? currentLine : recordLine;
+      		addedString = (addedString == null) ? currString : addedString + " " + currString;
       	} else {
-      		addedString = addedString.substring(16, addedString.length());
-
-          Integer tokenSize = tokenSizeOfString(addedString);
-          if (partitionsBySize.containsKey(tokenSize)) {
-            partitionsBySize.get(tokenSize).add(addedString);
-          } else {
-            ArrayList<String> tempList = new ArrayList<>();
-            tempList.add(addedString);
-            partitionsBySize.put(tokenSize, tempList);
-          }
-          //currentLine ++;
+      	  this.metrics.lineRead(currString.length() + 1, false);
+      	  if (addedString != null && (wholeFile || isInWindow(addedString, fromMillis, toMillis))) {
+      	    addRecordBySize(partitionsBySize, addedString, recordLine, (int)(currentLine - recordLine));
+      	  }
+      	  recordLine = currentLine;
       		addedString = currString;
       	}
         
-      } while ((currString = reader.readLine()) != null) ;
+      }
+      if (addedString != null && (wholeFile || isInWindow(addedString, fromMillis, toMillis))) {
+        addRecordBySize(partitionsBySize, addedString, recordLine, (int)(currentLine - recordLine + 1));
+      }
       reader.close();
       
     } catch (IOException e) {
@@ -288,183 +598,472 @@ public class IPLoM {
         }
       }
     }
-    /* -------------------- For debugging ---------------------- */
-    //printSizePartition(partitionsBySize);
-    /* -------------------- For debugging ---------------------- */
+    /* -------------------- For debugging ---------------------- */
+    //printSizePartition(partitionsBySize);
+    /* -------------------- For debugging ---------------------- */
+    
+    tokenSizeFinished(partitionsBySize, startTime);
+    return partitionsBySize;
+    
+  }
+  
+  
+  /**
+   * Partition the log records of a byte range of the source file based on the #tokens
+   * The file is memory-mapped and the range is split into chunks ending on record boundaries,
+   * which are processed in parallel. A record belongs to the range its time-stamp line starts in.
+   * @param 
+   * long start: first byte of the range
+   * long end: first byte after the range
+   * @throws IllegalStateException if the source file is a gzip file, its bytes are not text
+   * @throws UncheckedIOException if the ingestion fails, e.g. a range without record boundary
+   */
+  public Map<Integer, ArrayList<String>> partitionByTokenSize(long start, long end) {
+    
+    if (isCompressedSource()) {
+      throw new IllegalStateException("Byte ranges of a gzip file can not be mapped: " + this.sourceFile);
+    }
+    Map<Integer, ArrayList<String>> partitionsBySize;
+    long startTime = System.nanoTime();
+    
+    try {
+      MappedLogIngestor ingestor = new MappedLogIngestor(this, this.sourceFile, this.parallelism);
+      partitionsBySize = ingestor.partition(start, end);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to ingest " + this.sourceFile, e);
+    }
+    
+    tokenSizeFinished(partitionsBySize, startTime);
+    return partitionsBySize;
+    
+  }
+  
+  
+  /**
+   * Partition the given log records based on the #tokens, instead of reading the source file
+   * @param 
+   * List<String> records: log records, each with its time-stamp and its lines without time-stamp merged
+   * The records of a RecordList keep their lines; other records carry no line number,
+   * Step 4 assigns no line to their templates.
+   */
+  public Map<Integer, ArrayList<String>> partitionByTokenSize(List<String> records) {
+    
+    Map<Integer, ArrayList<String>> partitionsBySize = new HashMap<>();
+    long startTime = System.nanoTime();
+    for (int i = 0; i < records.size(); i++) {
+      addRecordBySize(partitionsBySize, records.get(i), RecordList.lineNumber(records, i), RecordList.lineCount(records, i));
+    }
+    
+    tokenSizeFinished(partitionsBySize, startTime);
+    return partitionsBySize;
+    
+  }
+  
+  
+  /**
+   * Partition the log messages based on the #tokens under the memory budget
+   * The buckets are spilled to temporary files whenever the budget is exceeded.
+   * With the mapped ingestion, the source file is ingested slice by slice.
+   * @return the buckets, to be loaded back one at a time and closed
+   */
+  SizePartitionSpiller partitionByTokenSizeSpilled() throws IOException {
+    return partitionByTokenSizeSpilled(0, Long.MAX_VALUE, Long.MIN_VALUE, Long.MAX_VALUE);
+  }
+  
+  
+  /**
+   * Partition the log records of a byte range or of a time window based on the #tokens
+   * under the memory budget
+   * A byte range is always ingested through the mapped file, slice by slice (see
+   * partitionByTokenSize(long, long)); a time window is read serially (see
+   * partitionByTimeWindow).
+   * @param 
+   * long start, long end: the byte range, [0, Long.MAX_VALUE) for the whole file
+   * long fromMillis, long toMillis: the time window, [Long.MIN_VALUE, Long.MAX_VALUE) for any time
+   */
+  private SizePartitionSpiller partitionByTokenSizeSpilled(long start, long end, long fromMillis, long toMillis) throws IOException {
+    
+    this.resultSink.message("\nPartition by token size (out-of-core).");
+    
+    boolean wholeFile = (start == 0 && end == Long.MAX_VALUE);
+    boolean anyTime = (fromMillis == Long.MIN_VALUE && toMillis == Long.MAX_VALUE);
+    if (!wholeFile && isCompressedSource()) {
+      throw new IllegalStateException("Byte ranges of a gzip file can not be mapped: " + this.sourceFile);
+    }
+    SizePartitionSpiller spiller = new SizePartitionSpiller(this.memoryBudget, this.spillDirectory);
+    long startTime = System.nanoTime();
+    try {
+      if (!wholeFile || (anyTime && this.mappedIngestion && canMapSource())) {
+        /*
+         * A slice takes about twice its bytes once decoded, keep it well below the budget
+         */
+        long sliceSize = Math.max(this.memoryBudget / 4, 1L << 20);
+        long rangeEnd = Math.min(end, this.sourceFile.length());
+        MappedLogIngestor ingestor = new MappedLogIngestor(this, this.sourceFile, this.parallelism);
+        for (long sliceStart = start; sliceStart < rangeEnd; sliceStart += sliceSize) {
+          spiller.addAll(ingestor.partition(sliceStart, Math.min(rangeEnd, sliceStart + sliceSize)));
+        }
+      } else {
+        try (BufferedReader reader = openSourceReader()) {
+          String currString = null;
+          String addedString = null;
+          long currentLine = 0;
+          long recordLine = 0;
+          while ((currString = reader.readLine()) != null) {
+            currentLine ++;
+            if (!isRecordHeader(currString)) {
+              this.metrics.lineRead(currString.length() + 1, addedString != null);
+              recordLine = (addedString == null) ? currentLine : recordLine;
+              addedString = (addedString == null) ? currString : addedString + " " + currString;
+            } else {
+              this.metrics.lineRead(currString.length() + 1, false);
+              if (addedString != null && (anyTime || isInWindow(addedString, fromMillis, toMillis))) {
+                spillRecordBySize(spiller, addedString, recordLine, (int)(currentLine - recordLine));
+              }
+              recordLine = currentLine;
+              addedString = currString;
+            }
+          }
+          if (addedString != null && (anyTime || isInWindow(addedString, fromMillis, toMillis))) {
+            spillRecordBySize(spiller, addedString, recordLine, (int)(currentLine - recordLine + 1));
+          }
+        }
+      }
+    } catch (IOException e) {
+      spiller.close();
+      throw e;
+    }
+    
+    /*
+     * The bucket sizes are only known once loaded, Steps 2 and 3 record the peak partition size
+     */
+    this.metrics.tokenSizeFinished(spiller.sizes().size(), 0, System.nanoTime() - startTime);
+    return spiller;
+    
+  }
+  
+  
+  /**
+   * Strip the time-stamp of a merged log record and add it into the spilled bucket of its token size
+   */
+  private void spillRecordBySize(SizePartitionSpiller spiller, String record, long lineNumber, int lineCount) throws IOException {
+    String message = stripRecordHeader(record);
+    Integer tokenSize = tokenSizeOfString(message);
+    this.metrics.recordAdded(tokenSize);
+    spiller.add(tokenSize, message, lineNumber, lineCount);
+  }
+  
+  
+  /**
+   * Record the partitions and the time of a Step 1 run in the metrics
+   */
+  private void tokenSizeFinished(Map<Integer, ArrayList<String>> partitionsBySize, long startTime) {
+    int peakSize = 0;
+    for (ArrayList<String> partition: partitionsBySize.values()) {
+      peakSize = Math.max(peakSize, partition.size());
+    }
+    this.metrics.tokenSizeFinished(partitionsBySize.size(), peakSize, System.nanoTime() - startTime);
+  }
+  
+  
+  /**
+   * Check whether a line is led by a time-stamp, i.e. starts a new log record
+   */
+  boolean isRecordHeader(CharSequence line) {
+    return this.headerDetector.match(line) != RecordHeaderDetector.NO_MATCH;
+  }
+  
+  
+  /**
+   * Strip the time-stamp of a merged log record and add it into the partition of its token size
+   * The partitions are RecordLists, carrying the lines of each record.
+   * @param 
+   * long lineNumber: line of the record in the source file, RecordList.NO_LINE if it has none
+   * int lineCount: #lines of the record (its time-stamp line and the lines merged into it)
+   */
+  void addRecordBySize(Map<Integer, ArrayList<String>> partitionsBySize, String record, long lineNumber, int lineCount) {
+    
+    record = stripRecordHeader(record);
+    
+    Integer tokenSize = tokenSizeOfString(record);
+    this.metrics.recordAdded(tokenSize);
+    if (partitionsBySize.containsKey(tokenSize)) {
+      ((RecordList) partitionsBySize.get(tokenSize)).add(record, lineNumber, lineCount);
+    } else {
+      RecordList tempList = new RecordList();
+      tempList.add(record, lineNumber, lineCount);
+      partitionsBySize.put(tokenSize, tempList);
+    }
+    
+  }
+  
+  
+  /**
+   * Check whether the time-stamp of a log record is within a time window
+   * A record without time-stamp (only at the head of the file) is not.
+   */
+  private boolean isInWindow(String record, long fromMillis, long toMillis) {
+    long header = this.headerDetector.match(record);
+    if (header == RecordHeaderDetector.NO_MATCH) {
+      return false;
+    }
+    long epochMillis = RecordHeaderDetector.epochMillis(header);
+    return epochMillis >= fromMillis && epochMillis < toMillis;
+  }
+  
+  
+  /**
+   * Strip the time-stamp of a log record, if it has one
+   */
+  String stripRecordHeader(String record) {
+    long header = this.headerDetector.match(record);
+    if (header != RecordHeaderDetector.NO_MATCH) {
+      return record.substring(RecordHeaderDetector.headerLength(header), record.length());
+    }
+    return record;
+  }
+  
+  
+  /**
+   * Print the partitions based on token size
+   * Used for debugging
+   */
+  private void printSizePartition(Map<Integer, ArrayList<String>> partitionsBySize) {
+    //Map<Integer, ArrayList<String>> partitionsBySize = partitionByTokenSize();
+    for (Map.Entry<Integer, ArrayList<String>> entry: partitionsBySize.entrySet()) {
+      // out.println(entry.getKey() + " " + entry.getValue().size() + " " + entry.getValue());
+      out.println(entry.getKey() + " " + entry.getValue().size());
+      for (String oneLog: entry.getValue()) {
+        out.println(oneLog);
+      }
+    }
+  }
+  
+  
+  
+  
+  
+  
+  
+  
+  /* ------------------------------------------------------------------------------------ */
+  /*                        Step 2 - Partition by token position                          */
+  /* ------------------------------------------------------------------------------------ */
+  
+  /**
+   * partitionByTokenPosition
+   * Every log is encoded into a row of token IDs (see TokenDictionary),
+   * the rows of a partition are stored column by column (see ColumnarPartition)
+   * @return 
+   * Map<PartitionKey, ColumnarPartition> partitionByPosition
+   */
+  public Map<PartitionKey, ColumnarPartition> partitionByTokenPosition() {    
+    return partitionByTokenPosition(partitionByTokenSize());
+  }
+  
+  
+  /**
+   * partitionByTokenPosition of the given Step 1 partitions
+   * @param 
+   * Map<Integer, ArrayList<String>> partitionsBySize: output of partitionByTokenSize
+   */
+  public Map<PartitionKey, ColumnarPartition> partitionByTokenPosition(Map<Integer, ArrayList<String>> partitionsBySize) {
+    
+    Map<PartitionKey, ColumnarPartition> partitionByPosition = new HashMap<>();
+    long startTime = System.nanoTime();
+    
+    this.resultSink.message("\nPartition by token position.");
+    
+    if (this.parallelExecution) {
+      /*
+       * Each size partition is a ForkJoin task, see ParallelPositionPartitioner
+       */
+      Map<Integer, Map<PartitionKey, ColumnarPartition>> subPartitionsBySize = 
+          new ParallelPositionPartitioner(this, this.parallelism).partition(partitionsBySize);
+      for (Map.Entry<Integer, Map<PartitionKey, ColumnarPartition>> sizeEntry: subPartitionsBySize.entrySet()) {
+        checkPartitionSupport(sizeEntry.getValue(), partitionsBySize.get(sizeEntry.getKey()).size());
+        partitionByPosition.putAll(sizeEntry.getValue());
+      }
+    } else {
+      /*
+       * For each of the partition divided based on token size
+       */
+      for (Map.Entry<Integer, ArrayList<String>> partitionEntry: partitionsBySize.entrySet()) {
+        
+        //out.println(partitionEntry.getKey() + " " + partitionEntry.getValue().size() + " " + partitionEntry.getValue());
+        Integer tempSize = partitionEntry.getKey();
+        int rowCount = partitionEntry.getValue().size();
+        ColumnarPartition partition = new ColumnarPartition(tempSize, rowCount, partitionEntry.getValue() instanceof RecordList);
+        TokenCounter[] tokenCollection = encodeLogs(partitionEntry.getValue(), 0, rowCount, partition);
+        /* -------------------- For debugging ---------------------- */
+        // printTokenCollection(tokenCollection);
+        /* -------------------- For debugging ---------------------- */
+        
+        Map<PartitionKey, ColumnarPartition> subPartitions = splitByPosition(tempSize, partition, tokenCollection);
+        checkPartitionSupport(subPartitions, rowCount);
+        partitionByPosition.putAll(subPartitions);
+        
+      }
+    }
+    
+    this.resultSink.partitions(2, partitionByPosition, this.dictionary);
+
+    this.metrics.tokenPositionFinished(partitionByPosition, System.nanoTime() - startTime);
+    return partitionByPosition;
+    
+  }
+  
+  
+  /**
+   * Encode a range of logs (all of the same token size) into rows of token IDs
+   * and collect the tokens seen at each position of that range
+   * Ranges of the same partition are independent, their collections are merged with mergeTokenCollections
+   * @param 
+   * List<String> logs: logs of one size partition
+   * int from, int to: range of logs to encode
+   * ColumnarPartition partition: output, row i is the encoded log i
+   */
+  TokenCounter[] encodeLogs(List<String> logs, int from, int to, ColumnarPartition partition) {
+    
+    int tempSize = partition.tokenCount();
+    TokenCounter[] tokenCollection = newTokenCollection(tempSize);
+    
+    /*
+     * Token spans and interner are reused for every log, no substring is created for known tokens
+     */
+    DelimiterTokenizer.Spans spans = new DelimiterTokenizer.Spans();
+    TokenDictionary.Interner interner = this.dictionary.newInterner();
+    boolean withLineNumbers = partition.hasLineNumbers();
+    
+    for (int j = from; j < to; j++) {
+      String oneLog = logs.get(j);
+      this.tokenizer.tokenize(oneLog, spans);
+      if (withLineNumbers) {
+        partition.setLines(j, RecordList.lineNumber(logs, j), RecordList.lineCount(logs, j));
+      }
+      
+      for (int i = 0; i < tempSize; i++) {
+        int oneToken = interner.intern(oneLog, spans.offset(i), spans.length(i));
+        partition.set(j, i, oneToken); 
+        tokenCollection[i].add(oneToken);
+      }
+    }
     
-    return partitionsBySize;
+    return tokenCollection;
     
   }
   
   
   /**
-   * Print the partitions based on token size
-   * Used for debugging
+   * Add the token counts of another range into a token collection
    */
-  private void printSizePartition(Map<Integer, ArrayList<String>> partitionsBySize) {
-    //Map<Integer, ArrayList<String>> partitionsBySize = partitionByTokenSize();
-    for (Map.Entry<Integer, ArrayList<String>> entry: partitionsBySize.entrySet()) {
-      // out.println(entry.getKey() + " " + entry.getValue().size() + " " + entry.getValue());
-      out.println(entry.getKey() + " " + entry.getValue().size());
-      for (String oneLog: entry.getValue()) {
-        out.println(oneLog);
-      }
+  static void mergeTokenCollections(TokenCounter[] tokenCollection, TokenCounter[] otherCollection) {
+    for (int i = 0; i < tokenCollection.length; i++) {
+      tokenCollection[i].addAll(otherCollection[i]);
     }
   }
   
   
+  /**
+   * Create an empty token collection, one counter per token position
+   */
+  private static TokenCounter[] newTokenCollection(int tempSize) {
+    TokenCounter[] tokenCollection = new TokenCounter[tempSize];
+    for (int i = 0; i < tempSize; i++) {
+      tokenCollection[i] = new TokenCounter();
+    }
+    return tokenCollection;
+  }
   
   
-  
-  
-  
-  
-  /* ------------------------------------------------------------------------------------ */
-  /*                        Step 2 - Partition by token position                          */
-  /* ------------------------------------------------------------------------------------ */
-  
   /**
-   * partitionByTokenPosition
-   * @return 
-   * Map<ArrayList<Object>, ArrayList<ArrayList<String>>> partitionByPosition
+   * Split the encoded logs of one size partition by the tokens of the position with the lowest cardinality
+   * The rows are gathered into their sub-partitions column by column, keeping their order
+   * @param 
+   * Integer tempSize: token size of the partition
+   * ColumnarPartition partition: the encoded logs
+   * TokenCounter[] tokenCollection: tokens seen at each position
    */
-  public Map<ArrayList<Object>, ArrayList<ArrayList<String>>> partitionByTokenPosition() {    
+  Map<PartitionKey, ColumnarPartition> splitByPosition(Integer tempSize, ColumnarPartition partition, 
+                                                       TokenCounter[] tokenCollection) {
     
-    Map<Integer, ArrayList<String>> partitionsBySize = partitionByTokenSize();
-    Map<Integer, ArrayList<ArrayList<String>>> matirxBySize = new HashMap<>();
-    Map<ArrayList<Object>, ArrayList<ArrayList<String>>> partitionByPosition = new HashMap<>();
+    Map<PartitionKey, ColumnarPartition> subPartitions = new HashMap<>();
     
-    out.println("\nPartition by token position.");
+    /*
+     * Calculate the partitioning position:
+     *    Reason for not merging it with the encoding loop:
+     *    Merging with above for-loop adding lots of computation, when loop is rolling
+     */
+    int chosenPosition = positionCardinality(tokenCollection).getLeft();
+    //out.println("Position with lowest cardinality: " + choosenPosition);
     
+    //out.println(tempSize);
+    PartitionKey sizeKey = PartitionKey.bySize(tempSize);
     /*
-     * For each of the partition divided based on token size
+     * Every distinct token of the chosen column is a sub-partition (bucket)
      */
-    for (Map.Entry<Integer, ArrayList<String>> partitionEntry: partitionsBySize.entrySet()) {
-      
-      //out.println(partitionEntry.getKey() + " " + partitionEntry.getValue().size() + " " + partitionEntry.getValue());
-      Integer tempSize = partitionEntry.getKey();
-      matirxBySize.put(tempSize, new ArrayList<ArrayList<String>>());
-      List<HashMap<String, Integer>> tokenCollection = new ArrayList<>(tempSize);
-      
-      while(tokenCollection.size() < tempSize) {
-        tokenCollection.add(new HashMap<String, Integer>());
-      }
-      
-      for (String oneLog: partitionEntry.getValue()) {
-        StringTokenizer oneLogTokens = new StringTokenizer(oneLog, this.delimiter);
-        ArrayList<String> logArray = new ArrayList<>(oneLogTokens.countTokens());
-        
-        for (int i = 0; i < tempSize; i++) {
-          String oneToken = oneLogTokens.nextToken();
-          logArray.add(oneToken); 
-          HashMap<String, Integer> logEntry = tokenCollection.get(i);
-          logEntry.put(oneToken, logEntry.containsKey(oneToken) ? (logEntry.get(oneToken) + 1) : 1);
-        }
-        matirxBySize.get(tempSize).add(logArray);
-      }
-      /* -------------------- For debugging ---------------------- */
-      // printTokenCollection(tokenCollection);
-      /* -------------------- For debugging ---------------------- */
-      
-
-      /*
-       * Calculate the partitioning position:
-       *    Reason for putting it here instead of merging it with the above for-loop:
-       *    Merging with above for-loop adding lots of computation, when loop is rolling
-       */
-      int chosenPosition = positionCardinality(tokenCollection).getLeft();
-      //out.println("Position with lowest cardinality: " + choosenPosition);
-      
-      //out.println(tempSize);
-      for (ArrayList<String> logMatrix: matirxBySize.get(tempSize)) {
-        String key = logMatrix.get(chosenPosition);
-        ArrayList<Object> keyArray = new ArrayList<>();
-        keyArray.add(tempSize);
-        Pair<String, Integer> tokenPositionPair = new Pair<>(key, chosenPosition);
-        keyArray.add(tokenPositionPair);
-          
-        if (!partitionByPosition.containsKey(keyArray)){
-          //out.println(((Pair)keyArray.get(1)).getLeft());
-          partitionByPosition.put(keyArray, new ArrayList<ArrayList<String>>());
-        }
-        partitionByPosition.get(keyArray).add(logMatrix);
-      }
-      
-
-      /*
-       * Check PST (Partition Support Threshold)
-       */
-      for (Map.Entry<ArrayList<Object>, ArrayList<ArrayList<String>>> subPartitionEntry: partitionByPosition.entrySet()) {
-        if (subPartitionEntry.getKey().get(0) == tempSize) {
-          //out.println("Size: " + tempSize);
-          double partitionSupportRatio = (double)subPartitionEntry.getValue().size()/(double)partitionEntry.getValue().size();
-          out.println("" + partitionSupportRatio);
-        
-          if (partitionSupportRatio < partitionSupportThreshold) {
-            // TODO: Add lines from this partition into Outlier partition
-          }
-        }
-      }
-      
+    LocalIds bucketIds = new LocalIds(partition.rowCount());
+    int[] rowBuckets = bucketIds.localIds(partition.column(chosenPosition), partition.rowCount());
+    int[] bucketTokens = bucketIds.tokens();
+    List<ColumnarPartition> buckets = partition.split(rowBuckets, bucketTokens.length);
+    for (int i = 0; i < bucketTokens.length; i++) {
+      subPartitions.put(sizeKey.byPosition(chosenPosition, bucketTokens[i]), buckets.get(i));
     }
     
-    /* -------------------- For debugging ---------------------- */
-    printPartitionsByPosition(partitionByPosition);
-    //out.println(matirxBySize);
-    /* -------------------- For debugging ---------------------- */
-
-    return partitionByPosition;
+    return subPartitions;
     
   }
   
   
   /**
-   * Print the token collections, mainly for debugging
+   * Check PST (Partition Support Threshold) of the sub-partitions of one size partition
    * @param 
-   * List<HashMap<String, Integer>> tokenCollection
+   * int sizeOfPartition: #logs in the size partition
    */
-  private void printTokenCollection(List<HashMap<String, Object>> tokenCollection) {
-    for (HashMap<String, Object> logEntry: tokenCollection) {
-      out.println(logEntry);
+  private void checkPartitionSupport(Map<PartitionKey, ColumnarPartition> subPartitions, int sizeOfPartition) {
+    for (Map.Entry<PartitionKey, ColumnarPartition> subPartitionEntry: subPartitions.entrySet()) {
+      double partitionSupportRatio = (double)subPartitionEntry.getValue().rowCount()/(double)sizeOfPartition;
+      this.resultSink.partitionSupport(subPartitionEntry.getKey(), partitionSupportRatio, this.dictionary);
+    
+      if (partitionSupportRatio < partitionSupportThreshold) {
+        // TODO: Add lines from this partition into Outlier partition
+      }
     }
   }
-  
 
+  
+  
   /**
-   * Print the partitions by position, mainly for debugging
+   * Print the token collections, mainly for debugging
    * @param 
-   * Map<ArrayList<Object>, ArrayList<ArrayList<String>>> partitionByPosition
-   */
-  @SuppressWarnings("rawtypes")
-  private void printPartitionsByPosition(Map<ArrayList<Object>, ArrayList<ArrayList<String>>> partitionByPosition) {
-    //int i = 0; // int i, for debugging
-    for (Map.Entry<ArrayList<Object>, ArrayList<ArrayList<String>>> entry: partitionByPosition.entrySet()) {
-      ArrayList<Object> key = entry.getKey();
-      /* if-statement for debugging */
-      if ((Integer)key.get(0) == 8) {
-        out.println(key.get(0) + " " + ((Pair)key.get(1)).getLeft() + " " + ((Pair)key.get(1)).getRight() + " " + entry.getValue());
-        //i ++;
+   * TokenCounter[] tokenCollection
+   */
+  private void printTokenCollection(TokenCounter[] tokenCollection) {
+    for (TokenCounter logEntry: tokenCollection) {
+      Map<String, Integer> decodedEntry = new HashMap<>();
+      for (int tokenId: logEntry.tokens()) {
+        decodedEntry.put(this.dictionary.token(tokenId), logEntry.count(tokenId));
       }
+      out.println(decodedEntry);
     }
-    //out.println(i);
   }
   
-
+  
   /**
    * Determine the token position with lowest cardinality with respect to set of unique tokens
    * @param 
-   * List<HashMap<String, Integer>> tokenCollection
+   * TokenCounter[] tokenCollection
    */
-  private Pair<Integer, ArrayList<Integer>> positionCardinality(List<HashMap<String, Integer>> tokenCollection) {
+  private Pair<Integer, ArrayList<Integer>> positionCardinality(TokenCounter[] tokenCollection) {
   	
     int position = 0;
     int lowestCardinality = Integer.MAX_VALUE;
-    int tempSize = tokenCollection.size();
+    int tempSize = tokenCollection.length;
     // Keep tack of the cardinality at each position
     ArrayList<Integer> cardinality = new ArrayList<>();
     
     for (int j = 0; j < tempSize; j++) {
-      int tempCardinality = tokenCollection.get(j).size();
+      int tempCardinality = tokenCollection[j].cardinality();
       cardinality.add(tempCardinality);
       
       /*
@@ -483,26 +1082,10 @@ public class IPLoM {
   
   /**
    * Determine the token collection information of a partition
+   * One sequential scan per column
    */
-  private List<HashMap<String, Integer>> tokenCollection(Map.Entry<ArrayList<Object>, ArrayList<ArrayList<String>>> partition){
-    
-    Integer tempSize = (Integer)(partition.getKey()).get(0);
-    List<HashMap<String, Integer>> tokenCollection = new ArrayList<>(tempSize);
-    
-    while(tokenCollection.size() < tempSize) {
-      tokenCollection.add(new HashMap<String, Integer>());
-    }
-    
-    for (ArrayList<String> logArray: partition.getValue()) {
-      for (int i = 0; i < tempSize; i++) {
-        String oneToken = logArray.get(i);
-        HashMap<String, Integer> logEntry = tokenCollection.get(i);
-        logEntry.put(oneToken, logEntry.containsKey(oneToken) ? (logEntry.get(oneToken) + 1) : 1);
-      }
-    }
-    
-    return tokenCollection;
-    
+  private TokenCounter[] tokenCollection(Map.Entry<PartitionKey, ColumnarPartition> partition){
+    return partition.getValue().tokenCollection();
   }
   
 
@@ -519,17 +1102,33 @@ public class IPLoM {
   /**
    * partitionByTokenBijection
    * @return
-   * Map<ArrayList<Object>, ArrayList<ArrayList<String>>> partitionByBijection
+   * Map<PartitionKey, ColumnarPartition> partitionByBijection
+   */
+  public Map<PartitionKey, ColumnarPartition> partitionByTokenBijection() {
+    return partitionByTokenBijection(partitionByTokenPosition());
+  }
+  
+  
+  /**
+   * partitionByTokenBijection of the given Step 2 partitions
+   * @param 
+   * Map<PartitionKey, ColumnarPartition> partitionByPosition: output of partitionByTokenPosition
    */
-  public Map<ArrayList<Object>, ArrayList<ArrayList<String>>> partitionByTokenBijection() {
+  public Map<PartitionKey, ColumnarPartition> partitionByTokenBijection(Map<PartitionKey, ColumnarPartition> partitionByPosition) {
     
-    Map<ArrayList<Object>, ArrayList<ArrayList<String>>> partitionByPosition = partitionByTokenPosition();
-    Map<ArrayList<Object>, ArrayList<ArrayList<String>>> partitionByBijection = new HashMap<>();
+    Map<PartitionKey, ColumnarPartition> partitionByBijection = new HashMap<>();
+    long startTime = System.nanoTime();
     
-    out.println("\nPartition by token bijection.");
+    this.resultSink.message("\nPartition by token bijection.");
     
-    for (Map.Entry<ArrayList<Object>, ArrayList<ArrayList<String>>> partitionEntry: partitionByPosition.entrySet()) {
-      List<HashMap<String, Integer>> tokenCollection = tokenCollection(partitionEntry);
+    for (Map.Entry<PartitionKey, ColumnarPartition> partitionEntry: partitionByPosition.entrySet()) {
+      /*
+       * Flight Recorder event of this partition, its fields are only filled when recorded
+       */
+      SplitDecisionEvent splitEvent = new SplitDecisionEvent();
+      splitEvent.begin();
+      
+      TokenCounter[] tokenCollection = tokenCollection(partitionEntry);
       Pair<Integer, ArrayList<Integer>> positionCardinality = positionCardinality(tokenCollection);
       Pair<Integer, Integer> positionPair = determineP1P2(partitionEntry, tokenCollection, positionCardinality);
       Integer P1 = positionPair.getLeft();
@@ -540,173 +1139,214 @@ public class IPLoM {
          * Add this partition to output partition 
          * No need for further partitioning
          */
-        ArrayList<Object> tempKey = partitionEntry.getKey();
-        tempKey.add("No BI");
-        partitionByBijection.put(tempKey, partitionEntry.getValue());
+        partitionByBijection.put(partitionEntry.getKey().noBijection(), partitionEntry.getValue());
+        commitSplitDecision(splitEvent, partitionEntry, tokenCollection, -1, -1, 0, 1, 0);
       } else {
-        HashMap<String, Integer> tokensSet1 = tokenCollection.get(P1);
-        HashMap<String, Integer> tokensSet2 = tokenCollection.get(P2);
+        TokenCounter tokensSet1 = tokenCollection[P1];
         Integer splitPosition = 0;
-        HashMap<String, Integer> removedTokenSet = new HashMap<>();
+        
+        /*
+         * Index the partition once: tokens at P1/P2, their row counts and their co-occurring tokens
+         */
+        BijectionIndex bijectionIndex = new BijectionIndex(partitionEntry.getValue(), P1, P2);
+        
+        /*
+         * Key of each output partition, indexed by bucket
+         */
+        List<PartitionKey> bucketKeys = new ArrayList<>();
         
         Integer partitionCount = 1;
-        for (Map.Entry<String, Integer> tokenEntry: tokensSet1.entrySet()) {
+        int mappings = 0;
+        int partitionSize = partitionEntry.getValue().rowCount();
+        for (int tokenId: tokensSet1.tokens()) {
           /*
-           * If this token is in the removedTokenSet
+           * If this token is already covered by a mapping
            * That means it has been passed
            */
-          if (removedTokenSet.containsKey(tokenEntry.getKey())) {
+          if (bijectionIndex.isCovered(tokenId)) {
             continue;
           }
+          MappingDecisionEvent mappingEvent = new MappingDecisionEvent();
+          mappingEvent.begin();
+          mappings ++;
           
           /*
            * Determine the mapping type and also return the tokens covered by this mapping.
            */
-          Pair<Integer, Pair<HashMap<String, Integer>, HashMap<String, Integer>>> mappingPair = 
-              determineMappingType(partitionEntry, tokenEntry, P1, P2, tokensSet1, tokensSet2);
+          Pair<Integer, Pair<TokenCounter, TokenCounter>> mappingPair = 
+              determineMappingType(bijectionIndex, tokenId);
           /*
            * The mapping type
            */
           Integer mappingType = mappingPair.getLeft();
           /*
            * The sub-sets for above type of mapping.
-           * The tokens form these sub-sets will be removed from S1 and S2.
+           * The tokens form these sub-sets are marked as covered in the index.
            */
-          Pair<HashMap<String, Integer>, HashMap<String, Integer>> setPair = mappingPair.getRight();
-          /*
-           * Move all these sub-set tokens into removedTokenSet.
-           */
-          removedTokenSet.putAll(setPair.getLeft());
+          Pair<TokenCounter, TokenCounter> setPair = mappingPair.getRight();
 
           
           /*
            * Determining the split position based on the mapping type
            */
+          int splitRank = 0;
           if (mappingType == 1) {
             /* ------------------- mapping: 1-1 ------------------- */
             splitPosition = P1;
           } else if (mappingType == 2) {
             /* ------------------- mapping: 1-M ------------------- */
-            HashMap<String, Integer> tempTokenSet = setPair.getRight();
-            splitPosition = (getRankPosition(partitionEntry, tempTokenSet, mappingType, P2) == 1) ? P1 : P2;
+            TokenCounter tempTokenSet = setPair.getRight();
+            splitRank = getRankPosition(tempTokenSet, mappingType);
+            splitPosition = (splitRank == 1) ? P1 : P2;
           } else if (mappingType == 3) {
             /* ------------------- mapping: M-1 ------------------- */
-            HashMap<String, Integer> tempTokenSet = setPair.getLeft();
-            splitPosition = (getRankPosition(partitionEntry, tempTokenSet, mappingType, P1) == 2) ? P2 : P1;
+            TokenCounter tempTokenSet = setPair.getLeft();
+            splitRank = getRankPosition(tempTokenSet, mappingType);
+            splitPosition = (splitRank == 2) ? P2 : P1;
           } else if (mappingType == 4) {
             /* ------------------- mapping: M-M ------------------- */
             Boolean fromStep1 = false; // TODO: check the partitions from Step1 or Step2
             if (fromStep1) {
-              splitPosition = (setPair.getLeft().size() < setPair.getRight().size())? P1 : P2;
+              splitPosition = (setPair.getLeft().cardinality() < setPair.getRight().cardinality())? P1 : P2;
             } else {
-              ArrayList<ArrayList<String>> tempPartition = new ArrayList<>();
-              for (ArrayList<String> logMatrix: partitionEntry.getValue()) {
-                if (setPair.getLeft().containsKey(logMatrix.get(P1))) {
-                  tempPartition.add(logMatrix);
-                }
+              /*
+               * All the lines of this mapping go to one partition
+               */
+              PartitionKey tempKey = partitionEntry.getKey().manyToMany(partitionCount++);
+              for (int tempToken: setPair.getLeft().tokens()) {
+                bijectionIndex.assignBucket(true, tempToken, bucketKeys.size());
               }
-              partitionEntry.getValue().removeAll(tempPartition);
-              ArrayList<Object> tempKey = partitionEntry.getKey();
-              tempKey.add("M-M" + " " + (partitionCount++).toString());
-              partitionByBijection.put(tempKey, tempPartition);
+              bucketKeys.add(tempKey);
+              commitMappingDecision(mappingEvent, partitionSize, mappingType, setPair, splitRank, -1);
               continue;
             }
           }
           
-          HashMap<String, Integer> partitionTokenSet = (splitPosition == P1) ? setPair.getLeft() : setPair.getRight();
+          TokenCounter partitionTokenSet = (splitPosition == P1) ? setPair.getLeft() : setPair.getRight();
           
           /*
-           * TODO: 
-           * Split partition into new partitions based on splitPosition and setPair
-           * Then add them into output
+           * Split partition into new partitions based on splitPosition and setPair:
+           * every token at the split position gets its own output bucket
            */
-          Map<ArrayList<Object>, ArrayList<ArrayList<String>>> tempPartitionByBijection = new HashMap<>();
-          for (String tempToken: partitionTokenSet.keySet()) {
-            ArrayList<ArrayList<String>> tempPartition = new ArrayList<>();
-            for (ArrayList<String> logMatrix: partitionEntry.getValue()) {
-              if (tempToken == logMatrix.get(splitPosition)) {
-                tempPartition.add(logMatrix);
-              }
-            }
-            partitionEntry.getValue().removeAll(tempPartition);
-            ArrayList<Object> tempKey = partitionEntry.getKey();
-            tempKey.add(tempToken + " " + splitPosition.toString());
-            tempPartitionByBijection.put(tempKey, tempPartition);
+          for (int tempToken: partitionTokenSet.tokens()) {
+            PartitionKey tempKey = partitionEntry.getKey().byBijection(splitPosition, tempToken);
+            bijectionIndex.assignBucket(splitPosition == P1, tempToken, bucketKeys.size());
+            bucketKeys.add(tempKey);
           }
-          partitionByBijection.putAll(tempPartitionByBijection);
+          commitMappingDecision(mappingEvent, partitionSize, mappingType, setPair, splitRank, splitPosition);
           
           /*
-           * TODO: if partition is empty, move to the next partition
+           * If every line has its partition, move to the next partition
            */
-          if (partitionEntry.getValue().isEmpty()) {
+          if (bijectionIndex.isFullyAssigned()) {
             break;
           }
 
         }
         
         /*
-         * TODO: if partition is not empty, create a new partition with reminder lines
+         * Move the lines into their partitions in one pass
          */
-        if (!partitionEntry.getValue().isEmpty()) {
-          partitionEntry.getKey().add("Outliers");
-          partitionByBijection.put(partitionEntry.getKey(), partitionEntry.getValue());
+        List<ColumnarPartition> buckets = bijectionIndex.splitRows(partitionEntry.getValue(), bucketKeys.size());
+        for (int i = 0; i < bucketKeys.size(); i++) {
+          partitionByBijection.put(bucketKeys.get(i), buckets.get(i));
         }
+        
+        /*
+         * If lines are left without partition, create a new partition with reminder lines
+         */
+        ColumnarPartition outliers = buckets.get(bucketKeys.size());
+        if (!outliers.isEmpty()) {
+          partitionByBijection.put(partitionEntry.getKey().outliers(), outliers);
+          this.metrics.outliersFound(outliers.rowCount());
+        }
+        commitSplitDecision(splitEvent, partitionEntry, tokenCollection, P1, P2, mappings,
+                            bucketKeys.size() + (outliers.isEmpty() ? 0 : 1), outliers.rowCount());
 
       }
 
     }
     
-    /* -------------------- For debugging ---------------------- */
-    printPartitionByBijection(partitionByBijection);
-    /* -------------------- For debugging ---------------------- */
+    this.resultSink.partitions(3, partitionByBijection, this.dictionary);
     
+    this.metrics.tokenBijectionFinished(partitionByBijection, System.nanoTime() - startTime);
     return partitionByBijection;
 
   }
   
   
   /**
-   * Print out the partitions based on token bijection relationships
-   * Used for debugging
+   * Fill and commit the Flight Recorder event of a Step 3 partition, if it is recorded
+   * @param 
+   * int P1, int P2: split positions, -1 if the partition was not split
    */
-  @SuppressWarnings("rawtypes")
-  private void printPartitionByBijection(Map<ArrayList<Object>, ArrayList<ArrayList<String>>> partitionByBijection) {
-  	
-    for (Map.Entry<ArrayList<Object>, ArrayList<ArrayList<String>>> entry: partitionByBijection.entrySet()) {
-      ArrayList<Object> key = entry.getKey();
-      /* if-statement for debugging */
-      if ((Integer)key.get(0) == 8) {
-        out.println(key.get(0) + " " + 
-                    ((Pair)key.get(1)).getLeft() + " " + ((Pair)key.get(1)).getRight() + " " + 
-                    key.get(2) + " " + 
-                    entry.getValue());
-      }
+  private void commitSplitDecision(SplitDecisionEvent splitEvent, Map.Entry<PartitionKey, ColumnarPartition> partitionEntry,
+                                   TokenCounter[] tokenCollection, int P1, int P2, int mappings,
+                                   int outputPartitions, int outliers) {
+    splitEvent.end();
+    if (!splitEvent.shouldCommit()) {
+      return;
     }
-    
+    int partitionSize = partitionEntry.getValue().rowCount();
+    int constantPositions = 0;
+    for (TokenCounter tokenCounter: tokenCollection) {
+      constantPositions += tokenCounter.isSingleValued() ? 1 : 0;
+    }
+    splitEvent.partition = partitionEntry.getKey().describe(this.dictionary);
+    splitEvent.partitionSize = partitionSize;
+    splitEvent.tokenCount = tokenCollection.length;
+    splitEvent.p1 = P1;
+    splitEvent.p2 = P2;
+    splitEvent.p1Cardinality = (P1 < 0) ? 0 : tokenCollection[P1].cardinality();
+    splitEvent.p2Cardinality = (P2 < 0) ? 0 : tokenCollection[P2].cardinality();
+    splitEvent.constantPositions = constantPositions;
+    splitEvent.mappings = mappings;
+    splitEvent.outputPartitions = outputPartitions;
+    splitEvent.outliers = outliers;
+    splitEvent.rowsScanned = (long)partitionSize * ((P1 < 0) ? 1 : 3);
+    splitEvent.commit();
+  }
+  
+  
+  /**
+   * Fill and commit the Flight Recorder event of a Step 3 mapping decision, if it is recorded
+   */
+  private static void commitMappingDecision(MappingDecisionEvent mappingEvent, int partitionSize, Integer mappingType,
+                                            Pair<TokenCounter, TokenCounter> setPair, int splitRank, int splitPosition) {
+    mappingEvent.end();
+    if (!mappingEvent.shouldCommit()) {
+      return;
+    }
+    mappingEvent.partitionSize = partitionSize;
+    mappingEvent.mappingType = MAPPING_TYPES[mappingType];
+    mappingEvent.p1Tokens = setPair.getLeft().cardinality();
+    mappingEvent.p2Tokens = setPair.getRight().cardinality();
+    mappingEvent.splitRank = splitRank;
+    mappingEvent.splitPosition = splitPosition;
+    mappingEvent.rowsCovered = setPair.getLeft().total();
+    mappingEvent.commit();
   }
   
   
   
+  
+  
   /**
    * Get rank position
+   * @param
+   * TokenCounter tempTokenSet: tokens of the many side, counted with the #lines carrying them
    * @return Integer splitRank: either 1 or 2
    */
-  private Integer getRankPosition(Map.Entry<ArrayList<Object>, ArrayList<ArrayList<String>>> partitionEntry, 
-  																	HashMap<String, Integer> tempTokenSet, Integer mappingType, Integer position) {
+  private Integer getRankPosition(TokenCounter tempTokenSet, Integer mappingType) {
   	
     Integer splitRank = 0;
-    Integer cardinalityOfSet = tempTokenSet.size();
-    Integer linesMatchSet = 0;
+    Integer cardinalityOfSet = tempTokenSet.cardinality();
     
     /*
-     * Determine the number of lines that have these values (of tempTokenSet)
+     * The number of lines that have these values (of tempTokenSet)
      * in the corresponding token position of this partition
      */
-    for (ArrayList<String> logMatrix: partitionEntry.getValue()) {
-      if (tempTokenSet.containsKey(logMatrix.get(position))){
-        linesMatchSet ++;
-      }
-    }
+    long linesMatchSet = tempTokenSet.total();
     
     double distance = (double)cardinalityOfSet/(double)linesMatchSet;
     
@@ -726,25 +1366,19 @@ public class IPLoM {
   
   /**
    * Determine the mapping type
+   * The tokens linked to the given P1 token are the connected component of that token
+   * in the bijection index, walked iteratively.
    * @return Integer mappingType
    * Represented by an Integer: 1 (1-1), 2 (1-M), 3 (M-1), or 4 (M-M)
    */
-  private Pair<Integer, Pair<HashMap<String, Integer>, HashMap<String, Integer>>> 
-  				determineMappingType(Map.Entry<ArrayList<Object>, ArrayList<ArrayList<String>>> partitionEntry,
-  															Map.Entry<String, Integer> tokenEntry, Integer P1, Integer P2,
-  															HashMap<String, Integer> tokensSet1, HashMap<String, Integer> tokensSet2) {
+  private Pair<Integer, Pair<TokenCounter, TokenCounter>> 
+  				determineMappingType(BijectionIndex bijectionIndex, int tokenId) {
   	
     Integer mappingType = 0;
-    String tempToken1 = tokenEntry.getKey();
-    HashMap<String, Integer> tempSet1 = new HashMap<>();
-    HashMap<String, Integer> tempSet2 = new HashMap<>();
-    tempSet1.put(tempToken1, 1);
+    Pair<TokenCounter, TokenCounter> setPair = bijectionIndex.component(tokenId);
     
-    Pair<HashMap<String, Integer>, HashMap<String, Integer>> setPair 
-        = completeTokenSets(partitionEntry, P1, P2, tempSet1, tempSet2);
-    
-    Integer sizeOfSet1 = setPair.getLeft().size();
-    Integer sizeOfSet2 = setPair.getRight().size();
+    Integer sizeOfSet1 = setPair.getLeft().cardinality();
+    Integer sizeOfSet2 = setPair.getRight().cardinality();
     
     if (sizeOfSet1 == 1 && sizeOfSet2 == 1) {
       mappingType = 1;
@@ -756,66 +1390,7 @@ public class IPLoM {
       mappingType = 4;
     }
 
-    return new Pair<Integer, Pair<HashMap<String, Integer>, HashMap<String, Integer>>>(mappingType, setPair);
-    
-  }
-  
-  
-  
-  /**
-   * Complete two token sets: tokenSet1, tokenSet2
-   */
-  private Pair<HashMap<String, Integer>, HashMap<String, Integer>> 
-          completeTokenSets(Map.Entry<ArrayList<Object>, ArrayList<ArrayList<String>>> partitionEntry,
-          										Integer P1, Integer P2, HashMap<String, Integer> tokensSet1, HashMap<String, Integer> tokensSet2) {
-  	
-    Integer sizeOfSet1 = tokensSet1.size();
-    Integer sizeOfSet2 = tokensSet2.size();
-    HashMap<String, Integer> tempSet1 = tokensSet1;
-    HashMap<String, Integer> tempSet2 = tokensSet1;
-    Pair<HashMap<String, Integer>, HashMap<String, Integer>> setPair = new Pair<>(tempSet1, tempSet2);
-    
-    /*
-     * Complement the token set with less tokens
-     */
-    if (sizeOfSet1 == sizeOfSet2) {
-      /*
-       * If the size of two token sets are equal,
-       * directly return, not further recursive substitution
-       */
-      return setPair;
-    } else if (sizeOfSet1 > sizeOfSet2) {
-      /*
-       * If sizeOfSet1 > sizeOfSet2, Complement tokenSet2.
-       */
-      for (String tempToken: tempSet1.keySet()) {
-        for (ArrayList<String> logMatrix: partitionEntry.getValue()) {
-          if (logMatrix.get(P1) == tempToken) {
-            String tempToken2 = logMatrix.get(P2);
-            tempSet2.put(tempToken2, tempSet2.containsKey(tempToken2) ? tempSet2.get(tempToken2) + 1 : 1);
-          }
-        }
-      }
-
-    } else {
-      /*
-       * If sizeOfSet1 < sizeOfSet2, Complement tokenSet1.
-       */
-      for (String tempToken: tempSet2.keySet()) {
-        for (ArrayList<String> logMatrix: partitionEntry.getValue()) {
-          if (logMatrix.get(P2) == tempToken) {
-            String tempToken1 = logMatrix.get(P1);
-            tempSet1.put(tempToken1, tempSet1.containsKey(tempToken1) ? tempSet1.get(tempToken1) + 1 : 1);
-          }
-        }
-      }
-      
-    }
-
-    /*
-     * Do the complementing recursively
-     */
-    return this.completeTokenSets(partitionEntry, P1, P2, tempSet1, tempSet2);
+    return new Pair<Integer, Pair<TokenCounter, TokenCounter>>(mappingType, setPair);
     
   }
   
@@ -824,8 +1399,8 @@ public class IPLoM {
    * Determine positions P1 and P2
    * Assume Pa is before P2
    */
-  private Pair<Integer, Integer> determineP1P2(Map.Entry<ArrayList<Object>, ArrayList<ArrayList<String>>> partitionEntry,
-  																							List<HashMap<String, Integer>> tokenCollection, 
+  private Pair<Integer, Integer> determineP1P2(Map.Entry<PartitionKey, ColumnarPartition> partitionEntry,
+  																							TokenCounter[] tokenCollection, 
                                                 Pair<Integer, ArrayList<Integer>> positionCardinality) {
   	
     Integer tokenCount = positionCardinality.getRight().size(); // token length of a single line
@@ -833,8 +1408,8 @@ public class IPLoM {
     if (tokenCount > 2) {
       
       Integer uniqueTokenCount = 0; 
-      for (int i = 0; i < tokenCollection.size(); i++) {
-        uniqueTokenCount = (tokenCollection.get(i).keySet().size() == 1) ? (uniqueTokenCount + 1) : uniqueTokenCount;
+      for (int i = 0; i < tokenCollection.length; i++) {
+        uniqueTokenCount = tokenCollection[i].isSingleValued() ? (uniqueTokenCount + 1) : uniqueTokenCount;
       }
       double clusterGoodness = (double)uniqueTokenCount/(double)tokenCount;
       
@@ -871,8 +1446,8 @@ public class IPLoM {
    * @param partitionIn, tokenCollection, tokenCount
    * @return Pair<Integer, Integer>
    */
-  private Pair<Integer, Integer> getMappingPositions(Map.Entry<ArrayList<Object>, ArrayList<ArrayList<String>>> partitionEntry, 
-  																											List<HashMap<String, Integer>> tokenCollection, 
+  private Pair<Integer, Integer> getMappingPositions(Map.Entry<PartitionKey, ColumnarPartition> partitionEntry, 
+  																											TokenCounter[] tokenCollection, 
                                                         Pair<Integer, ArrayList<Integer>> positionCardinality) {
   	
     Pair<Integer, Integer> tempPair = new Pair<>(0, 1);
@@ -971,37 +1546,263 @@ public class IPLoM {
   /* ------------------------------------------------------------------------------------ */
   /**
    * Summary the log templates from each partition 
+   * With a memory budget, runs out-of-core (see dicoverLogTemplateOutOfCore)
+   * @return the discovered templates
    */
-  public void dicoverLogTemplate(){
-
-    Map<ArrayList<Object>, ArrayList<ArrayList<String>>> partitionByBijection = partitionByTokenBijection();
+  public List<LogTemplate> dicoverLogTemplate(){
+    if (this.memoryBudget > 0) {
+      try {
+        return dicoverLogTemplateOutOfCore(partitionByTokenSizeSpilled());
+      } catch (IOException e) {
+        throw new UncheckedIOException("Out-of-core mining of " + this.sourceFile + " failed", e);
+      }
+    }
+    return dicoverLogTemplate(partitionByTokenBijection());
+  }
+  
+  
+  /**
+   * Summary the log templates of the records starting in a byte range of the source file
+   * (see partitionByTokenSize(long, long)), out-of-core with a memory budget
+   * @throws IllegalStateException if the source file is a gzip file
+   */
+  public List<LogTemplate> dicoverLogTemplate(long start, long end) {
+    if (this.memoryBudget > 0) {
+      try {
+        return dicoverLogTemplateOutOfCore(partitionByTokenSizeSpilled(start, end, Long.MIN_VALUE, Long.MAX_VALUE));
+      } catch (IOException e) {
+        throw new UncheckedIOException("Out-of-core mining of " + this.sourceFile + " failed", e);
+      }
+    }
+    return dicoverLogTemplate(partitionByTokenBijection(partitionByTokenPosition(partitionByTokenSize(start, end))));
+  }
+  
+  
+  /**
+   * Summary the log templates of the records of a time window (see partitionByTimeWindow),
+   * out-of-core with a memory budget
+   */
+  public List<LogTemplate> dicoverLogTemplateInWindow(long fromMillis, long toMillis) {
+    if (this.memoryBudget > 0) {
+      try {
+        return dicoverLogTemplateOutOfCore(partitionByTokenSizeSpilled(0, Long.MAX_VALUE, fromMillis, toMillis));
+      } catch (IOException e) {
+        throw new UncheckedIOException("Out-of-core mining of " + this.sourceFile + " failed", e);
+      }
+    }
+    return dicoverLogTemplate(partitionByTokenBijection(partitionByTokenPosition(partitionByTimeWindow(fromMillis, toMillis))));
+  }
+  
+  
+  /**
+   * Summary the log templates, one token size bucket at a time
+   * Step 1 spills its buckets to disk under the memory budget. Each bucket is then read
+   * back in slices, encoded and split by Step 2 into encoded partitions, which are spilled
+   * to disk under the budget too (see PartitionSpiller); Step 3 loads one Step 2 partition
+   * at a time and spills its own partitions, which Step 4 loads one at a time. Only one
+   * Step 2 partition has to fit in memory.
+   * Token size partitions never interact in Steps 2 to 4, the templates are the same.
+   * The templates hold decoded constants and every encoded partition of a bucket is
+   * consumed by its Step 4, so the token dictionary is cleared before each bucket: the
+   * distinct tokens of the whole file (IDs, addresses, ...) never sit on the heap at once.
+   * @param 
+   * SizePartitionSpiller sizePartitions: the Step 1 buckets, closed once mined
+   * @throws UncheckedIOException if a spill file can not be written or read back
+   */
+  private List<LogTemplate> dicoverLogTemplateOutOfCore(SizePartitionSpiller sizePartitions) {
     
-    out.println("\nDiscover log templates.");
-    Integer numOfTemplates = 0;
+    List<LogTemplate> templates = new ArrayList<>();
     
-    for (Map.Entry<ArrayList<Object>, ArrayList<ArrayList<String>>> partitionEntry: partitionByBijection.entrySet()) {
-      List<HashMap<String, Integer>> tokenCollection = tokenCollection(partitionEntry);  
-      List<String> template = new ArrayList<>();
-      ArrayList<String> logMatrix = partitionEntry.getValue().get(0);
-      
-      for (int i = 0; i < logMatrix.size(); i++) {
-        String tempToken = logMatrix.get(i);
-        if (tokenCollection.get(i).size() == 1) {
-          template.add(tempToken);
-        } else {
-          template.add("*");
+    try (SizePartitionSpiller spiller = sizePartitions;
+         PartitionSpiller partitions = new PartitionSpiller(this.memoryBudget, this.spillDirectory)) {
+      /*
+       * The rest of Step 1 goes to disk too, Steps 2 and 3 get the whole budget
+       */
+      spiller.spill();
+      for (Integer tokenSize: spiller.sizes()) {
+        this.dictionary.clear();
+        List<PartitionKey> positionKeys = partitionByTokenPositionSpilled(spiller, tokenSize, partitions);
+        
+        for (PartitionKey positionKey: positionKeys) {
+          Map<PartitionKey, ColumnarPartition> partitionByBijection = 
+              partitionByTokenBijection(Collections.singletonMap(positionKey, partitions.load(positionKey)));
+          for (Map.Entry<PartitionKey, ColumnarPartition> partitionEntry: partitionByBijection.entrySet()) {
+            partitions.add(partitionEntry.getKey(), partitionEntry.getValue());
+          }
+        }
+        
+        long startTime = System.nanoTime();
+        int bucketTemplates = 0;
+        for (PartitionKey bijectionKey: partitions.keys()) {
+          LogTemplate template = discoverTemplate(partitions.load(bijectionKey), templates.size());
+          if (template != null) {
+            templates.add(template);
+            bucketTemplates ++;
+          }
+        }
+        this.metrics.templatesFinished(bucketTemplates, System.nanoTime() - startTime);
+      }
+      this.resultSink.message("Spilled bytes: " + (spiller.spilledBytes() + partitions.spilledBytes()));
+    } catch (IOException e) {
+      throw new UncheckedIOException("Out-of-core mining of " + this.sourceFile + " failed", e);
+    }
+    
+    this.resultSink.message("\nNumber of templates: " + templates.size());
+    return templates;
+    
+  }
+  
+  
+  /**
+   * partitionByTokenPosition of one spilled Step 1 bucket, under the memory budget
+   * The bucket is read in slices, each slice is encoded and kept as a chunk of the
+   * bucket's partition while the tokens of every position are counted; once the split
+   * position is known, the chunks are split one at a time into the Step 2 partitions.
+   * @return the keys of the Step 2 partitions, in the order of their first rows
+   */
+  private List<PartitionKey> partitionByTokenPositionSpilled(SizePartitionSpiller spiller, Integer tokenSize,
+                                                            PartitionSpiller partitions) throws IOException {
+    
+    long startTime = System.nanoTime();
+    this.resultSink.message("\nPartition by token position (out-of-core).");
+    
+    PartitionKey sizeKey = PartitionKey.bySize(tokenSize);
+    TokenCounter[] bucketCollection = newTokenCollection(tokenSize);
+    long sliceBytes = Math.max(this.memoryBudget / 4, 1L << 20);
+    try (SizePartitionSpiller.BucketReader reader = spiller.reader(tokenSize)) {
+      RecordList slice;
+      while ((slice = reader.next(sliceBytes)) != null) {
+        ColumnarPartition chunk = new ColumnarPartition(tokenSize, slice.size(), true);
+        mergeTokenCollections(bucketCollection, encodeLogs(slice, 0, slice.size(), chunk));
+        partitions.add(sizeKey, chunk);
+      }
+    }
+    
+    int bucketRows = partitions.rowCount(sizeKey);
+    Set<PartitionKey> positionKeys = new LinkedHashSet<>();
+    try (PartitionSpiller.ChunkReader chunks = partitions.chunks(sizeKey)) {
+      ColumnarPartition chunk;
+      while ((chunk = chunks.next()) != null) {
+        for (Map.Entry<PartitionKey, ColumnarPartition> subPartition: 
+             splitByPosition(tokenSize, chunk, bucketCollection).entrySet()) {
+          partitions.add(subPartition.getKey(), subPartition.getValue());
+          positionKeys.add(subPartition.getKey());
+        }
+      }
+    }
+    
+    int peakSize = 0;
+    for (PartitionKey positionKey: positionKeys) {
+      int rowCount = partitions.rowCount(positionKey);
+      this.resultSink.partitionSupport(positionKey, (double)rowCount/(double)bucketRows, this.dictionary);
+      peakSize = Math.max(peakSize, rowCount);
+    }
+    
+    this.metrics.tokenPositionFinished(positionKeys.size(), Math.max(peakSize, bucketRows), System.nanoTime() - startTime);
+    return new ArrayList<>(positionKeys);
+    
+  }
+  
+  
+  /**
+   * Summary the log templates from each of the given Step 3 partitions
+   * @param 
+   * Map<PartitionKey, ColumnarPartition> partitionByBijection: output of partitionByTokenBijection
+   */
+  public List<LogTemplate> dicoverLogTemplate(Map<PartitionKey, ColumnarPartition> partitionByBijection){
+    return dicoverLogTemplate(partitionByBijection, 0);
+  }
+  
+  
+  /**
+   * Summary the log templates from each of the given Step 3 partitions
+   * @param 
+   * int firstTemplateId: ID given to the first template in the result sink, when the
+   *                     templates are appended to those of other partitions
+   */
+  private List<LogTemplate> dicoverLogTemplate(Map<PartitionKey, ColumnarPartition> partitionByBijection, int firstTemplateId){
+    
+    long startTime = System.nanoTime();
+    this.resultSink.message("\nDiscover log templates.");
+    List<LogTemplate> templates = new ArrayList<>(partitionByBijection.size());
+    
+    for (Map.Entry<PartitionKey, ColumnarPartition> partitionEntry: partitionByBijection.entrySet()) {
+      LogTemplate template = discoverTemplate(partitionEntry.getValue(), firstTemplateId + templates.size());
+      if (template != null) {
+        templates.add(template);
+      }
+    }
+    
+    this.resultSink.message("\nNumber of templates: " + templates.size());
+    
+    this.metrics.templatesFinished(templates.size(), System.nanoTime() - startTime);
+    return templates;
+    
+  }
+  
+  
+  /**
+   * Summary the log template of one Step 3 partition and assign its lines to it
+   * @param 
+   * int templateId: ID of the template in the result sink
+   * @return the template, null for an empty partition
+   */
+  private LogTemplate discoverTemplate(ColumnarPartition partition, int templateId) {
+    
+    if (partition.isEmpty()) {
+      return null;
+    }
+    String[] constants = new String[partition.tokenCount()];
+    int[] cardinalities = new int[partition.tokenCount()];
+    
+    /*
+     * Only the template tokens are decoded from the dictionary
+     */
+    for (int i = 0; i < partition.tokenCount(); i++) {
+      int tempToken = partition.token(0, i);
+      if (partition.isConstant(i)) {
+        constants[i] = this.dictionary.token(tempToken);
+        cardinalities[i] = 1;
+      } else {
+        cardinalities[i] = partition.counter(i).cardinality();
+      }
+    }
+    
+    LogTemplate template = new LogTemplate(constants, partition.rowCount(), cardinalities);
+    this.resultSink.template(templateId, template);
+    
+    /*
+     * Every line of the partition, lines without time-stamp included, is assigned as
+     * soon as its template is known; the assignments follow the partitions, not the
+     * line order
+     */
+    if (partition.hasLineNumbers()) {
+      for (int r = 0; r < partition.rowCount(); r++) {
+        long lineNumber = partition.lineNumber(r);
+        if (lineNumber != RecordList.NO_LINE) {
+          for (int l = 0; l < partition.lineCount(r); l++) {
+            this.resultSink.assignment(lineNumber + l, templateId);
+          }
         }
       }
-      
-      out.println(template);
-      numOfTemplates ++;
     }
     
-    out.println("\nNumber of templates: " + numOfTemplates);
+    return template;
     
   }
   
   
+  /**
+   * Wrap templates into a registry which can be shared by matching threads
+   * The registry tokenizes the logs with the delimiter of this miner.
+   * @param 
+   * Collection<LogTemplate> templates: e.g. the output of dicoverLogTemplate
+   */
+  public TemplateRegistry newTemplateRegistry(Collection<LogTemplate> templates) {
+    return new TemplateRegistry(templates, this.tokenizer);
+  }
+  
+  
   
   
   
@@ -0,0 +1,310 @@
+/**
+ * Class: IPLoMMetrics
+ *
+ * Counters and timers of the steps of a miner, to tell which step degraded when a
+ * run slows down. The steps record into them as they go; the ingestion workers of
+ * Step 1 record concurrently, so the counters are LongAdders.
+ *
+ * The metrics can be published over JMX (see register) and read at once with
+ * snapshot(). The counters add up over all the runs of the miner until reset().
+ *
+ * Initially Created: 2026-10-16
+ *
+ */
+
+package iplom;
+
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+public final class IPLoMMetrics implements IPLoMMetricsMXBean {
+
+  private final LongAdder linesRead = new LongAdder();
+  private final LongAdder linesMerged = new LongAdder();
+  private final LongAdder bytesRead = new LongAdder();
+  private final LongAdder records = new LongAdder();
+  private final ConcurrentHashMap<Integer, LongAdder> recordsByTokenSize = new ConcurrentHashMap<>();
+
+  private final LongAdder tokenSizePartitions = new LongAdder();
+  private final LongAdder tokenPositionPartitions = new LongAdder();
+  private final LongAdder tokenBijectionPartitions = new LongAdder();
+  private final LongAdder outlierPartitions = new LongAdder();
+  private final LongAdder outlierRecords = new LongAdder();
+  private final LongAdder templates = new LongAdder();
+  private final AtomicLong peakPartitionSize = new AtomicLong();
+
+  private final LongAdder tokenSizeNanos = new LongAdder();
+  private final LongAdder tokenPositionNanos = new LongAdder();
+  private final LongAdder tokenBijectionNanos = new LongAdder();
+  private final LongAdder templateNanos = new LongAdder();
+
+  /**
+   * Name under which the metrics are registered, null if they are not
+   */
+  private ObjectName objectName;
+
+
+  /* ------------------------------------------------------------------------------------ */
+  /*                                    Recording                                         */
+  /* ------------------------------------------------------------------------------------ */
+
+  /**
+   * A line was read, and merged into the previous record if it had no time-stamp
+   */
+  void lineRead(long bytes, boolean merged) {
+    this.linesRead.increment();
+    this.bytesRead.add(bytes);
+    if (merged) {
+      this.linesMerged.increment();
+    }
+  }
+
+  /**
+   * A record was put into its token size partition
+   */
+  void recordAdded(Integer tokenSize) {
+    this.records.increment();
+    LongAdder count = this.recordsByTokenSize.get(tokenSize);
+    if (count == null) {
+      LongAdder newCount = new LongAdder();
+      count = this.recordsByTokenSize.putIfAbsent(tokenSize, newCount);
+      if (count == null) {
+        count = newCount;
+      }
+    }
+    count.increment();
+  }
+
+  /**
+   * Step 1 produced its partitions, the largest one has peakSize records
+   */
+  void tokenSizeFinished(int partitions, int peakSize, long nanos) {
+    this.tokenSizePartitions.add(partitions);
+    updatePeak(peakSize);
+    this.tokenSizeNanos.add(nanos);
+  }
+
+  /**
+   * Step 2 produced its partitions
+   */
+  void tokenPositionFinished(Map<PartitionKey, ColumnarPartition> partitions, long nanos) {
+    this.tokenPositionPartitions.add(partitions.size());
+    updatePeak(partitions);
+    this.tokenPositionNanos.add(nanos);
+  }
+
+  /**
+   * Step 2 produced its partitions out-of-core, the largest one has peakSize records
+   */
+  void tokenPositionFinished(int partitions, int peakSize, long nanos) {
+    this.tokenPositionPartitions.add(partitions);
+    updatePeak(peakSize);
+    this.tokenPositionNanos.add(nanos);
+  }
+
+  /**
+   * Step 3 produced its partitions
+   */
+  void tokenBijectionFinished(Map<PartitionKey, ColumnarPartition> partitions, long nanos) {
+    this.tokenBijectionPartitions.add(partitions.size());
+    updatePeak(partitions);
+    this.tokenBijectionNanos.add(nanos);
+  }
+
+  /**
+   * Step 3 put the records left without partition into an outlier partition
+   */
+  void outliersFound(int outliers) {
+    this.outlierPartitions.increment();
+    this.outlierRecords.add(outliers);
+  }
+
+  /**
+   * Step 4 produced its templates
+   */
+  void templatesFinished(int templateCount, long nanos) {
+    this.templates.add(templateCount);
+    this.templateNanos.add(nanos);
+  }
+
+  private void updatePeak(Map<PartitionKey, ColumnarPartition> partitions) {
+    int peakSize = 0;
+    for (ColumnarPartition partition: partitions.values()) {
+      peakSize = Math.max(peakSize, partition.rowCount());
+    }
+    updatePeak(peakSize);
+  }
+
+  private void updatePeak(long size) {
+    long peak = this.peakPartitionSize.get();
+    while (size > peak && !this.peakPartitionSize.compareAndSet(peak, size)) {
+      peak = this.peakPartitionSize.get();
+    }
+  }
+
+
+  /* ------------------------------------------------------------------------------------ */
+  /*                                    Reading                                           */
+  /* ------------------------------------------------------------------------------------ */
+
+  @Override public long getLinesRead() { return this.linesRead.sum(); }
+  @Override public long getLinesMerged() { return this.linesMerged.sum(); }
+  @Override public long getBytesRead() { return this.bytesRead.sum(); }
+  @Override public long getRecords() { return this.records.sum(); }
+
+  @Override
+  public Map<Integer, Long> getRecordsByTokenSize() {
+    Map<Integer, Long> counts = new TreeMap<>();
+    for (Map.Entry<Integer, LongAdder> entry: this.recordsByTokenSize.entrySet()) {
+      counts.put(entry.getKey(), entry.getValue().sum());
+    }
+    return counts;
+  }
+
+  @Override public long getTokenSizePartitions() { return this.tokenSizePartitions.sum(); }
+  @Override public long getTokenPositionPartitions() { return this.tokenPositionPartitions.sum(); }
+  @Override public long getTokenBijectionPartitions() { return this.tokenBijectionPartitions.sum(); }
+  @Override public long getOutlierPartitions() { return this.outlierPartitions.sum(); }
+  @Override public long getOutlierRecords() { return this.outlierRecords.sum(); }
+  @Override public long getTemplates() { return this.templates.sum(); }
+  @Override public long getPeakPartitionSize() { return this.peakPartitionSize.get(); }
+
+  @Override public long getTokenSizeMillis() { return this.tokenSizeNanos.sum() / 1000000; }
+  @Override public long getTokenPositionMillis() { return this.tokenPositionNanos.sum() / 1000000; }
+  @Override public long getTokenBijectionMillis() { return this.tokenBijectionNanos.sum() / 1000000; }
+  @Override public long getTemplateMillis() { return this.templateNanos.sum() / 1000000; }
+
+
+  /**
+   * Copy the current values
+   * Steps running meanwhile may be partly counted.
+   */
+  public Snapshot snapshot() {
+    return new Snapshot(this);
+  }
+
+  /**
+   * Set every counter and timer back to zero
+   */
+  public void reset() {
+    for (LongAdder adder: Arrays.asList(this.linesRead, this.linesMerged, this.bytesRead, this.records,
+                                        this.tokenSizePartitions, this.tokenPositionPartitions,
+                                        this.tokenBijectionPartitions, this.outlierPartitions, this.outlierRecords,
+                                        this.templates, this.tokenSizeNanos, this.tokenPositionNanos,
+                                        this.tokenBijectionNanos, this.templateNanos)) {
+      adder.reset();
+    }
+    this.recordsByTokenSize.clear();
+    this.peakPartitionSize.set(0);
+  }
+
+
+  /* ------------------------------------------------------------------------------------ */
+  /*                                       JMX                                            */
+  /* ------------------------------------------------------------------------------------ */
+
+  /**
+   * Publish the metrics in the platform MBean server, as iplom:type=IPLoMMetrics,name=<name>
+   * @param
+   * String name: tells the miners of a JVM apart, e.g. the source file name
+   */
+  public synchronized ObjectName register(String name) throws JMException {
+    unregister();
+    ObjectName tempName = new ObjectName("iplom:type=IPLoMMetrics,name=" + ObjectName.quote(name));
+    ManagementFactory.getPlatformMBeanServer().registerMBean(this, tempName);
+    this.objectName = tempName;
+    return tempName;
+  }
+
+  /**
+   * Remove the metrics from the platform MBean server, if they were published
+   */
+  public synchronized void unregister() throws JMException {
+    if (this.objectName != null) {
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      if (server.isRegistered(this.objectName)) {
+        server.unregisterMBean(this.objectName);
+      }
+      this.objectName = null;
+    }
+  }
+
+
+  /**
+   * Immutable copy of the metrics
+   */
+  public static final class Snapshot implements IPLoMMetricsMXBean {
+
+    private final long linesRead;
+    private final long linesMerged;
+    private final long bytesRead;
+    private final long records;
+    private final Map<Integer, Long> recordsByTokenSize;
+    private final long tokenSizePartitions;
+    private final long tokenPositionPartitions;
+    private final long tokenBijectionPartitions;
+    private final long outlierPartitions;
+    private final long outlierRecords;
+    private final long templates;
+    private final long peakPartitionSize;
+    private final long tokenSizeMillis;
+    private final long tokenPositionMillis;
+    private final long tokenBijectionMillis;
+    private final long templateMillis;
+
+    private Snapshot(IPLoMMetrics metrics) {
+      this.linesRead = metrics.getLinesRead();
+      this.linesMerged = metrics.getLinesMerged();
+      this.bytesRead = metrics.getBytesRead();
+      this.records = metrics.getRecords();
+      this.recordsByTokenSize = Collections.unmodifiableMap(metrics.getRecordsByTokenSize());
+      this.tokenSizePartitions = metrics.getTokenSizePartitions();
+      this.tokenPositionPartitions = metrics.getTokenPositionPartitions();
+      this.tokenBijectionPartitions = metrics.getTokenBijectionPartitions();
+      this.outlierPartitions = metrics.getOutlierPartitions();
+      this.outlierRecords = metrics.getOutlierRecords();
+      this.templates = metrics.getTemplates();
+      this.peakPartitionSize = metrics.getPeakPartitionSize();
+      this.tokenSizeMillis = metrics.getTokenSizeMillis();
+      this.tokenPositionMillis = metrics.getTokenPositionMillis();
+      this.tokenBijectionMillis = metrics.getTokenBijectionMillis();
+      this.templateMillis = metrics.getTemplateMillis();
+    }
+
+    @Override public long getLinesRead() { return this.linesRead; }
+    @Override public long getLinesMerged() { return this.linesMerged; }
+    @Override public long getBytesRead() { return this.bytesRead; }
+    @Override public long getRecords() { return this.records; }
+    @Override public Map<Integer, Long> getRecordsByTokenSize() { return this.recordsByTokenSize; }
+    @Override public long getTokenSizePartitions() { return this.tokenSizePartitions; }
+    @Override public long getTokenPositionPartitions() { return this.tokenPositionPartitions; }
+    @Override public long getTokenBijectionPartitions() { return this.tokenBijectionPartitions; }
+    @Override public long getOutlierPartitions() { return this.outlierPartitions; }
+    @Override public long getOutlierRecords() { return this.outlierRecords; }
+    @Override public long getTemplates() { return this.templates; }
+    @Override public long getPeakPartitionSize() { return this.peakPartitionSize; }
+    @Override public long getTokenSizeMillis() { return this.tokenSizeMillis; }
+    @Override public long getTokenPositionMillis() { return this.tokenPositionMillis; }
+    @Override public long getTokenBijectionMillis() { return this.tokenBijectionMillis; }
+    @Override public long getTemplateMillis() { return this.templateMillis; }
+
+    @Override
+    public String toString() {
+      return "Step 1: " + this.linesRead + " lines (" + this.linesMerged + " merged), " + this.bytesRead + " bytes, " +
+             this.records + " records, " + this.tokenSizePartitions + " partitions, " + this.tokenSizeMillis + " ms\n" +
+             "Step 2: " + this.tokenPositionPartitions + " partitions, " + this.tokenPositionMillis + " ms\n" +
+             "Step 3: " + this.tokenBijectionPartitions + " partitions (" + this.outlierPartitions + " outlier partitions, " +
+             this.outlierRecords + " outliers), " + this.tokenBijectionMillis + " ms\n" +
+             "Step 4: " + this.templates + " templates, " + this.templateMillis + " ms\n" +
+             "Peak partition size: " + this.peakPartitionSize;
+    }
+
+  }
+
+}
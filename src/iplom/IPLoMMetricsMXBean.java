@@ -0,0 +1,82 @@
+/**
+ * Interface: IPLoMMetricsMXBean
+ *
+ * Management interface of the per-step metrics of a miner (see IPLoMMetrics).
+ * The counters add up over all the runs of the miner until reset.
+ *
+ * Initially Created: 2026-10-16
+ *
+ */
+
+package iplom;
+
+import java.util.Map;
+
+public interface IPLoMMetricsMXBean {
+
+  /* ---------------------------- Step 1 - ingestion ---------------------------- */
+
+  /**
+   * Lines read from the source file
+   */
+  long getLinesRead();
+
+  /**
+   * Lines without time-stamp merged into the previous record
+   */
+  long getLinesMerged();
+
+  /**
+   * Bytes read from the source file (characters, for the reader-based ingestion)
+   */
+  long getBytesRead();
+
+  /**
+   * Records put into the token size partitions
+   */
+  long getRecords();
+
+  /**
+   * Records of each token size
+   */
+  Map<Integer, Long> getRecordsByTokenSize();
+
+
+  /* ---------------------------- Partitions ---------------------------- */
+
+  /**
+   * Partitions produced by Step 1 (token size), Step 2 (token position) and
+   * Step 3 (token bijection)
+   */
+  long getTokenSizePartitions();
+  long getTokenPositionPartitions();
+  long getTokenBijectionPartitions();
+
+  /**
+   * Outlier partitions of Step 3, and their records
+   */
+  long getOutlierPartitions();
+  long getOutlierRecords();
+
+  /**
+   * Templates produced by Step 4
+   */
+  long getTemplates();
+
+  /**
+   * Largest partition (#records) produced by any step
+   */
+  long getPeakPartitionSize();
+
+
+  /* ---------------------------- Timers ---------------------------- */
+
+  /**
+   * Time spent in each step, milliseconds
+   */
+  long getTokenSizeMillis();
+  long getTokenPositionMillis();
+  long getTokenBijectionMillis();
+  long getTemplateMillis();
+
+}
@@ -0,0 +1,107 @@
+/**
+ * Class: Iso8601HeaderDetector
+ *
+ * Hand-written matcher for an ISO-8601 time-stamp header:
+ * "yyyy-MM-ddTHH:mm:ss" (or a blank instead of 'T'), with optional fraction of a
+ * second and optional zone "Z", "+HH", "+HHmm" or "+HH:mm". Time-stamps without a
+ * zone are taken as UTC.
+ *
+ * Initially Created: 2026-10-16
+ *
+ */
+
+package iplom;
+
+public class Iso8601HeaderDetector implements RecordHeaderDetector {
+
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * "yyyy-MM-ddTHH:mm:ss"
+   */
+  private static final int BASE_LENGTH = 19;
+
+  @Override
+  public long match(CharSequence line) {
+
+    int length = line.length();
+    if (length < BASE_LENGTH) {
+      return NO_MATCH;
+    }
+
+    /*
+     * Date and time
+     */
+    int year = (int)HeaderFields.digits(line, 0, 4);
+    int month = HeaderFields.twoDigits(line, 5);
+    int day = HeaderFields.twoDigits(line, 8);
+    char separator = line.charAt(10);
+    int hour = HeaderFields.twoDigits(line, 11);
+    int minute = HeaderFields.twoDigits(line, 14);
+    int sec = HeaderFields.twoDigits(line, 17);
+    if (year < 0 || line.charAt(4) != '-' || month < 1 || month > 12 || line.charAt(7) != '-' ||
+        day < 1 || day > 31 || (separator != 'T' && separator != ' ') ||
+        hour < 0 || hour > 24 || line.charAt(13) != ':' || minute < 0 || minute > 59 ||
+        line.charAt(16) != ':' || sec < 0 || sec > 60) {
+      return NO_MATCH;
+    }
+    long millis = HeaderFields.epochMillis(year, month, day, hour, minute, sec);
+
+    /*
+     * Fraction of a second, only milliseconds are kept
+     */
+    int i = BASE_LENGTH;
+    if (i < length && (line.charAt(i) == '.' || line.charAt(i) == ',')) {
+      int scale = 100;
+      int fraction = 0;
+      int start = ++i;
+      int d;
+      while (i < length && (d = HeaderFields.digit(line, i)) >= 0) {
+        fraction += d * scale;
+        scale /= 10;
+        i ++;
+      }
+      if (i == start) {
+        return NO_MATCH;
+      }
+      millis += fraction;
+    }
+
+    /*
+     * Zone
+     */
+    if (i < length) {
+      char zone = line.charAt(i);
+      if (zone == 'Z') {
+        i ++;
+      } else if ((zone == '+' || zone == '-') && i + 3 <= length) {
+        int offsetHours = HeaderFields.twoDigits(line, i + 1);
+        if (offsetHours < 0) {
+          return NO_MATCH;
+        }
+        int offsetMinutes = 0;
+        int next = i + 3;
+        if (next < length && line.charAt(next) == ':') {
+          next ++;
+        }
+        if (next + 2 <= length && HeaderFields.twoDigits(line, next) >= 0) {
+          offsetMinutes = HeaderFields.twoDigits(line, next);
+          next += 2;
+        } else if (next != i + 3) {
+          return NO_MATCH;
+        }
+        long offset = (offsetHours * 60L + offsetMinutes) * 60 * 1000;
+        millis += (zone == '+') ? -offset : offset;
+        i = next;
+      }
+    }
+
+    int headerLength = HeaderFields.endOfHeader(line, i);
+    if (headerLength < 0 || millis < 0) {
+      return NO_MATCH;
+    }
+    return RecordHeaderDetector.pack(headerLength, millis);
+
+  }
+
+}
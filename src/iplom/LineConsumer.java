@@ -0,0 +1,25 @@
+/**
+ * Interface: LineConsumer
+ *
+ * Receives the lines selected by ReadSelectedLine.readSelectedLines, in increasing line
+ * order and always on the calling thread, even when the lines are read in parallel.
+ *
+ * Initially Created: 2026-10-16
+ *
+ */
+
+package iplom;
+
+import java.io.IOException;
+
+public interface LineConsumer {
+
+  /**
+   * One selected line
+   * @param
+   * long lineNumber: from 1
+   * String line: the line, without its line terminator
+   */
+  void line(long lineNumber, String line) throws IOException;
+
+}
@@ -0,0 +1,458 @@
+/**
+ * Class: LineOffsetIndex
+ *
+ * Sparse index of the lines of a log file: the byte offset of every INTERVAL-th line
+ * and the total #lines, so a line is read by seeking to the indexed line before it and
+ * scanning at most INTERVAL lines, instead of reading the file from the beginning.
+ *
+ * The index is built in one pass over the memory-mapped file and saved next to it
+ * (file name + ".lidx"); it is loaded back as long as the size and the modification
+ * time of the file have not changed. Lines end with '\n', a trailing '\r' is dropped.
+ * The lines are those of the bytes of the file: a gzip file is rejected, its bytes are
+ * not text (decompress it first to read its lines).
+ *
+ * Index file format (big-endian): "IPLX", version (int), file size (long), file
+ * modification time (long), interval (int), #lines (long), #offsets (int), offsets (long)
+ *
+ * Initially Created: 2026-10-16
+ *
+ */
+
+package iplom;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.*;
+import java.util.concurrent.*;
+
+public final class LineOffsetIndex {
+
+  /**
+   * #lines between two indexed offsets: with lines of about 100 bytes, a lookup reads a few KB
+   */
+  public static final int DEFAULT_INTERVAL = 64;
+
+  static final String FILE_SUFFIX = ".lidx";
+  private static final byte[] MAGIC = { 'I', 'P', 'L', 'X' };
+  private static final int VERSION = 1;
+
+  /**
+   * Bytes mapped at once when building the index
+   */
+  private static final long MAP_SIZE = 256L << 20;
+
+  /**
+   * Bytes read at once when scanning for a line
+   */
+  private static final int READ_SIZE = 8 * 1024;
+
+  /**
+   * Bytes read at once, and #lines read by a worker, when reading many lines
+   */
+  private static final int BATCH_READ_SIZE = 64 * 1024;
+  private static final int BATCH_LINES = 4096;
+
+  private final File sourceFile;
+  private final long fileSize;
+  private final long lastModified;
+  private final int interval;
+  private final long lineCount;
+
+  /**
+   * offsets[k]: byte offset of line k * interval + 1
+   */
+  private final long[] offsets;
+
+  /**
+   * Lines are decoded the same way FileReader does it
+   */
+  private final Charset charset = Charset.defaultCharset();
+
+
+  private LineOffsetIndex(File sourceFile, long fileSize, long lastModified, int interval,
+                          long lineCount, long[] offsets) {
+    this.sourceFile = sourceFile;
+    this.fileSize = fileSize;
+    this.lastModified = lastModified;
+    this.interval = interval;
+    this.lineCount = lineCount;
+    this.offsets = offsets;
+  }
+
+
+  /**
+   * Load the saved index of a file, or build and save it if missing or out of date
+   * The index is still returned (unsaved) if it can not be written next to the file.
+   */
+  public static LineOffsetIndex forFile(File sourceFile) throws IOException {
+    return forFile(sourceFile, DEFAULT_INTERVAL);
+  }
+
+  public static LineOffsetIndex forFile(File sourceFile, int interval) throws IOException {
+    rejectGzip(sourceFile);
+    File indexFile = indexFileOf(sourceFile);
+    if (indexFile.isFile()) {
+      LineOffsetIndex index = load(sourceFile, indexFile);
+      if (index != null && index.isCurrent() && index.interval == interval) {
+        return index;
+      }
+    }
+    LineOffsetIndex index = build(sourceFile, interval);
+    try {
+      index.save(indexFile);
+    } catch (IOException e) {
+      indexFile.delete();
+    }
+    return index;
+  }
+
+  static File indexFileOf(File sourceFile) {
+    return new File(sourceFile.getPath() + FILE_SUFFIX);
+  }
+
+  /**
+   * @throws IOException for a gzip file, whose '\n' bytes are not its lines
+   */
+  private static void rejectGzip(File sourceFile) throws IOException {
+    if (GzipInput.isGzip(sourceFile)) {
+      throw new IOException("Lines of a gzip file can not be indexed, decompress it first: " + sourceFile);
+    }
+  }
+
+
+  /**
+   * Build the index in one pass over the mapped file
+   */
+  public static LineOffsetIndex build(File sourceFile, int interval) throws IOException {
+
+    if (interval <= 0) {
+      throw new IllegalArgumentException("Interval must be positive: " + interval);
+    }
+    rejectGzip(sourceFile);
+    long lastModified = sourceFile.lastModified();
+    long[] offsets = new long[1024];
+    int offsetCount = 1;
+    long newlines = 0;
+    long fileSize;
+    byte lastByte = '\n';
+
+    try (RandomAccessFile file = new RandomAccessFile(sourceFile, "r")) {
+      FileChannel channel = file.getChannel();
+      fileSize = channel.size();
+      for (long start = 0; start < fileSize; start += MAP_SIZE) {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(MAP_SIZE, fileSize - start));
+        int limit = buffer.limit();
+        for (int i = 0; i < limit; i++) {
+          if (buffer.get(i) == '\n') {
+            newlines ++;
+            if (newlines % interval == 0) {
+              if (offsetCount == offsets.length) {
+                offsets = Arrays.copyOf(offsets, offsetCount * 2);
+              }
+              offsets[offsetCount++] = start + i + 1;
+            }
+          }
+        }
+        lastByte = buffer.get(limit - 1);
+      }
+    }
+
+    /*
+     * The last line may not end with '\n'
+     */
+    long lineCount = newlines + (lastByte == '\n' ? 0 : 1);
+    return new LineOffsetIndex(sourceFile, fileSize, lastModified, interval, lineCount,
+                               Arrays.copyOf(offsets, offsetCount));
+
+  }
+
+
+  /**
+   * Load a saved index, null if it is not a valid index of the file
+   */
+  static LineOffsetIndex load(File sourceFile, File indexFile) throws IOException {
+    try (DataInputStream input = new DataInputStream(
+            new BufferedInputStream(new FileInputStream(indexFile), 1 << 16))) {
+      byte[] magic = new byte[MAGIC.length];
+      input.readFully(magic);
+      if (!Arrays.equals(magic, MAGIC) || input.readInt() != VERSION) {
+        return null;
+      }
+      long fileSize = input.readLong();
+      long lastModified = input.readLong();
+      int interval = input.readInt();
+      long lineCount = input.readLong();
+      long[] offsets = new long[input.readInt()];
+      for (int i = 0; i < offsets.length; i++) {
+        offsets[i] = input.readLong();
+      }
+      return new LineOffsetIndex(sourceFile, fileSize, lastModified, interval, lineCount, offsets);
+    } catch (EOFException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Save the index, e.g. next to its file
+   */
+  public void save(File indexFile) throws IOException {
+    try (DataOutputStream output = new DataOutputStream(
+            new BufferedOutputStream(new FileOutputStream(indexFile), 1 << 16))) {
+      output.write(MAGIC);
+      output.writeInt(VERSION);
+      output.writeLong(this.fileSize);
+      output.writeLong(this.lastModified);
+      output.writeInt(this.interval);
+      output.writeLong(this.lineCount);
+      output.writeInt(this.offsets.length);
+      for (long offset: this.offsets) {
+        output.writeLong(offset);
+      }
+    }
+  }
+
+
+  /**
+   * Whether the file still has the size and modification time it was indexed with
+   */
+  public boolean isCurrent() {
+    return this.sourceFile.length() == this.fileSize && this.sourceFile.lastModified() == this.lastModified;
+  }
+
+  public File getSourceFile() {
+    return this.sourceFile;
+  }
+
+  public long lineCount() {
+    return this.lineCount;
+  }
+
+  public int interval() {
+    return this.interval;
+  }
+
+
+  /**
+   * Read one line
+   * @param
+   * long lineNumber: from 1 to lineCount()
+   */
+  public String readLine(long lineNumber) throws IOException {
+    checkRange(lineNumber);
+    try (RandomAccessFile file = new RandomAccessFile(this.sourceFile, "r")) {
+      LineReader reader = new LineReader(file.getChannel(), READ_SIZE);
+      reader.moveTo(lineNumber);
+      return reader.nextLine();
+    }
+  }
+
+
+  /**
+   * Read many lines in one forward pass, seeking over the gaps between them
+   * @param
+   * long[] lineNumbers: strictly increasing, from 1 to lineCount()
+   * LineConsumer consumer: receives the lines in order, on the calling thread
+   * int parallelism: #threads reading batches of lines ahead of the consumer, 1 to read serially
+   */
+  public void readLines(final long[] lineNumbers, LineConsumer consumer, int parallelism) throws IOException {
+
+    for (int i = 0; i < lineNumbers.length; i++) {
+      checkRange(lineNumbers[i]);
+      if (i > 0 && lineNumbers[i] <= lineNumbers[i - 1]) {
+        throw new IllegalArgumentException("Line numbers are not strictly increasing at " + lineNumbers[i]);
+      }
+    }
+
+    try (RandomAccessFile file = new RandomAccessFile(this.sourceFile, "r")) {
+      final FileChannel channel = file.getChannel();
+
+      if (parallelism <= 1 || lineNumbers.length <= BATCH_LINES) {
+        LineReader reader = new LineReader(channel, BATCH_READ_SIZE);
+        for (long lineNumber: lineNumbers) {
+          reader.moveTo(lineNumber);
+          consumer.line(lineNumber, reader.nextLine());
+        }
+        return;
+      }
+
+      /*
+       * Batches of consecutive lines are read by the workers, at most two per worker
+       * ahead of the consumer, and handed to the consumer in order
+       */
+      ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+      try {
+        Deque<Future<String[]>> pending = new ArrayDeque<>();
+        int nextBatch = 0;
+        for (int from = 0; from < lineNumbers.length; from += BATCH_LINES) {
+          while (nextBatch < lineNumbers.length && pending.size() < 2 * parallelism) {
+            final int batchFrom = nextBatch;
+            final int batchTo = Math.min(nextBatch + BATCH_LINES, lineNumbers.length);
+            pending.add(executor.submit(new Callable<String[]>() {
+              @Override
+              public String[] call() throws IOException {
+                return readBatch(channel, lineNumbers, batchFrom, batchTo);
+              }
+            }));
+            nextBatch = batchTo;
+          }
+          String[] lines = pending.poll().get();
+          for (int i = 0; i < lines.length; i++) {
+            consumer.line(lineNumbers[from + i], lines[i]);
+          }
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Reading lines of " + this.sourceFile + " was interrupted");
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof IOException) {
+          throw (IOException) cause;
+        }
+        throw new IOException("Failed to read lines of " + this.sourceFile, cause);
+      } finally {
+        executor.shutdownNow();
+      }
+    }
+
+  }
+
+  public void readLines(long[] lineNumbers, LineConsumer consumer) throws IOException {
+    readLines(lineNumbers, consumer, 1);
+  }
+
+
+  private String[] readBatch(FileChannel channel, long[] lineNumbers, int from, int to) throws IOException {
+    LineReader reader = new LineReader(channel, BATCH_READ_SIZE);
+    String[] lines = new String[to - from];
+    for (int i = from; i < to; i++) {
+      reader.moveTo(lineNumbers[i]);
+      lines[i - from] = reader.nextLine();
+    }
+    return lines;
+  }
+
+  private void checkRange(long lineNumber) {
+    if (lineNumber <= 0 || lineNumber > this.lineCount) {
+      throw new IllegalArgumentException("Line " + lineNumber + " is out of range [1, " + this.lineCount + "]");
+    }
+  }
+
+
+  /**
+   * Forward reader of the lines of the file, with positional reads (safe to share the channel)
+   * Moving to a line seeks to its indexed line only when that is past the current line,
+   * otherwise it keeps reading forward.
+   */
+  private final class LineReader {
+
+    private final FileChannel channel;
+    private final ByteBuffer block;
+
+    /**
+     * The block holds [blockOffset, blockOffset + blockLength), the reader is at index
+     * in the block, at the start of line
+     */
+    private long blockOffset = 0;
+    private int blockLength = 0;
+    private int index = 0;
+    private long line = 1;
+
+    private final ByteArrayOutputStream lineBytes = new ByteArrayOutputStream(256);
+
+    LineReader(FileChannel channel, int readSize) {
+      this.channel = channel;
+      this.block = ByteBuffer.allocate(readSize);
+    }
+
+    /**
+     * Move to the start of a line, which must not be before the current line
+     * unless the reader has not read anything yet
+     */
+    void moveTo(long lineNumber) throws IOException {
+      int k = (int)((lineNumber - 1) / LineOffsetIndex.this.interval);
+      long indexedLine = (long)k * LineOffsetIndex.this.interval + 1;
+      if (indexedLine > this.line || lineNumber < this.line) {
+        seek(LineOffsetIndex.this.offsets[k], indexedLine);
+      }
+      while (this.line < lineNumber) {
+        if (!skipLine()) {
+          return;
+        }
+      }
+    }
+
+    /**
+     * Read the current line, and move to the next one
+     */
+    String nextLine() throws IOException {
+      this.lineBytes.reset();
+      while (true) {
+        if (this.index == this.blockLength && !fill()) {
+          break;
+        }
+        byte[] bytes = this.block.array();
+        int end = this.index;
+        while (end < this.blockLength && bytes[end] != '\n') {
+          end ++;
+        }
+        this.lineBytes.write(bytes, this.index, end - this.index);
+        if (end < this.blockLength) {
+          this.index = end + 1;
+          break;
+        }
+        this.index = end;
+      }
+      this.line ++;
+
+      byte[] bytes = this.lineBytes.toByteArray();
+      int length = bytes.length;
+      if (length > 0 && bytes[length - 1] == '\r') {
+        length --;
+      }
+      return new String(bytes, 0, length, LineOffsetIndex.this.charset);
+    }
+
+    private boolean skipLine() throws IOException {
+      while (true) {
+        if (this.index == this.blockLength && !fill()) {
+          return false;
+        }
+        byte[] bytes = this.block.array();
+        while (this.index < this.blockLength) {
+          if (bytes[this.index++] == '\n') {
+            this.line ++;
+            return true;
+          }
+        }
+      }
+    }
+
+    private void seek(long offset, long lineNumber) {
+      if (offset >= this.blockOffset && offset <= this.blockOffset + this.blockLength) {
+        this.index = (int)(offset - this.blockOffset);
+      } else {
+        this.blockOffset = offset;
+        this.blockLength = 0;
+        this.index = 0;
+      }
+      this.line = lineNumber;
+    }
+
+    /**
+     * Read the block following the current one
+     */
+    private boolean fill() throws IOException {
+      this.blockOffset += this.blockLength;
+      this.block.clear();
+      int read = this.channel.read(this.block, this.blockOffset);
+      this.blockLength = Math.max(read, 0);
+      this.index = 0;
+      return read > 0;
+    }
+
+  }
+
+}
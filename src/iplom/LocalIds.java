@@ -0,0 +1,98 @@
+/**
+ * Class: LocalIds
+ *
+ * Dense local IDs (0, 1, 2, ...) of the token IDs met at one position of a partition,
+ * in order of first appearance.
+ * Open addressing, sized for the number of rows so it never resizes.
+ *
+ * Initially Created: 2026-10-16
+ *
+ */
+
+package iplom;
+
+import java.util.Arrays;
+
+final class LocalIds {
+
+  private final int[] keys;
+  private final int[] values;
+  private int[] tokens;
+  private int size = 0;
+
+
+  LocalIds(int rowCount) {
+    int capacity = 4;
+    while (capacity < rowCount * 2) {
+      capacity <<= 1;
+    }
+    this.keys = new int[capacity];
+    this.values = new int[capacity];
+    this.tokens = new int[Math.min(rowCount, 16)];
+    Arrays.fill(this.keys, -1);
+  }
+
+
+  /**
+   * Local ID of a token, assigning the next one if it is new
+   */
+  int localId(int token) {
+    int slot = slot(token);
+    if (this.keys[slot] == -1) {
+      this.keys[slot] = token;
+      this.values[slot] = this.size;
+      if (this.size == this.tokens.length) {
+        this.tokens = Arrays.copyOf(this.tokens, Math.max(1, this.size * 2));
+      }
+      this.tokens[this.size] = token;
+      return this.size ++;
+    }
+    return this.values[slot];
+  }
+
+  /**
+   * Local IDs of the first rowCount tokens of a column
+   */
+  int[] localIds(int[] column, int rowCount) {
+    int[] local = new int[rowCount];
+    for (int r = 0; r < rowCount; r++) {
+      local[r] = localId(column[r]);
+    }
+    return local;
+  }
+
+  /**
+   * Local ID of a token, -1 if it has not been met
+   */
+  int find(int token) {
+    int slot = slot(token);
+    return (this.keys[slot] == -1) ? -1 : this.values[slot];
+  }
+
+  /**
+   * Number of distinct tokens
+   */
+  int size() {
+    return this.size;
+  }
+
+  /**
+   * Token ID of each local ID
+   */
+  int[] tokens() {
+    return Arrays.copyOf(this.tokens, this.size);
+  }
+
+
+  private int slot(int token) {
+    int mask = this.keys.length - 1;
+    int hash = token * 0x9E3779B9;
+    int slot = (hash ^ (hash >>> 16)) & mask;
+    int key;
+    while ((key = this.keys[slot]) != -1 && key != token) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+}
@@ -0,0 +1,172 @@
+/**
+ * Class: LogTemplate
+ *
+ * A log template discovered by Step 4: one entry per token position, either a
+ * constant token or a wildcard ("*").
+ * The constants are kept as strings so that a template does not depend on the
+ * token dictionary of the run which discovered it.
+ *
+ * Initially Created: 2026-10-16
+ *
+ */
+
+package iplom;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public final class LogTemplate {
+
+  /**
+   * Printed in place of a variable token
+   */
+  public static final String WILDCARD = "*";
+
+  /**
+   * Constant token of each position, null for a wildcard
+   */
+  private final String[] constants;
+
+  /**
+   * Number of logs of the partition the template was discovered from
+   */
+  private final int support;
+
+  /**
+   * Number of distinct tokens of each position in that partition (1 for a constant)
+   */
+  private final int[] cardinalities;
+
+  private final int hash;
+
+
+  /**
+   * @param
+   * String[] constants: constant token of each position, null for a wildcard
+   * int support: number of logs the template was discovered from
+   */
+  public LogTemplate(String[] constants, int support) {
+    this(constants, support, null);
+  }
+
+  /**
+   * @param
+   * String[] constants: constant token of each position, null for a wildcard
+   * int support: number of logs the template was discovered from
+   * int[] cardinalities: number of distinct tokens of each position, null if unknown
+   */
+  public LogTemplate(String[] constants, int support, int[] cardinalities) {
+    this.constants = constants.clone();
+    this.support = support;
+    this.cardinalities = new int[constants.length];
+    for (int i = 0; i < constants.length; i++) {
+      /*
+       * Unknown cardinality of a wildcard: at least 2
+       */
+      this.cardinalities[i] = (constants[i] != null) ? 1 :
+          (cardinalities != null) ? cardinalities[i] : 2;
+    }
+    this.hash = Arrays.hashCode(this.constants);
+  }
+
+
+  /**
+   * Number of token positions
+   */
+  public int tokenCount() {
+    return this.constants.length;
+  }
+
+  public boolean isWildcard(int position) {
+    return this.constants[position] == null;
+  }
+
+  /**
+   * Constant token at a position, null for a wildcard
+   */
+  public String constant(int position) {
+    return this.constants[position];
+  }
+
+  /**
+   * Number of constant positions
+   */
+  public int constantCount() {
+    int count = 0;
+    for (String constant: this.constants) {
+      count += (constant != null) ? 1 : 0;
+    }
+    return count;
+  }
+
+  public int getSupport() {
+    return this.support;
+  }
+
+  /**
+   * Number of distinct tokens seen at a position (1 for a constant)
+   */
+  public int cardinality(int position) {
+    return this.cardinalities[position];
+  }
+
+  /**
+   * The tokens of the template, with WILDCARD for the variable positions
+   */
+  public List<String> getTokens() {
+    List<String> tokens = new ArrayList<>(this.constants.length);
+    for (String constant: this.constants) {
+      tokens.add((constant != null) ? constant : WILDCARD);
+    }
+    return Collections.unmodifiableList(tokens);
+  }
+
+
+  /**
+   * Check whether a tokenized log fits the template
+   * The tokens are compared on their spans, no substring is created.
+   * @param
+   * CharSequence str: the log (without time-stamp)
+   * DelimiterTokenizer.Spans spans: its tokens
+   */
+  public boolean matches(CharSequence str, DelimiterTokenizer.Spans spans) {
+    if (spans.count() != this.constants.length) {
+      return false;
+    }
+    for (int i = 0; i < this.constants.length; i++) {
+      String constant = this.constants[i];
+      if (constant != null && !TokenDictionary.matches(constant, str, spans.offset(i), spans.length(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+
+  /**
+   * Two templates are equal if they have the same constants at the same positions
+   */
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (!(o instanceof LogTemplate)) return false;
+    LogTemplate templateo = (LogTemplate) o;
+    return this.hash == templateo.hash && Arrays.equals(this.constants, templateo.constants);
+  }
+
+  @Override
+  public int hashCode() {
+    return this.hash;
+  }
+
+  /**
+   * Same form as the printed token list, e.g. [session, opened, for, user, *]
+   */
+  @Override
+  public String toString() {
+    return getTokens().toString();
+  }
+
+}
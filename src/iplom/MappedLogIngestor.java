@@ -0,0 +1,439 @@
+/**
+ * Class: MappedLogIngestor
+ *
+ * Memory-mapped, chunk-parallel ingestion for Step 1 (partition by token size).
+ *
+ * The source file is cut into byte ranges which always end on a record boundary
+ * (a line led by a time-stamp), so that lines without time-stamp stay with the
+ * record owning them. Every range is mapped, merged, tokenized and bucketed on
+ * its own worker, and the per-range size maps are merged back in file order.
+ *
+ * Records keep their line number in the source file: a range numbers its lines from 1,
+ * and its numbers are shifted by the lines before the range when it is merged. The
+ * lines before a slice are counted once, from the end of the previous slice.
+ *
+ * Initially Created: 2026-10-16
+ *
+ */
+
+package iplom;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.*;
+import java.util.concurrent.*;
+
+class MappedLogIngestor {
+
+  /**
+   * A single MappedByteBuffer can not address more than 2GB
+   */
+  private static final long MAX_RANGE_SIZE = Integer.MAX_VALUE;
+
+  /**
+   * Block size used when searching for a record boundary
+   */
+  private static final int SCAN_BLOCK_SIZE = 64 * 1024;
+
+  /**
+   * Bytes of a line handed to the header detector when searching for a record boundary
+   */
+  private static final int HEADER_WINDOW = 64;
+
+  private final IPLoM owner;
+  private final File sourceFile;
+  private final int parallelism;
+
+  /**
+   * Lines are decoded the same way FileReader does it, and so are the headers checked at
+   * the range boundaries: the detector sees the same text as in partitionRange
+   */
+  private final Charset charset = Charset.defaultCharset();
+
+  /**
+   * Number of lines before knownOffset (a line start), so consecutive slices do not
+   * count the lines from the beginning of the file again
+   */
+  private long knownOffset = 0;
+  private long knownLines = 0;
+
+
+  MappedLogIngestor(IPLoM owner, File sourceFile, int parallelism) {
+    this.owner = owner;
+    this.sourceFile = sourceFile;
+    this.parallelism = Math.max(1, parallelism);
+  }
+
+
+  /**
+   * Partition the records starting inside [start, end) by their token size
+   * A record belongs to the range where its time-stamp line starts, so both
+   * ends are moved forward to the next record boundary (except offset 0).
+   * @param
+   * long start: first byte of the slice
+   * long end: first byte after the slice (clamped to the file size)
+   */
+  Map<Integer, ArrayList<String>> partition(long start, long end) throws IOException {
+
+    Map<Integer, ArrayList<String>> partitionsBySize = new HashMap<>();
+
+    try (RandomAccessFile file = new RandomAccessFile(this.sourceFile, "r")) {
+      FileChannel channel = file.getChannel();
+      long fileSize = channel.size();
+      end = Math.min(end, fileSize);
+      start = (start <= 0) ? 0 : nextRecordStart(channel, start, fileSize);
+      end = (end >= fileSize) ? fileSize : nextRecordStart(channel, end, fileSize);
+      if (start >= end) {
+        return partitionsBySize;
+      }
+
+      long[] cuts = rangeCuts(channel, start, end, fileSize);
+      int ranges = cuts.length - 1;
+      long linesBefore = linesBefore(channel, start);
+
+      if (ranges == 1) {
+        RangeResult range = partitionRange(channel, cuts[0], cuts[1]);
+        range.shiftLineNumbers(linesBefore);
+        linesCounted(end, linesBefore + range.lineCount);
+        return range.partitionsBySize;
+      }
+
+      /*
+       * Each range is processed on its own core, results are merged in file order
+       */
+      ExecutorService executor = Executors.newFixedThreadPool(Math.min(this.parallelism, ranges));
+      try {
+        List<Future<RangeResult>> futures = new ArrayList<>(ranges);
+        for (int i = 0; i < ranges; i++) {
+          futures.add(executor.submit(new RangeTask(channel, cuts[i], cuts[i + 1])));
+        }
+        for (Future<RangeResult> future: futures) {
+          RangeResult range = future.get();
+          range.shiftLineNumbers(linesBefore);
+          linesBefore += range.lineCount;
+          mergeSizePartitions(partitionsBySize, range.partitionsBySize);
+        }
+        linesCounted(end, linesBefore);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Ingestion of " + this.sourceFile + " was interrupted");
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof IOException) {
+          throw (IOException) cause;
+        }
+        throw new IOException("Failed to ingest " + this.sourceFile, cause);
+      } finally {
+        executor.shutdownNow();
+      }
+    }
+
+    return partitionsBySize;
+
+  }
+
+
+  /**
+   * Merge the size partitions of one range into the overall result, keeping the order of the logs
+   * (and the line numbers, when both are RecordLists)
+   */
+  static void mergeSizePartitions(Map<Integer, ArrayList<String>> partitionsBySize,
+                                  Map<Integer, ArrayList<String>> rangePartitions) {
+    for (Map.Entry<Integer, ArrayList<String>> entry: rangePartitions.entrySet()) {
+      ArrayList<String> logs = partitionsBySize.get(entry.getKey());
+      if (logs == null) {
+        partitionsBySize.put(entry.getKey(), entry.getValue());
+      } else {
+        logs.addAll(entry.getValue());
+      }
+    }
+  }
+
+
+  /**
+   * Number of lines before a line start, counted from the last known line start
+   */
+  private long linesBefore(FileChannel channel, long lineStart) throws IOException {
+
+    if (lineStart < this.knownOffset) {
+      this.knownOffset = 0;
+      this.knownLines = 0;
+    }
+
+    ByteBuffer block = ByteBuffer.allocate(SCAN_BLOCK_SIZE);
+    long position = this.knownOffset;
+    long lines = this.knownLines;
+    while (position < lineStart) {
+      block.clear();
+      block.limit((int)Math.min(SCAN_BLOCK_SIZE, lineStart - position));
+      int read = channel.read(block, position);
+      if (read <= 0) {
+        break;
+      }
+      byte[] bytes = block.array();
+      for (int i = 0; i < read; i++) {
+        if (bytes[i] == '\n') {
+          lines ++;
+        }
+      }
+      position += read;
+    }
+
+    linesCounted(lineStart, lines);
+    return lines;
+
+  }
+
+  private void linesCounted(long lineStart, long lines) {
+    this.knownOffset = lineStart;
+    this.knownLines = lines;
+  }
+
+
+  /**
+   * Split [start, end) into ranges ending on record boundaries
+   * At least one range per worker, and no range larger than what can be mapped at once
+   */
+  private long[] rangeCuts(FileChannel channel, long start, long end, long fileSize) throws IOException {
+
+    long length = end - start;
+    int count = (int)Math.max(this.parallelism, (length + MAX_RANGE_SIZE - 1) / MAX_RANGE_SIZE);
+    count = (int)Math.max(1, Math.min(count, length / SCAN_BLOCK_SIZE));
+
+    long[] cuts = new long[count + 1];
+    int size = 0;
+    cuts[size++] = start;
+    for (int i = 1; i < count; i++) {
+      long cut = nextRecordStart(channel, start + length / count * i, end);
+      if (cut > cuts[size - 1] && cut < end) {
+        cuts[size++] = cut;
+      }
+    }
+    cuts[size++] = end;
+
+    for (int i = 1; i < size; i++) {
+      if (cuts[i] - cuts[i - 1] > MAX_RANGE_SIZE) {
+        throw new IOException("No record boundary within " + MAX_RANGE_SIZE + " bytes after offset " + cuts[i - 1]);
+      }
+    }
+
+    return Arrays.copyOf(cuts, size);
+
+  }
+
+
+  /**
+   * Find the first line starting at or after position whose line is led by a time-stamp
+   * @return the offset of that line, or limit if there is none before limit
+   */
+  private long nextRecordStart(FileChannel channel, long position, long limit) throws IOException {
+
+    ByteBuffer block = ByteBuffer.allocate(SCAN_BLOCK_SIZE);
+    ByteBuffer header = ByteBuffer.allocate(HEADER_WINDOW);
+
+    /*
+     * A line starts at offset 0 or right after a '\n'
+     */
+    long lineStart = position;
+    if (position > 0 && !(readByte(channel, position - 1) == '\n')) {
+      lineStart = nextLineStart(channel, block, position, limit);
+    }
+
+    while (lineStart < limit) {
+      if (matchHeader(channel, header, lineStart) != RecordHeaderDetector.NO_MATCH) {
+        return lineStart;
+      }
+      lineStart = nextLineStart(channel, block, lineStart, limit);
+    }
+
+    return limit;
+
+  }
+
+
+  /**
+   * Match the header detector of the owner on the line starting at an offset
+   * @return the match (see RecordHeaderDetector.match)
+   */
+  private long matchHeader(FileChannel channel, ByteBuffer header, long lineStart) throws IOException {
+    header.clear();
+    channel.read(header, lineStart);
+    header.flip();
+    int headerEnd = 0;
+    while (headerEnd < header.limit() && header.get(headerEnd) != '\n' && header.get(headerEnd) != '\r') {
+      headerEnd ++;
+    }
+    return this.owner.getRecordHeaderDetector().match(new String(header.array(), 0, headerEnd, this.charset));
+  }
+
+
+  /**
+   * Find the first record whose time-stamp is at or after a time, in a file whose records
+   * are in time order: binary search over the byte offsets, each probe reading the
+   * time-stamp of the first record starting at or after the offset
+   * @return the offset of that record's time-stamp line, or the file size if there is none
+   */
+  long firstRecordAtOrAfter(long epochMillis) throws IOException {
+
+    try (RandomAccessFile file = new RandomAccessFile(this.sourceFile, "r")) {
+      FileChannel channel = file.getChannel();
+      long fileSize = channel.size();
+      ByteBuffer header = ByteBuffer.allocate(HEADER_WINDOW);
+      long low = 0;
+      long high = fileSize;
+      while (low < high) {
+        long middle = low + (high - low) / 2;
+        long recordStart = nextRecordStart(channel, middle, fileSize);
+        if (recordStart == fileSize ||
+            RecordHeaderDetector.epochMillis(matchHeader(channel, header, recordStart)) >= epochMillis) {
+          high = middle;
+        } else {
+          low = middle + 1;
+        }
+      }
+      return nextRecordStart(channel, low, fileSize);
+    }
+
+  }
+
+
+  /**
+   * The offset right after the next '\n' found from position
+   */
+  private long nextLineStart(FileChannel channel, ByteBuffer block, long position, long limit) throws IOException {
+    while (position < limit) {
+      block.clear();
+      int read = channel.read(block, position);
+      if (read <= 0) {
+        break;
+      }
+      byte[] bytes = block.array();
+      for (int i = 0; i < read; i++) {
+        if (bytes[i] == '\n') {
+          return position + i + 1;
+        }
+      }
+      position += read;
+    }
+    return limit;
+  }
+
+
+  private static byte readByte(FileChannel channel, long position) throws IOException {
+    ByteBuffer one = ByteBuffer.allocate(1);
+    channel.read(one, position);
+    return one.get(0);
+  }
+
+
+  /**
+   * Merge and bucket all the records of one mapped range
+   * The records are numbered by their line in the range, from 1.
+   */
+  private RangeResult partitionRange(FileChannel channel, long start, long end) throws IOException {
+
+    RangeResult range = new RangeResult();
+    Map<Integer, ArrayList<String>> partitionsBySize = range.partitionsBySize;
+    MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+    int limit = buffer.limit();
+    byte[] lineBytes = new byte[256];
+    String addedString = null;
+    long currentLine = 0;
+    long recordLine = 0;
+    IPLoMMetrics metrics = this.owner.getMetrics();
+
+    int lineStart = 0;
+    while (lineStart < limit) {
+      currentLine ++;
+      int lineEnd = lineStart;
+      while (lineEnd < limit && buffer.get(lineEnd) != '\n') {
+        lineEnd ++;
+      }
+      int next = lineEnd + 1;
+      if (lineEnd > lineStart && buffer.get(lineEnd - 1) == '\r') {
+        lineEnd --;
+      }
+
+      int length = lineEnd - lineStart;
+      if (length > lineBytes.length) {
+        lineBytes = new byte[Math.max(length, lineBytes.length * 2)];
+      }
+      buffer.position(lineStart);
+      buffer.get(lineBytes, 0, length);
+      String currString = new String(lineBytes, 0, length, this.charset);
+
+      /*
+       * Same merging as the serial reader:
+       * logs without time-stamp are appended to their nearest previous one with time-stamp
+       */
+      if (!this.owner.isRecordHeader(currString)) {
+        metrics.lineRead(Math.min(next, limit) - lineStart, addedString != null);
+        recordLine = (addedString == null) ? currentLine : recordLine;
+        addedString = (addedString == null) ? currString : addedString + " " + currString;
+      } else {
+        metrics.lineRead(Math.min(next, limit) - lineStart, false);
+        if (addedString != null) {
+          this.owner.addRecordBySize(partitionsBySize, addedString, recordLine, (int)(currentLine - recordLine));
+        }
+        recordLine = currentLine;
+        addedString = currString;
+      }
+      lineStart = next;
+    }
+
+    if (addedString != null) {
+      this.owner.addRecordBySize(partitionsBySize, addedString, recordLine, (int)(currentLine - recordLine + 1));
+    }
+
+    range.lineCount = currentLine;
+    return range;
+
+  }
+
+
+  /**
+   * Size partitions of one range, numbered by the line in the range, and its #lines
+   */
+  private static final class RangeResult {
+
+    final Map<Integer, ArrayList<String>> partitionsBySize = new HashMap<>();
+    long lineCount = 0;
+
+    /**
+     * Number the records by their line in the file, given the #lines before the range
+     */
+    void shiftLineNumbers(long linesBefore) {
+      for (ArrayList<String> logs: this.partitionsBySize.values()) {
+        ((RecordList) logs).shiftLineNumbers(linesBefore);
+      }
+    }
+
+  }
+
+
+  /**
+   * Worker task processing one byte range
+   */
+  private class RangeTask implements Callable<RangeResult> {
+
+    private final FileChannel channel;
+    private final long start;
+    private final long end;
+
+    RangeTask(FileChannel channel, long start, long end) {
+      this.channel = channel;
+      this.start = start;
+      this.end = end;
+    }
+
+    @Override
+    public RangeResult call() throws IOException {
+      return partitionRange(this.channel, this.start, this.end);
+    }
+
+  }
+
+}
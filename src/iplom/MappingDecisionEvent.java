@@ -0,0 +1,55 @@
+/**
+ * Class: MappingDecisionEvent
+ *
+ * Flight Recorder event of one Step 3 mapping decision: the type of the mapping between
+ * the tokens at P1 and P2 found from one P1 token (determineMappingType), the split
+ * rank (getRankPosition) and the position split on.
+ *
+ * Initially Created: 2026-10-16
+ *
+ */
+
+package iplom;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("iplom.MappingDecision")
+@Label("Mapping Decision")
+@Category({"IPLoM", "Step 3"})
+@Description("Mapping type, split rank and split position of a set of tokens at P1/P2")
+@StackTrace(false)
+final class MappingDecisionEvent extends Event {
+
+  @Label("Partition Size")
+  int partitionSize;
+
+  @Label("Mapping Type")
+  @Description("1-1, 1-M, M-1 or M-M")
+  String mappingType;
+
+  @Label("P1 Tokens")
+  @Description("Distinct tokens at P1 in the mapping")
+  int p1Tokens;
+
+  @Label("P2 Tokens")
+  @Description("Distinct tokens at P2 in the mapping")
+  int p2Tokens;
+
+  @Label("Split Rank")
+  @Description("Result of getRankPosition for 1-M and M-1 mappings, 0 otherwise")
+  int splitRank;
+
+  @Label("Split Position")
+  @Description("Position split on, -1 when the mapping (M-M) is kept as one partition")
+  int splitPosition;
+
+  @Label("Rows Covered")
+  @Description("Logs with one of the P1 tokens of the mapping")
+  long rowsCovered;
+
+}
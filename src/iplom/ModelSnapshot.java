@@ -0,0 +1,287 @@
+/**
+ * Class: ModelSnapshot
+ *
+ * Compact binary model of a mining run, so that a classifier can restart and match
+ * logs without mining the source file again.
+ *
+ * The model holds the IPLoM parameters, the templates with their support (#logs) and
+ * the tokens of their constants: the rest of the miner's token dictionary (variable
+ * parts, IDs, ...) is never needed to match logs, and is not written. It is written as
+ * a stream, and loaded by memory-mapping the file; the tokens and the templates are
+ * all decoded at load time, the templates need every token.
+ *
+ * Layout (big-endian):
+ *   int magic, int version
+ *   string delimiter
+ *   double partitionSupportThreshold, clusterGoodnessThreshold, lowerBound, upperBound
+ *   int #tokens, int #bytes, int[#tokens + 1] token offsets, byte[#bytes] UTF-8 tokens
+ *   (the distinct template constants, in their order of first use)
+ *   int #templates, then per template: int support, int #tokens, int[#tokens] token IDs (-1 = wildcard),
+ *   int[#tokens] cardinalities (#distinct tokens per position, since version 2)
+ * A string is an int #bytes followed by its UTF-8 bytes.
+ *
+ * The record header detector is code, not data, and is not part of the model.
+ *
+ * Initially Created: 2026-10-16
+ *
+ */
+
+package iplom;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.*;
+
+public final class ModelSnapshot {
+
+  private static final int MAGIC = 0x49504C4D; // "IPLM"
+  private static final int VERSION = 2;
+  private static final int WILDCARD_ID = -1;
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+
+  private final String delimiter;
+  private final double partitionSupportThreshold;
+  private final double clusterGoodnessThreshold;
+  private final double lowerBound;
+  private final double upperBound;
+
+  /**
+   * Tokens of the model by ID
+   */
+  private final String[] tokens;
+
+  private final List<LogTemplate> templates;
+
+
+  private ModelSnapshot(ByteBuffer buffer) throws IOException {
+
+    int position = 0;
+    if (buffer.limit() < 8 || buffer.getInt(0) != MAGIC) {
+      throw new IOException("Not an IPLoM model file");
+    }
+    int version = buffer.getInt(4);
+    if (version < 1 || version > VERSION) {
+      throw new IOException("Unsupported IPLoM model version " + version);
+    }
+    position = 8;
+
+    int delimiterLength = buffer.getInt(position);
+    this.delimiter = decode(buffer, position + 4, delimiterLength);
+    position += 4 + delimiterLength;
+    this.partitionSupportThreshold = buffer.getDouble(position);
+    this.clusterGoodnessThreshold = buffer.getDouble(position + 8);
+    this.lowerBound = buffer.getDouble(position + 16);
+    this.upperBound = buffer.getDouble(position + 24);
+    position += 32;
+
+    int tokenCount = buffer.getInt(position);
+    int byteCount = buffer.getInt(position + 4);
+    int offsetsPosition = position + 8;
+    int bytesPosition = offsetsPosition + 4 * (tokenCount + 1);
+    this.tokens = new String[tokenCount];
+    for (int id = 0; id < tokenCount; id++) {
+      int start = buffer.getInt(offsetsPosition + 4 * id);
+      int end = buffer.getInt(offsetsPosition + 4 * (id + 1));
+      this.tokens[id] = decode(buffer, bytesPosition + start, end - start);
+    }
+    position = bytesPosition + byteCount;
+
+    int templateCount = buffer.getInt(position);
+    position += 4;
+    List<LogTemplate> tempTemplates = new ArrayList<>(templateCount);
+    for (int t = 0; t < templateCount; t++) {
+      int support = buffer.getInt(position);
+      int templateTokens = buffer.getInt(position + 4);
+      position += 8;
+      String[] constants = new String[templateTokens];
+      for (int i = 0; i < templateTokens; i++) {
+        int tokenId = buffer.getInt(position);
+        constants[i] = (tokenId == WILDCARD_ID) ? null : this.tokens[tokenId];
+        position += 4;
+      }
+      int[] cardinalities = null;
+      if (version >= 2) {
+        cardinalities = new int[templateTokens];
+        for (int i = 0; i < templateTokens; i++) {
+          cardinalities[i] = buffer.getInt(position);
+          position += 4;
+        }
+      }
+      tempTemplates.add(new LogTemplate(constants, support, cardinalities));
+    }
+    this.templates = Collections.unmodifiableList(tempTemplates);
+
+  }
+
+
+  /**
+   * Load a model by memory-mapping its file
+   */
+  public static ModelSnapshot load(File modelFile) throws IOException {
+    try (RandomAccessFile file = new RandomAccessFile(modelFile, "r")) {
+      FileChannel channel = file.getChannel();
+      if (channel.size() > Integer.MAX_VALUE) {
+        throw new IOException("Model file too large: " + modelFile);
+      }
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      try {
+        return new ModelSnapshot(buffer);
+      } catch (IndexOutOfBoundsException e) {
+        throw new IOException("Truncated IPLoM model file: " + modelFile, e);
+      }
+    }
+  }
+
+
+  /**
+   * Stream a model to a file
+   * @param
+   * File modelFile: the output file
+   * IPLoM miner: gives the parameters
+   * Collection<LogTemplate> templates: the templates, e.g. from dicoverLogTemplate
+   */
+  public static void write(File modelFile, IPLoM miner, Collection<LogTemplate> templates) throws IOException {
+
+    /*
+     * Template constants are numbered in their order of first use, and encoded once
+     */
+    List<byte[]> tokens = new ArrayList<>();
+    Map<String, Integer> idsByToken = new HashMap<>();
+    int byteCount = 0;
+    List<int[]> templateIds = new ArrayList<>(templates.size());
+    for (LogTemplate template: templates) {
+      int[] ids = new int[template.tokenCount()];
+      for (int i = 0; i < ids.length; i++) {
+        String constant = template.constant(i);
+        if (constant == null) {
+          ids[i] = WILDCARD_ID;
+          continue;
+        }
+        Integer tokenId = idsByToken.get(constant);
+        if (tokenId == null) {
+          tokenId = tokens.size();
+          idsByToken.put(constant, tokenId);
+          byte[] bytes = utf8(constant);
+          tokens.add(bytes);
+          byteCount += bytes.length;
+        }
+        ids[i] = tokenId;
+      }
+      templateIds.add(ids);
+    }
+
+    try (DataOutputStream output = new DataOutputStream(
+            new BufferedOutputStream(new FileOutputStream(modelFile), 1 << 16))) {
+
+      output.writeInt(MAGIC);
+      output.writeInt(VERSION);
+      writeString(output, miner.getDelimiter());
+      output.writeDouble(miner.getPartitionSupportThreshold());
+      output.writeDouble(miner.getClusterGoodnessThreshold());
+      output.writeDouble(miner.getLowerBound());
+      output.writeDouble(miner.getUpperBound());
+
+      output.writeInt(tokens.size());
+      output.writeInt(byteCount);
+      int offset = 0;
+      output.writeInt(offset);
+      for (byte[] bytes: tokens) {
+        offset += bytes.length;
+        output.writeInt(offset);
+      }
+      for (byte[] bytes: tokens) {
+        output.write(bytes);
+      }
+
+      output.writeInt(templates.size());
+      Iterator<int[]> idsIterator = templateIds.iterator();
+      for (LogTemplate template: templates) {
+        int[] tokenIds = idsIterator.next();
+        output.writeInt(template.getSupport());
+        output.writeInt(tokenIds.length);
+        for (int tokenId: tokenIds) {
+          output.writeInt(tokenId);
+        }
+        for (int i = 0; i < tokenIds.length; i++) {
+          output.writeInt(template.cardinality(i));
+        }
+      }
+
+    }
+
+  }
+
+
+  /**
+   * Get the parameters of the mining run
+   */
+  public String getDelimiter() { return this.delimiter; }
+  public double getPartitionSupportThreshold() { return this.partitionSupportThreshold; }
+  public double getClusterGoodnessThreshold() { return this.clusterGoodnessThreshold; }
+  public double getLowerBound() { return this.lowerBound; }
+  public double getUpperBound() { return this.upperBound; }
+
+  /**
+   * Get the templates, in the order they were written
+   */
+  public List<LogTemplate> getTemplates() {
+    return this.templates;
+  }
+
+  /**
+   * Number of tokens of the model, the distinct template constants
+   */
+  public int dictionarySize() {
+    return this.tokens.length;
+  }
+
+  /**
+   * Get a token of the model by ID
+   */
+  public String token(int id) {
+    return this.tokens[id];
+  }
+
+
+  /**
+   * Create a miner with the parameters of the model
+   */
+  public IPLoM newMiner() {
+    IPLoM miner = new IPLoM();
+    miner.setDelimiter(this.delimiter);
+    miner.setPartitionSupportThreshold(this.partitionSupportThreshold);
+    miner.setClusterGoodnessThreshold(this.clusterGoodnessThreshold);
+    miner.setBounds(this.lowerBound, this.upperBound);
+    return miner;
+  }
+
+  /**
+   * Create a registry of the templates, tokenizing with the delimiter of the model
+   */
+  public TemplateRegistry newTemplateRegistry() {
+    return new TemplateRegistry(this.templates, new DelimiterTokenizer(this.delimiter));
+  }
+
+
+  private static String decode(ByteBuffer buffer, int position, int length) {
+    byte[] bytes = new byte[length];
+    ByteBuffer view = buffer.duplicate();
+    view.position(position);
+    view.get(bytes);
+    return new String(bytes, UTF8);
+  }
+
+  private static byte[] utf8(String str) {
+    return str.getBytes(UTF8);
+  }
+
+  private static void writeString(DataOutputStream output, String str) throws IOException {
+    byte[] bytes = utf8(str);
+    output.writeInt(bytes.length);
+    output.write(bytes);
+  }
+
+}
@@ -0,0 +1,35 @@
+/**
+ * Class: NoOpResultSink
+ *
+ * Result sink dropping everything, for production runs which only use the returned
+ * templates, and for benchmarks.
+ *
+ * Initially Created: 2026-10-16
+ *
+ */
+
+package iplom;
+
+import java.util.Map;
+
+public final class NoOpResultSink implements ResultSink {
+
+  @Override
+  public void message(String message) { }
+
+  @Override
+  public void partitionSupport(PartitionKey key, double supportRatio, TokenDictionary dictionary) { }
+
+  @Override
+  public void partitions(int step, Map<PartitionKey, ColumnarPartition> partitions, TokenDictionary dictionary) { }
+
+  @Override
+  public void template(int templateId, LogTemplate template) { }
+
+  @Override
+  public void assignment(long lineNumber, int templateId) { }
+
+  @Override
+  public void close() { }
+
+}
@@ -0,0 +1,131 @@
+/**
+ * Class: ParallelPositionPartitioner
+ *
+ * Fork-join execution of Step 2 (partition by token position).
+ *
+ * Token size partitions are independent, so each of them is a ForkJoin task.
+ * A large size partition is further split into ranges of logs which are encoded
+ * (into disjoint rows of the same ColumnarPartition) and counted in parallel; the per-position counts of the ranges are merged before
+ * the split position is chosen. The result is the same as the serial path.
+ *
+ * Initially Created: 2026-10-16
+ *
+ */
+
+package iplom;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+class ParallelPositionPartitioner {
+
+  /**
+   * Ranges with at most this many logs are encoded by a single task
+   */
+  private static final int RANGE_THRESHOLD = 8192;
+
+  private final IPLoM owner;
+  private final int parallelism;
+
+
+  ParallelPositionPartitioner(IPLoM owner, int parallelism) {
+    this.owner = owner;
+    this.parallelism = Math.max(1, parallelism);
+  }
+
+
+  /**
+   * Partition every size partition by token position
+   * @return the sub-partitions of each token size
+   */
+  Map<Integer, Map<PartitionKey, ColumnarPartition>> partition(Map<Integer, ArrayList<String>> partitionsBySize) {
+
+    ForkJoinPool pool = new ForkJoinPool(this.parallelism);
+    try {
+      List<SizePartitionTask> tasks = new ArrayList<>(partitionsBySize.size());
+      for (Map.Entry<Integer, ArrayList<String>> partitionEntry: partitionsBySize.entrySet()) {
+        tasks.add(new SizePartitionTask(partitionEntry.getKey(), partitionEntry.getValue()));
+      }
+      for (SizePartitionTask task: tasks) {
+        pool.execute(task);
+      }
+
+      Map<Integer, Map<PartitionKey, ColumnarPartition>> subPartitionsBySize = new HashMap<>();
+      for (SizePartitionTask task: tasks) {
+        subPartitionsBySize.put(task.tempSize, task.join());
+      }
+      return subPartitionsBySize;
+    } finally {
+      pool.shutdown();
+    }
+
+  }
+
+
+  /**
+   * Partition one token size partition by token position
+   */
+  private class SizePartitionTask extends RecursiveTask<Map<PartitionKey, ColumnarPartition>> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Integer tempSize;
+    private final ArrayList<String> logs;
+
+    SizePartitionTask(Integer tempSize, ArrayList<String> logs) {
+      this.tempSize = tempSize;
+      this.logs = logs;
+    }
+
+    @Override
+    protected Map<PartitionKey, ColumnarPartition> compute() {
+      ColumnarPartition partition = new ColumnarPartition(this.tempSize, this.logs.size(), this.logs instanceof RecordList);
+      TokenCounter[] tokenCollection =
+          new EncodeTask(this.logs, 0, this.logs.size(), partition).compute();
+      return owner.splitByPosition(this.tempSize, partition, tokenCollection);
+    }
+
+  }
+
+
+  /**
+   * Encode a range of logs and count the tokens at each position
+   * Ranges above the threshold are halved and processed in parallel
+   */
+  private class EncodeTask extends RecursiveTask<TokenCounter[]> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final List<String> logs;
+    private final int from;
+    private final int to;
+    private final ColumnarPartition partition;
+
+    EncodeTask(List<String> logs, int from, int to, ColumnarPartition partition) {
+      this.logs = logs;
+      this.from = from;
+      this.to = to;
+      this.partition = partition;
+    }
+
+    @Override
+    protected TokenCounter[] compute() {
+      if (this.to - this.from <= RANGE_THRESHOLD) {
+        return owner.encodeLogs(this.logs, this.from, this.to, this.partition);
+      }
+
+      int middle = (this.from + this.to) >>> 1;
+      EncodeTask left = new EncodeTask(this.logs, this.from, middle, this.partition);
+      EncodeTask right = new EncodeTask(this.logs, middle, this.to, this.partition);
+      ForkJoinTask.invokeAll(left, right);
+
+      TokenCounter[] tokenCollection = left.join();
+      IPLoM.mergeTokenCollections(tokenCollection, right.join());
+      return tokenCollection;
+    }
+
+  }
+
+}
@@ -0,0 +1,180 @@
+/**
+ * Class: PartitionKey
+ *
+ * Immutable key of a partition, recording its lineage through the steps:
+ *   Step 1 - token size
+ *   Step 2 - split position and the token found there
+ *   Step 3 - how the partition left the bijection search: not split, split by the
+ *            token at a position, one of the M-M partitions, or the outliers
+ * All the members are primitive and the hash code is computed once, so the key is
+ * cheap to look up on every row. A new step derives a new key, a key is never changed.
+ *
+ * Initially Created: 2026-10-16
+ *
+ */
+
+package iplom;
+
+public final class PartitionKey {
+
+  /**
+   * Value of the position and token members which are not set (yet)
+   */
+  public static final int NONE = -1;
+
+  /**
+   * Step 3 lineage
+   */
+  public static final byte NOT_SEARCHED = 0;   // partition from Step 1 or Step 2
+  public static final byte NO_BIJECTION = 1;   // no further partitioning needed
+  public static final byte BIJECTION = 2;      // split by the token at bijectionPosition
+  public static final byte MANY_TO_MANY = 3;   // lines of the M-M mapping number bijectionToken
+  public static final byte OUTLIERS = 4;       // lines left over by the split
+
+  private final int tokenCount;
+  private final int position;
+  private final int positionToken;
+  private final byte bijection;
+  private final int bijectionPosition;
+  private final int bijectionToken;
+  private final int hash;
+
+
+  private PartitionKey(int tokenCount, int position, int positionToken,
+                       byte bijection, int bijectionPosition, int bijectionToken) {
+    this.tokenCount = tokenCount;
+    this.position = position;
+    this.positionToken = positionToken;
+    this.bijection = bijection;
+    this.bijectionPosition = bijectionPosition;
+    this.bijectionToken = bijectionToken;
+
+    int h = tokenCount;
+    h = 31 * h + position;
+    h = 31 * h + positionToken;
+    h = 31 * h + bijection;
+    h = 31 * h + bijectionPosition;
+    h = 31 * h + bijectionToken;
+    this.hash = h ^ (h >>> 16);
+  }
+
+
+  /**
+   * Key of a Step 1 partition
+   */
+  public static PartitionKey bySize(int tokenCount) {
+    return new PartitionKey(tokenCount, NONE, NONE, NOT_SEARCHED, NONE, NONE);
+  }
+
+  /**
+   * Key of the Step 2 sub-partition holding a token at a position
+   */
+  public PartitionKey byPosition(int position, int token) {
+    return new PartitionKey(this.tokenCount, position, token, NOT_SEARCHED, NONE, NONE);
+  }
+
+  /**
+   * Key of the partition kept whole by Step 3
+   */
+  public PartitionKey noBijection() {
+    return new PartitionKey(this.tokenCount, this.position, this.positionToken, NO_BIJECTION, NONE, NONE);
+  }
+
+  /**
+   * Key of the Step 3 sub-partition holding a token at the split position
+   */
+  public PartitionKey byBijection(int position, int token) {
+    return new PartitionKey(this.tokenCount, this.position, this.positionToken, BIJECTION, position, token);
+  }
+
+  /**
+   * Key of the Step 3 sub-partition of an M-M mapping
+   * @param
+   * int number: number of the M-M mapping within the partition (1, 2, ...)
+   */
+  public PartitionKey manyToMany(int number) {
+    return new PartitionKey(this.tokenCount, this.position, this.positionToken, MANY_TO_MANY, NONE, number);
+  }
+
+  /**
+   * Key of the lines left over by Step 3
+   */
+  public PartitionKey outliers() {
+    return new PartitionKey(this.tokenCount, this.position, this.positionToken, OUTLIERS, NONE, NONE);
+  }
+
+
+  /**
+   * Get the members
+   */
+  public int getTokenCount() { return tokenCount; }
+  public int getPosition() { return position; }
+  public int getPositionToken() { return positionToken; }
+  public byte getBijection() { return bijection; }
+  public int getBijectionPosition() { return bijectionPosition; }
+  public int getBijectionToken() { return bijectionToken; }
+  public boolean isOutliers() { return bijection == OUTLIERS; }
+
+
+  /**
+   * Readable form of the key, with the tokens decoded
+   * Format: size token position [Step 3 lineage]
+   */
+  public String describe(TokenDictionary dictionary) {
+    StringBuilder builder = new StringBuilder();
+    builder.append(this.tokenCount);
+    if (this.position != NONE) {
+      builder.append(' ').append(dictionary.token(this.positionToken)).append(' ').append(this.position);
+    }
+    switch (this.bijection) {
+      case NO_BIJECTION:
+        builder.append(" No BI");
+        break;
+      case BIJECTION:
+        builder.append(' ').append(dictionary.token(this.bijectionToken)).append(' ').append(this.bijectionPosition);
+        break;
+      case MANY_TO_MANY:
+        builder.append(" M-M ").append(this.bijectionToken);
+        break;
+      case OUTLIERS:
+        builder.append(" Outliers");
+        break;
+      default:
+        break;
+    }
+    return builder.toString();
+  }
+
+
+  /**
+   * (non-Javadoc)
+   * @see java.lang.Object#hashCode()
+   */
+  @Override
+  public int hashCode() { return hash; }
+
+  /**
+   * check whether it is equal to another Object
+   * Based on its type and all the members
+   */
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (!(o instanceof PartitionKey)) return false;
+    PartitionKey keyo = (PartitionKey) o;
+    return this.hash == keyo.hash &&
+           this.tokenCount == keyo.tokenCount &&
+           this.position == keyo.position &&
+           this.positionToken == keyo.positionToken &&
+           this.bijection == keyo.bijection &&
+           this.bijectionPosition == keyo.bijectionPosition &&
+           this.bijectionToken == keyo.bijectionToken;
+  }
+
+  @Override
+  public String toString() {
+    return "[" + tokenCount + ", " + position + ", " + positionToken + ", " + bijection + ", " +
+           bijectionPosition + ", " + bijectionToken + "]";
+  }
+
+}
@@ -0,0 +1,304 @@
+/**
+ * Class: PartitionSpiller
+ *
+ * Encoded partitions of Steps 2 and 3 under a memory budget.
+ *
+ * Rows are appended to the partition of their key as ColumnarPartition chunks; once the
+ * estimated size of the chunks in memory exceeds the budget, the chunks of every key are
+ * appended to the spill file of their key and dropped from memory. A partition is read
+ * back chunk by chunk, or whole, spilled rows first, so the rows keep their order. The
+ * lines of the rows (see ColumnarPartition.lineNumber) are spilled with them.
+ *
+ * The temporary files are deleted on close.
+ *
+ * Initially Created: 2026-10-16
+ *
+ */
+
+package iplom;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.util.*;
+
+class PartitionSpiller implements Closeable {
+
+  /**
+   * Estimated heap cost of a chunk on top of its arrays
+   */
+  private static final long CHUNK_OVERHEAD = 64;
+
+  private final long memoryBudget;
+  private final File spillDirectory;
+
+  /**
+   * Chunks kept in memory and #rows of each partition, in the order of the keys
+   */
+  private final Map<PartitionKey, List<ColumnarPartition>> chunksByKey = new LinkedHashMap<>();
+  private final Map<PartitionKey, Integer> rowCounts = new LinkedHashMap<>();
+  private long memoryUsed = 0;
+
+  /**
+   * Spill file of each key, created on its first spill
+   */
+  private final Map<PartitionKey, File> spillFiles = new HashMap<>();
+  private int spillFileCount = 0;
+  private long spilledBytes = 0;
+
+
+  /**
+   * @param
+   * long memoryBudget: bytes of encoded rows kept in memory before spilling
+   * File directory: where the temporary directory is created, null for java.io.tmpdir
+   */
+  PartitionSpiller(long memoryBudget, File directory) throws IOException {
+    this.memoryBudget = memoryBudget;
+    this.spillDirectory = (directory == null) ?
+        Files.createTempDirectory("iplom-partitions").toFile() :
+        Files.createTempDirectory(directory.toPath(), "iplom-partitions").toFile();
+  }
+
+
+  /**
+   * Append rows to the partition of a key
+   */
+  void add(PartitionKey key, ColumnarPartition rows) throws IOException {
+    if (rows.isEmpty()) {
+      return;
+    }
+    List<ColumnarPartition> chunks = this.chunksByKey.get(key);
+    if (chunks == null) {
+      chunks = new ArrayList<>();
+      this.chunksByKey.put(key, chunks);
+    }
+    chunks.add(rows);
+    Integer rowCount = this.rowCounts.get(key);
+    this.rowCounts.put(key, ((rowCount == null) ? 0 : rowCount) + rows.rowCount());
+    this.memoryUsed += estimatedBytes(rows);
+    if (this.memoryUsed > this.memoryBudget) {
+      spill();
+    }
+  }
+
+
+  /**
+   * The keys added and not loaded yet, in the order of their first rows
+   */
+  List<PartitionKey> keys() {
+    return new ArrayList<>(this.rowCounts.keySet());
+  }
+
+  /**
+   * #rows of the partition of a key, 0 if unknown
+   */
+  int rowCount(PartitionKey key) {
+    Integer rowCount = this.rowCounts.get(key);
+    return (rowCount == null) ? 0 : rowCount;
+  }
+
+  /**
+   * Bytes written to the spill files so far
+   */
+  long spilledBytes() {
+    return this.spilledBytes;
+  }
+
+
+  /**
+   * Load back a whole partition and release it
+   */
+  ColumnarPartition load(PartitionKey key) throws IOException {
+    List<ColumnarPartition> chunks = new ArrayList<>();
+    try (ChunkReader reader = chunks(key)) {
+      ColumnarPartition chunk;
+      while ((chunk = reader.next()) != null) {
+        chunks.add(chunk);
+      }
+    }
+    return concat(key.getTokenCount(), chunks);
+  }
+
+  /**
+   * Read back a partition chunk by chunk, and release it
+   */
+  ChunkReader chunks(PartitionKey key) throws IOException {
+    File spillFile = this.spillFiles.remove(key);
+    List<ColumnarPartition> inMemory = this.chunksByKey.remove(key);
+    this.rowCounts.remove(key);
+    if (inMemory != null) {
+      for (ColumnarPartition chunk: inMemory) {
+        this.memoryUsed -= estimatedBytes(chunk);
+      }
+    }
+    return new ChunkReader(spillFile, (inMemory == null) ? new ArrayList<ColumnarPartition>() : inMemory);
+  }
+
+
+  /**
+   * Append the chunks in memory to the spill file of their key, as: #rows, #tokens,
+   * whether the rows carry their lines, each column, then the lines
+   */
+  private void spill() throws IOException {
+
+    for (Map.Entry<PartitionKey, List<ColumnarPartition>> entry: this.chunksByKey.entrySet()) {
+      File spillFile = this.spillFiles.get(entry.getKey());
+      if (spillFile == null) {
+        spillFile = new File(this.spillDirectory, "partition-" + (this.spillFileCount++) + ".bin");
+        this.spillFiles.put(entry.getKey(), spillFile);
+      }
+      try (DataOutputStream output = new DataOutputStream(
+              new BufferedOutputStream(new FileOutputStream(spillFile, true), 1 << 16))) {
+        for (ColumnarPartition chunk: entry.getValue()) {
+          writeChunk(output, chunk);
+          this.spilledBytes += estimatedBytes(chunk) - CHUNK_OVERHEAD;
+        }
+      }
+    }
+
+    this.chunksByKey.clear();
+    this.memoryUsed = 0;
+
+  }
+
+  private static void writeChunk(DataOutputStream output, ColumnarPartition chunk) throws IOException {
+    output.writeInt(chunk.rowCount());
+    output.writeInt(chunk.tokenCount());
+    output.writeBoolean(chunk.hasLineNumbers());
+    for (int i = 0; i < chunk.tokenCount(); i++) {
+      int[] column = chunk.column(i);
+      for (int r = 0; r < chunk.rowCount(); r++) {
+        output.writeInt(column[r]);
+      }
+    }
+    if (chunk.hasLineNumbers()) {
+      for (int r = 0; r < chunk.rowCount(); r++) {
+        output.writeLong(chunk.lineNumber(r));
+        output.writeInt(chunk.lineCount(r));
+      }
+    }
+  }
+
+  /**
+   * The next chunk of a spill file, null at its end
+   */
+  private static ColumnarPartition readChunk(DataInputStream input) throws IOException {
+    int rowCount;
+    try {
+      rowCount = input.readInt();
+    } catch (EOFException e) {
+      return null;
+    }
+    int tokenCount = input.readInt();
+    boolean withLineNumbers = input.readBoolean();
+    ColumnarPartition chunk = new ColumnarPartition(tokenCount, rowCount, withLineNumbers);
+    for (int i = 0; i < tokenCount; i++) {
+      int[] column = chunk.column(i);
+      for (int r = 0; r < rowCount; r++) {
+        column[r] = input.readInt();
+      }
+    }
+    if (withLineNumbers) {
+      for (int r = 0; r < rowCount; r++) {
+        chunk.setLines(r, input.readLong(), input.readInt());
+      }
+    }
+    return chunk;
+  }
+
+
+  /**
+   * Token IDs, and the lines when the rows carry them
+   */
+  private static long estimatedBytes(ColumnarPartition chunk) {
+    long rowBytes = 4L * chunk.tokenCount() + (chunk.hasLineNumbers() ? 12 : 0);
+    return CHUNK_OVERHEAD + rowBytes * chunk.rowCount();
+  }
+
+  /**
+   * One partition of the rows of several chunks, in their order
+   */
+  static ColumnarPartition concat(int tokenCount, List<ColumnarPartition> chunks) {
+    if (chunks.size() == 1) {
+      return chunks.get(0);
+    }
+    int rowCount = 0;
+    boolean withLineNumbers = !chunks.isEmpty();
+    for (ColumnarPartition chunk: chunks) {
+      rowCount += chunk.rowCount();
+      withLineNumbers &= chunk.hasLineNumbers();
+    }
+    ColumnarPartition partition = new ColumnarPartition(tokenCount, rowCount, withLineNumbers);
+    int row = 0;
+    for (ColumnarPartition chunk: chunks) {
+      for (int i = 0; i < tokenCount; i++) {
+        System.arraycopy(chunk.column(i), 0, partition.column(i), row, chunk.rowCount());
+      }
+      if (withLineNumbers) {
+        for (int r = 0; r < chunk.rowCount(); r++) {
+          partition.setLines(row + r, chunk.lineNumber(r), chunk.lineCount(r));
+        }
+      }
+      row += chunk.rowCount();
+    }
+    return partition;
+  }
+
+
+  /**
+   * Delete the spill files and their directory
+   */
+  @Override
+  public void close() throws IOException {
+    for (File spillFile: this.spillFiles.values()) {
+      Files.deleteIfExists(spillFile.toPath());
+    }
+    this.spillFiles.clear();
+    this.chunksByKey.clear();
+    this.rowCounts.clear();
+    Files.deleteIfExists(this.spillDirectory.toPath());
+  }
+
+
+  /**
+   * The chunks of one partition: those of its spill file, which is deleted once read or
+   * on close, then those which were still in memory
+   */
+  static final class ChunkReader implements Closeable {
+
+    private final File spillFile;
+    private DataInputStream input;
+    private final Iterator<ColumnarPartition> inMemory;
+
+    private ChunkReader(File spillFile, List<ColumnarPartition> inMemory) throws IOException {
+      this.spillFile = spillFile;
+      this.input = (spillFile == null) ? null : new DataInputStream(
+          new BufferedInputStream(new FileInputStream(spillFile), 1 << 16));
+      this.inMemory = inMemory.iterator();
+    }
+
+    /**
+     * The next chunk, null after the last one
+     */
+    ColumnarPartition next() throws IOException {
+      if (this.input != null) {
+        ColumnarPartition chunk = readChunk(this.input);
+        if (chunk != null) {
+          return chunk;
+        }
+        close();
+      }
+      return this.inMemory.hasNext() ? this.inMemory.next() : null;
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (this.input != null) {
+        this.input.close();
+        this.input = null;
+        Files.deleteIfExists(this.spillFile.toPath());
+      }
+    }
+
+  }
+
+}
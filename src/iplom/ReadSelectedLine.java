@@ -10,63 +10,109 @@
 package iplom;
 
 import java.io.*;
+import java.util.*;
 import static java.lang.System.out;
 
 public class ReadSelectedLine {
 
+  /**
+   * Line offset index of each file looked up, rebuilt when its file changes
+   */
+  private static final Map<File, LineOffsetIndex> lineIndexes = new HashMap<>();
+
   /**
    * Read the selected line of a log file
+   * Seeks near the line with the line offset index of the file, built on the first call.
    * @param 
    * File sourceFile: input file
    * int lineNumber: specified line number
+   * @throws IllegalArgumentException if the line number is out of range
    */
   static void readAppointedLineNumber(File sourceFile, int lineNumber) 
       throws IOException {
-    FileReader input = new FileReader(sourceFile);
-    LineNumberReader reader = new LineNumberReader(input);
-    // reader.setLineNumber(lineNumber);
-    String s = "";
+    LineOffsetIndex index = lineIndex(sourceFile);
     
-    if (lineNumber <= 0 || lineNumber > getTotalLines(sourceFile)) {
-      out.println("The selected line number is our of range.");
-      System.exit(0);
+    if (lineNumber <= 0 || lineNumber > index.lineCount()) {
+      throw new IllegalArgumentException("The selected line number is out of range: " + lineNumber);
     }
     
-//    s = reader.readLine();
-//    out.println("LINE " + reader.getLineNumber() + ": " + s);
-    
-    int line = 0;
-    while (s != null) {
-      line ++;
-      s = reader.readLine();
-      if ((line - lineNumber) == 0) {
-        out.println("LINE " + line + ": " + s);
-        // System.exit(0);
-      }
+    out.println("LINE " + lineNumber + ": " + index.readLine(lineNumber));
+  }
+  
+  
+  /**
+   * Read many selected lines of a log file in one forward pass
+   * Nothing is read if a line number is out of range.
+   * @param 
+   * File sourceFile: input file
+   * SortedSet<Long> lineNumbers: selected line numbers, from 1, in their natural order
+   * LineConsumer consumer: receives the lines in increasing order, on the calling thread
+   * int parallelism: #threads reading the lines, 1 to read them serially
+   * @throws IllegalArgumentException if a line number is out of range
+   */
+  public static void readSelectedLines(File sourceFile, SortedSet<Long> lineNumbers, 
+      LineConsumer consumer, int parallelism) throws IOException {
+    long[] selected = new long[lineNumbers.size()];
+    int i = 0;
+    for (Long lineNumber: lineNumbers) {
+      selected[i++] = lineNumber;
+    }
+    lineIndex(sourceFile).readLines(selected, consumer, parallelism);
+  }
+  
+  public static void readSelectedLines(File sourceFile, SortedSet<Long> lineNumbers, 
+      LineConsumer consumer) throws IOException {
+    readSelectedLines(sourceFile, lineNumbers, consumer, 1);
+  }
+  
+  
+  /**
+   * Read many selected lines of a log file in one forward pass
+   * @param 
+   * BitSet lineNumbers: bit n is set to select line n (from 1)
+   * @see #readSelectedLines(File, SortedSet, LineConsumer, int)
+   */
+  public static void readSelectedLines(File sourceFile, BitSet lineNumbers, 
+      LineConsumer consumer, int parallelism) throws IOException {
+    long[] selected = new long[lineNumbers.cardinality()];
+    int i = 0;
+    for (int n = lineNumbers.nextSetBit(0); n >= 0; n = lineNumbers.nextSetBit(n + 1)) {
+      selected[i++] = n;
     }
-    reader.close();
-    input.close();
+    lineIndex(sourceFile).readLines(selected, consumer, parallelism);
+  }
+  
+  public static void readSelectedLines(File sourceFile, BitSet lineNumbers, 
+      LineConsumer consumer) throws IOException {
+    readSelectedLines(sourceFile, lineNumbers, consumer, 1);
   }
   
   
   /**
    * Get the total number of lines within a log file
+   * The count is cached in the line offset index of the file.
    * @param 
    * File sourceFile: input file
    */
   static int getTotalLines(File sourceFile) 
       throws IOException {
-    FileReader input = new FileReader(sourceFile);
-    LineNumberReader reader = new LineNumberReader(input);
-    String s = reader.readLine();
-    int line = 0;
-    while (s != null) {
-      line ++;
-      s = reader.readLine();
+    return (int)lineIndex(sourceFile).lineCount();
+  }
+  
+  
+  /**
+   * The line offset index of a file: cached, else loaded from disk, else built
+   * @throws IOException for a gzip file, its lines can not be read by offset
+   */
+  static synchronized LineOffsetIndex lineIndex(File sourceFile) 
+      throws IOException {
+    File key = sourceFile.getAbsoluteFile();
+    LineOffsetIndex index = lineIndexes.get(key);
+    if (index == null || !index.isCurrent()) {
+      index = LineOffsetIndex.forFile(key);
+      lineIndexes.put(key, index);
     }
-    reader.close();
-    input.close();
-    return line;
+    return index;
   }
   
   
@@ -0,0 +1,61 @@
+/**
+ * Interface: RecordHeaderDetector
+ *
+ * Detects the header (time-stamp) which leads every log record.
+ * A line starting with a header opens a new record; a line without one is merged
+ * into the previous record. Header detection runs on every input line, so
+ * implementations must not create objects while matching.
+ *
+ * The header length and the parsed time are returned packed in a single long,
+ * see headerLength() and epochMillis().
+ *
+ * Detectors are Serializable: ShardMiner hands the configured detector, with its state
+ * (e.g. the year of a SyslogHeaderDetector), over to its child JVMs.
+ *
+ * Initially Created: 2026-10-16
+ *
+ */
+
+package iplom;
+
+import java.io.Serializable;
+
+public interface RecordHeaderDetector extends Serializable {
+
+  /**
+   * Returned by match() when the line does not start with a header
+   */
+  long NO_MATCH = -1L;
+
+  /**
+   * Match a header at the beginning of a line
+   * @param
+   * CharSequence line: one input line
+   * @return NO_MATCH, or the header length (including its trailing blank) and the
+   *         header time in epoch milliseconds, packed with pack()
+   */
+  long match(CharSequence line);
+
+
+  /**
+   * Pack a header length (< 256) and a non-negative epoch time into a match result
+   */
+  static long pack(int headerLength, long epochMillis) {
+    return (epochMillis << 8) | (headerLength & 0xFF);
+  }
+
+  /**
+   * Header length of a match result
+   */
+  static int headerLength(long match) {
+    return (int)(match & 0xFF);
+  }
+
+  /**
+   * Epoch time (milliseconds, UTC) of a match result
+   */
+  static long epochMillis(long match) {
+    return match >>> 8;
+  }
+
+}
@@ -0,0 +1,198 @@
+/**
+ * Class: RecordList
+ *
+ * Step 1 bucket of log records which also carries the lines of every record in the
+ * source file: the line of its time-stamp and its #lines (the time-stamp line and the
+ * lines without time-stamp merged into it), so Step 4 can tag each line with its
+ * template. The lines are a long[] and an int[] kept in step with the list.
+ *
+ * Records are only appended (or all cleared): add(String) and addAll(Collection) of
+ * plain lists give NO_LINE to the records added, addAll of another RecordList copies
+ * its lines. Every other mutator (insert, remove, set, sort, ... and their iterator and
+ * sub-list forms) throws UnsupportedOperationException, it would move the records away
+ * from their lines.
+ *
+ * Initially Created: 2026-10-16
+ *
+ */
+
+package iplom;
+
+import java.util.*;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+final class RecordList extends ArrayList<String> {
+
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * Line number of a record which does not come from the source file
+   */
+  static final long NO_LINE = -1;
+
+  private long[] lineNumbers = new long[16];
+  private int[] lineCounts = new int[16];
+
+
+  RecordList() { }
+
+
+  /**
+   * Append a record with its lines
+   * @param
+   * long lineNumber: line of the record (from 1), NO_LINE if it has none
+   * int lineCount: #lines of the record, from its time-stamp line on
+   */
+  void add(String record, long lineNumber, int lineCount) {
+    int index = size();
+    super.add(record);
+    if (index == this.lineNumbers.length) {
+      grow(index + (index >> 1) + 1);
+    }
+    this.lineNumbers[index] = lineNumber;
+    this.lineCounts[index] = lineCount;
+  }
+
+  @Override
+  public boolean add(String record) {
+    add(record, NO_LINE, 0);
+    return true;
+  }
+
+  @Override
+  public boolean addAll(Collection<? extends String> records) {
+    int index = size();
+    int count = records.size();
+    super.addAll(records);
+    if (index + count > this.lineNumbers.length) {
+      grow(Math.max(index + count, index + (index >> 1) + 1));
+    }
+    if (records instanceof RecordList) {
+      System.arraycopy(((RecordList) records).lineNumbers, 0, this.lineNumbers, index, count);
+      System.arraycopy(((RecordList) records).lineCounts, 0, this.lineCounts, index, count);
+    } else {
+      Arrays.fill(this.lineNumbers, index, index + count, NO_LINE);
+      Arrays.fill(this.lineCounts, index, index + count, 0);
+    }
+    return count > 0;
+  }
+
+  private void grow(int capacity) {
+    this.lineNumbers = Arrays.copyOf(this.lineNumbers, capacity);
+    this.lineCounts = Arrays.copyOf(this.lineCounts, capacity);
+  }
+
+
+  /**
+   * Line number of the record at an index, NO_LINE if unknown
+   */
+  long lineNumber(int index) {
+    return this.lineNumbers[index];
+  }
+
+  /**
+   * #lines of the record at an index
+   */
+  int lineCount(int index) {
+    return this.lineCounts[index];
+  }
+
+  /**
+   * Line number of a record of any Step 1 bucket, NO_LINE if the bucket does not carry them
+   */
+  static long lineNumber(List<String> records, int index) {
+    return (records instanceof RecordList) ? ((RecordList) records).lineNumber(index) : NO_LINE;
+  }
+
+  /**
+   * #lines of a record of any Step 1 bucket, 0 if the bucket does not carry them
+   */
+  static int lineCount(List<String> records, int index) {
+    return (records instanceof RecordList) ? ((RecordList) records).lineCount(index) : 0;
+  }
+
+  /**
+   * Add an offset to every known line number, e.g. the first line of a byte range
+   */
+  void shiftLineNumbers(long offset) {
+    for (int i = 0; i < size(); i++) {
+      if (this.lineNumbers[i] != NO_LINE) {
+        this.lineNumbers[i] += offset;
+      }
+    }
+  }
+
+
+  /* ------------------------------------------------------------------------------------ */
+  /*                 Mutators which would misalign the records and their lines            */
+  /* ------------------------------------------------------------------------------------ */
+
+  @Override
+  public void add(int index, String record) {
+    throw appendOnly();
+  }
+
+  @Override
+  public boolean addAll(int index, Collection<? extends String> records) {
+    throw appendOnly();
+  }
+
+  @Override
+  public String set(int index, String record) {
+    throw appendOnly();
+  }
+
+  @Override
+  public String remove(int index) {
+    throw appendOnly();
+  }
+
+  @Override
+  public boolean remove(Object record) {
+    throw appendOnly();
+  }
+
+  @Override
+  public boolean removeAll(Collection<?> records) {
+    throw appendOnly();
+  }
+
+  @Override
+  public boolean retainAll(Collection<?> records) {
+    throw appendOnly();
+  }
+
+  @Override
+  public boolean removeIf(Predicate<? super String> filter) {
+    throw appendOnly();
+  }
+
+  @Override
+  protected void removeRange(int fromIndex, int toIndex) {
+    throw appendOnly();
+  }
+
+  @Override
+  public void replaceAll(UnaryOperator<String> operator) {
+    throw appendOnly();
+  }
+
+  @Override
+  public void sort(Comparator<? super String> comparator) {
+    throw appendOnly();
+  }
+
+  /**
+   * Read-only view: the sub-list of an ArrayList writes to its array directly
+   */
+  @Override
+  public List<String> subList(int fromIndex, int toIndex) {
+    return Collections.unmodifiableList(super.subList(fromIndex, toIndex));
+  }
+
+  private static UnsupportedOperationException appendOnly() {
+    return new UnsupportedOperationException("Records of a RecordList can only be appended, or cleared");
+  }
+
+}
@@ -0,0 +1,70 @@
+/**
+ * Interface: ResultSink
+ *
+ * Receives what a miner produces besides its return values: progress messages, the
+ * partitions of the steps, the templates and the per-line template assignments.
+ *
+ * The steps call the sink on their own thread and go on; a sink must not slow them
+ * down. NoOpResultSink drops everything (the default of IPLoM), AsyncFileResultSink
+ * writes batches to a file on a background thread, AssignmentFileSink writes the
+ * per-line assignments as CSV or binary, and DebugResultSink prints everything to a
+ * stream, as the steps used to do on stdout.
+ *
+ * Initially Created: 2026-10-16
+ *
+ */
+
+package iplom;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Map;
+
+public interface ResultSink extends Closeable {
+
+  /**
+   * A progress message, e.g. the step being started
+   */
+  void message(String message);
+
+  /**
+   * The support ratio of a Step 2 sub-partition: its #logs over the #logs of its size partition
+   * @param
+   * TokenDictionary dictionary: decodes the token IDs of the key
+   */
+  void partitionSupport(PartitionKey key, double supportRatio, TokenDictionary dictionary);
+
+  /**
+   * The partitions produced by Step 2 or Step 3
+   * @param
+   * int step: 2 or 3
+   * Map<PartitionKey, ColumnarPartition> partitions: the partitions, not to be modified
+   * TokenDictionary dictionary: decodes the token IDs of the partitions
+   */
+  void partitions(int step, Map<PartitionKey, ColumnarPartition> partitions, TokenDictionary dictionary);
+
+  /**
+   * A template produced by Step 4
+   * @param
+   * int templateId: index of the template in the result of dicoverLogTemplate
+   */
+  void template(int templateId, LogTemplate template);
+
+  /**
+   * The template a log line was assigned to
+   * Called for every line of the records read from the source file (the lines without
+   * time-stamp merged into a record included) as soon as Step 4 finalises its partition,
+   * so the calls follow the partitions, not the line order.
+   * @param
+   * long lineNumber: line number in the source file, from 1
+   * int templateId: as given to template()
+   */
+  void assignment(long lineNumber, int templateId);
+
+  /**
+   * Write out everything received, and release the sink
+   */
+  @Override
+  void close() throws IOException;
+
+}
@@ -0,0 +1,365 @@
+/**
+ * Class: ShardMiner
+ *
+ * Shard-and-merge template mining over local worker processes.
+ *
+ * The input is cut into shards: separate files, byte ranges of a file, or time windows
+ * of a file. Every shard is mined through Steps 1 to 4 by its own child JVM, which
+ * writes its templates as a ModelSnapshot. The shard models are then merged into one
+ * template set by TemplateMerger. Each child only needs the heap of its shard.
+ *
+ * The children run this class (see main) with the class path of the parent; they use
+ * the parameters of a configured IPLoM (delimiter, thresholds, bounds, header detector,
+ * mapped ingestion, parallel execution, pipelined decompression, memory budget and
+ * spill directory). The header detector is serialized into the work directory, so the
+ * children get it with its configuration.
+ *
+ * Initially Created: 2026-10-16
+ *
+ */
+
+package iplom;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+public class ShardMiner {
+
+  /**
+   * Define the miner whose parameters the children use
+   */
+  private final IPLoM config;
+
+  /**
+   * Define the directory of the shard models and the child logs
+   */
+  private final File workDirectory;
+
+  /**
+   * Define the options of the child JVMs, e.g. -Xmx4g
+   * Default: none
+   */
+  private List<String> jvmOptions = new ArrayList<>();
+
+  /**
+   * Define the number of child JVMs running at once
+   * Default: number of available processors
+   */
+  private int maxProcesses = Runtime.getRuntime().availableProcessors();
+
+  /**
+   * Define the least agreement of a shard template with the merged template it is folded into
+   * Default: TemplateMerger.DEFAULT_AGREEMENT_THRESHOLD, the same constants only
+   */
+  private double agreementThreshold = TemplateMerger.DEFAULT_AGREEMENT_THRESHOLD;
+
+
+  /**
+   * @param
+   * IPLoM config: the configured miner, its source file is not used
+   * File workDirectory: directory of the shard models (created if missing)
+   */
+  public ShardMiner(IPLoM config, File workDirectory) {
+    this.config = config;
+    this.workDirectory = workDirectory;
+  }
+
+
+  /**
+   * Set the options of the child JVMs
+   */
+  public void setJvmOptions(List<String> jvmOptions) {
+    this.jvmOptions = new ArrayList<>(jvmOptions);
+  }
+
+  /**
+   * Set the number of child JVMs running at once
+   */
+  public void setMaxProcesses(int maxProcesses) {
+    this.maxProcesses = Math.max(1, maxProcesses);
+  }
+
+  /**
+   * Set the agreement threshold of the merge (see TemplateMerger.merge), below 1 to
+   * opt in to fuzzy merging
+   */
+  public void setAgreementThreshold(double agreementThreshold) {
+    this.agreementThreshold = agreementThreshold;
+  }
+
+
+  /**
+   * Mine each file as a shard
+   */
+  public List<LogTemplate> mineFiles(List<File> files) throws IOException {
+    List<Shard> shards = new ArrayList<>();
+    for (File file: files) {
+      shards.add(Shard.file(file));
+    }
+    return mine(shards);
+  }
+
+  /**
+   * Mine a file cut into byte ranges of equal size
+   * A record belongs to the range its time-stamp line starts in (see IPLoM.partitionByTokenSize(long, long)).
+   * @throws IllegalArgumentException for a gzip file, whose byte ranges are not text:
+   *         mine it by time windows, or as a whole
+   */
+  public List<LogTemplate> mineByteRanges(File file, int shardCount) throws IOException {
+    if (GzipInput.isGzip(file)) {
+      throw new IllegalArgumentException("Byte ranges of a gzip file can not be mined: " + file);
+    }
+    long fileSize = file.length();
+    long rangeSize = Math.max(1, (fileSize + shardCount - 1) / shardCount);
+    List<Shard> shards = new ArrayList<>();
+    for (long start = 0; start < fileSize; start += rangeSize) {
+      shards.add(Shard.byteRange(file, start, Math.min(fileSize, start + rangeSize)));
+    }
+    return mine(shards);
+  }
+
+  /**
+   * Mine a file cut into time windows
+   * The records of the file are expected in time order, as a log is written: the windows
+   * are cut into byte ranges once, by binary search on the time-stamps of the mapped file,
+   * so each child only reads its own range. A record out of order goes with its
+   * neighbours. A gzip file can not be searched: each child reads the whole file and keeps
+   * the records of its window.
+   * @param
+   * long fromMillis, long toMillis: the period covered, epoch milliseconds
+   * long windowMillis: length of a window
+   */
+  public List<LogTemplate> mineTimeWindows(File file, long fromMillis, long toMillis, long windowMillis) throws IOException {
+    List<Shard> shards = new ArrayList<>();
+    if (GzipInput.isGzip(file)) {
+      for (long start = fromMillis; start < toMillis; start += windowMillis) {
+        shards.add(Shard.timeWindow(file, start, Math.min(toMillis, start + windowMillis)));
+      }
+      return mine(shards);
+    }
+
+    /*
+     * The lines before the first time-stamp belong to the first record, from offset 0
+     */
+    MappedLogIngestor ingestor = new MappedLogIngestor(this.config, file, 1);
+    long firstRecord = ingestor.firstRecordAtOrAfter(Long.MIN_VALUE);
+    long rangeStart = ingestor.firstRecordAtOrAfter(fromMillis);
+    for (long start = fromMillis; start < toMillis; start += windowMillis) {
+      long end = Math.min(toMillis, start + windowMillis);
+      long rangeEnd = ingestor.firstRecordAtOrAfter(end);
+      if (rangeEnd > rangeStart) {
+        shards.add(Shard.byteRange(file, (rangeStart == firstRecord) ? 0 : rangeStart, rangeEnd));
+      }
+      rangeStart = rangeEnd;
+    }
+    return mine(shards);
+  }
+
+
+  /**
+   * Mine every shard in a child JVM and merge their templates
+   */
+  public List<LogTemplate> mine(List<Shard> shards) throws IOException {
+
+    if (!this.workDirectory.isDirectory() && !this.workDirectory.mkdirs()) {
+      throw new IOException("Can not create " + this.workDirectory);
+    }
+
+    final File detectorFile = new File(this.workDirectory, "header-detector.ser");
+    writeDetector(this.config.getRecordHeaderDetector(), detectorFile);
+
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(this.maxProcesses, Math.max(1, shards.size())));
+    try {
+      List<Future<File>> futures = new ArrayList<>(shards.size());
+      for (int i = 0; i < shards.size(); i++) {
+        final Shard shard = shards.get(i);
+        final File modelFile = new File(this.workDirectory, "shard-" + i + ".model");
+        futures.add(executor.submit(new Callable<File>() {
+          @Override
+          public File call() throws IOException, InterruptedException {
+            runChild(shard, modelFile, detectorFile);
+            return modelFile;
+          }
+        }));
+      }
+
+      List<List<LogTemplate>> shardTemplates = new ArrayList<>(shards.size());
+      for (Future<File> future: futures) {
+        shardTemplates.add(ModelSnapshot.load(future.get()).getTemplates());
+      }
+      return TemplateMerger.merge(shardTemplates, this.agreementThreshold);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Shard mining was interrupted");
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      throw new IOException("Shard mining failed", cause);
+    } finally {
+      executor.shutdownNow();
+    }
+
+  }
+
+
+  /**
+   * Run one child JVM, its output goes to the .log file next to its model
+   */
+  private void runChild(Shard shard, File modelFile, File detectorFile) throws IOException, InterruptedException {
+
+    List<String> command = new ArrayList<>();
+    command.add(new File(new File(System.getProperty("java.home"), "bin"), "java").getPath());
+    command.addAll(this.jvmOptions);
+    command.add("-cp");
+    command.add(System.getProperty("java.class.path"));
+    command.add(ShardMiner.class.getName());
+    command.add(modelFile.getPath());
+    command.add(this.config.getDelimiter());
+    command.add(Double.toString(this.config.getPartitionSupportThreshold()));
+    command.add(Double.toString(this.config.getClusterGoodnessThreshold()));
+    command.add(Double.toString(this.config.getLowerBound()));
+    command.add(Double.toString(this.config.getUpperBound()));
+    command.add(detectorFile.getPath());
+    command.add(Boolean.toString(this.config.isMappedIngestion()));
+    command.add(Boolean.toString(this.config.isParallelExecution()));
+    command.add(Boolean.toString(this.config.isPipelinedDecompression()));
+    command.add(Long.toString(this.config.getMemoryBudget()));
+    command.add((this.config.getSpillDirectory() == null) ? "" : this.config.getSpillDirectory().getPath());
+    command.addAll(shard.arguments());
+
+    File logFile = new File(modelFile.getPath() + ".log");
+    Process process = new ProcessBuilder(command)
+        .redirectErrorStream(true)
+        .redirectOutput(logFile)
+        .start();
+    try {
+      int exitCode = process.waitFor();
+      if (exitCode != 0) {
+        throw new IOException("Shard " + shard + " failed with exit code " + exitCode + ", see " + logFile);
+      }
+    } finally {
+      process.destroy();
+    }
+
+  }
+
+
+  /**
+   * Serialize the header detector of the children
+   * @throws NotSerializableException if the detector holds state which can not be serialized
+   */
+  private static void writeDetector(RecordHeaderDetector detector, File detectorFile) throws IOException {
+    try (ObjectOutputStream out = new ObjectOutputStream(
+        new BufferedOutputStream(new FileOutputStream(detectorFile)))) {
+      out.writeObject(detector);
+    }
+  }
+
+  private static RecordHeaderDetector readDetector(File detectorFile) throws IOException {
+    try (ObjectInputStream in = new ObjectInputStream(
+        new BufferedInputStream(new FileInputStream(detectorFile)))) {
+      return (RecordHeaderDetector) in.readObject();
+    } catch (ClassNotFoundException e) {
+      throw new IOException("Unknown header detector class in " + detectorFile, e);
+    }
+  }
+
+
+  /**
+   * Entry point of a child JVM
+   * Arguments: model delimiter support goodness lower upper detectorFile mapped parallel
+   * pipelined memoryBudget spillDirectory ("" for none), then the shard:
+   * file path | range path start end | window path from to
+   */
+  public static void main(String[] args) throws Exception {
+
+    File modelFile = new File(args[0]);
+    IPLoM miner = new IPLoM(args[13]);
+    miner.setDelimiter(args[1]);
+    miner.setPartitionSupportThreshold(Double.parseDouble(args[2]));
+    miner.setClusterGoodnessThreshold(Double.parseDouble(args[3]));
+    miner.setBounds(Double.parseDouble(args[4]), Double.parseDouble(args[5]));
+    miner.setRecordHeaderDetector(readDetector(new File(args[6])));
+    miner.setMappedIngestion(Boolean.parseBoolean(args[7]));
+    miner.setParallelExecution(Boolean.parseBoolean(args[8]));
+    miner.setPipelinedDecompression(Boolean.parseBoolean(args[9]));
+    miner.setMemoryBudget(Long.parseLong(args[10]));
+    miner.setSpillDirectory(args[11].isEmpty() ? null : new File(args[11]));
+
+    List<LogTemplate> templates;
+    String kind = args[12];
+    if (kind.equals(Shard.FILE)) {
+      templates = miner.dicoverLogTemplate();
+    } else if (kind.equals(Shard.RANGE)) {
+      templates = miner.dicoverLogTemplate(Long.parseLong(args[14]), Long.parseLong(args[15]));
+    } else if (kind.equals(Shard.WINDOW)) {
+      templates = miner.dicoverLogTemplateInWindow(Long.parseLong(args[14]), Long.parseLong(args[15]));
+    } else {
+      throw new IllegalArgumentException("Unknown shard kind: " + kind);
+    }
+
+    ModelSnapshot.write(modelFile, miner, templates);
+
+  }
+
+
+  /**
+   * One shard of the input
+   */
+  public static final class Shard {
+
+    private static final String FILE = "file";
+    private static final String RANGE = "range";
+    private static final String WINDOW = "window";
+
+    private final String kind;
+    private final File file;
+    private final long from;
+    private final long to;
+
+    private Shard(String kind, File file, long from, long to) {
+      this.kind = kind;
+      this.file = file;
+      this.from = from;
+      this.to = to;
+    }
+
+    /**
+     * A whole file
+     */
+    public static Shard file(File file) {
+      return new Shard(FILE, file, 0, 0);
+    }
+
+    /**
+     * The records starting in the byte range [start, end) of a file
+     */
+    public static Shard byteRange(File file, long start, long end) {
+      return new Shard(RANGE, file, start, end);
+    }
+
+    /**
+     * The records of a file whose time-stamp is in [fromMillis, toMillis)
+     */
+    public static Shard timeWindow(File file, long fromMillis, long toMillis) {
+      return new Shard(WINDOW, file, fromMillis, toMillis);
+    }
+
+    private List<String> arguments() {
+      if (this.kind.equals(FILE)) {
+        return Arrays.asList(this.kind, this.file.getPath());
+      }
+      return Arrays.asList(this.kind, this.file.getPath(), Long.toString(this.from), Long.toString(this.to));
+    }
+
+    @Override
+    public String toString() {
+      return this.kind.equals(FILE) ? this.file.getPath() : this.kind + " " + this.file + " [" + this.from + ", " + this.to + ")";
+    }
+
+  }
+
+}
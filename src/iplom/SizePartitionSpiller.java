@@ -0,0 +1,250 @@
+/**
+ * Class: SizePartitionSpiller
+ *
+ * Step 1 (partition by token size) under a memory budget.
+ *
+ * Log messages are collected in their token size bucket in memory; once the estimated
+ * size of the buckets exceeds the budget, every bucket is appended to its own temporary
+ * file and dropped from memory. The buckets are then read back one at a time, in slices
+ * of bounded size, spilled messages first, so the messages keep their order. Each message keeps its lines in the
+ * source file (see RecordList).
+ *
+ * The temporary files are deleted on close.
+ *
+ * Initially Created: 2026-10-16
+ *
+ */
+
+package iplom;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.*;
+
+class SizePartitionSpiller implements Closeable {
+
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+
+  /**
+   * Estimated heap cost of a message on top of its chars: String, char[] and list slot
+   */
+  private static final long MESSAGE_OVERHEAD = 64;
+
+  private final long memoryBudget;
+  private final File spillDirectory;
+
+  /**
+   * Messages kept in memory, by token size
+   */
+  private final Map<Integer, RecordList> partitionsBySize = new HashMap<>();
+  private long memoryUsed = 0;
+
+  /**
+   * Spill file of each token size, created on its first spill
+   */
+  private final Map<Integer, File> spillFiles = new HashMap<>();
+  private long spilledBytes = 0;
+
+
+  /**
+   * @param
+   * long memoryBudget: bytes of messages kept in memory before spilling
+   * File directory: where the temporary directory is created, null for java.io.tmpdir
+   */
+  SizePartitionSpiller(long memoryBudget, File directory) throws IOException {
+    this.memoryBudget = memoryBudget;
+    this.spillDirectory = (directory == null) ?
+        Files.createTempDirectory("iplom-spill").toFile() :
+        Files.createTempDirectory(directory.toPath(), "iplom-spill").toFile();
+  }
+
+
+  /**
+   * Add a message (without time-stamp) to the bucket of its token size
+   * @param
+   * long lineNumber: line of the message in the source file, RecordList.NO_LINE if unknown
+   * int lineCount: #lines of the message in the source file
+   */
+  void add(Integer tokenSize, String message, long lineNumber, int lineCount) throws IOException {
+    RecordList bucket = this.partitionsBySize.get(tokenSize);
+    if (bucket == null) {
+      bucket = new RecordList();
+      this.partitionsBySize.put(tokenSize, bucket);
+    }
+    bucket.add(message, lineNumber, lineCount);
+    this.memoryUsed += MESSAGE_OVERHEAD + 2L * message.length();
+    if (this.memoryUsed > this.memoryBudget) {
+      spill();
+    }
+  }
+
+  /**
+   * Add the buckets of a Step 1 result, e.g. one slice of the source file
+   */
+  void addAll(Map<Integer, ArrayList<String>> slicePartitions) throws IOException {
+    for (Map.Entry<Integer, ArrayList<String>> entry: slicePartitions.entrySet()) {
+      ArrayList<String> slice = entry.getValue();
+      for (int i = 0; i < slice.size(); i++) {
+        add(entry.getKey(), slice.get(i), RecordList.lineNumber(slice, i), RecordList.lineCount(slice, i));
+      }
+    }
+  }
+
+
+  /**
+   * All the token sizes seen, in increasing order
+   */
+  SortedSet<Integer> sizes() {
+    SortedSet<Integer> sizes = new TreeSet<>(this.partitionsBySize.keySet());
+    sizes.addAll(this.spillFiles.keySet());
+    return sizes;
+  }
+
+  /**
+   * Bytes written to the spill files so far
+   */
+  long spilledBytes() {
+    return this.spilledBytes;
+  }
+
+
+  /**
+   * Read back a bucket in slices and release it: spilled messages first, then the ones in memory
+   */
+  BucketReader reader(Integer tokenSize) throws IOException {
+    RecordList inMemory = this.partitionsBySize.remove(tokenSize);
+    return new BucketReader(this.spillFiles.remove(tokenSize), (inMemory == null) ? new RecordList() : inMemory);
+  }
+
+
+  /**
+   * Append every bucket in memory to its spill file, as a chunk: #messages, then each
+   * message with its lines
+   * Also called once Step 1 is over, so the next steps get the whole budget.
+   */
+  void spill() throws IOException {
+
+    for (Map.Entry<Integer, RecordList> entry: this.partitionsBySize.entrySet()) {
+      File spillFile = this.spillFiles.get(entry.getKey());
+      if (spillFile == null) {
+        spillFile = new File(this.spillDirectory, "size-" + entry.getKey() + ".bin");
+        this.spillFiles.put(entry.getKey(), spillFile);
+      }
+      try (DataOutputStream output = new DataOutputStream(
+              new BufferedOutputStream(new FileOutputStream(spillFile, true), 1 << 16))) {
+        RecordList bucket = entry.getValue();
+        output.writeInt(bucket.size());
+        for (int i = 0; i < bucket.size(); i++) {
+          byte[] bytes = bucket.get(i).getBytes(UTF8);
+          output.writeLong(bucket.lineNumber(i));
+          output.writeInt(bucket.lineCount(i));
+          output.writeInt(bytes.length);
+          output.write(bytes);
+          this.spilledBytes += 16 + bytes.length;
+        }
+      }
+    }
+
+    this.partitionsBySize.clear();
+    this.memoryUsed = 0;
+
+  }
+
+
+  /**
+   * #messages of the next chunk, -1 at the end of the file
+   */
+  private static int nextChunk(DataInputStream input) throws IOException {
+    try {
+      return input.readInt();
+    } catch (EOFException e) {
+      return -1;
+    }
+  }
+
+
+  /**
+   * Delete the spill files and their directory
+   */
+  @Override
+  public void close() throws IOException {
+    for (File spillFile: this.spillFiles.values()) {
+      Files.deleteIfExists(spillFile.toPath());
+    }
+    this.spillFiles.clear();
+    this.partitionsBySize.clear();
+    Files.deleteIfExists(this.spillDirectory.toPath());
+  }
+
+
+  /**
+   * The messages of one bucket: those of its spill file, which is deleted once read or
+   * on close, then those which were still in memory
+   */
+  final class BucketReader implements Closeable {
+
+    private final File spillFile;
+    private DataInputStream input;
+    private int chunkRemaining = 0;
+    private final RecordList inMemory;
+    private int inMemoryIndex = 0;
+
+    private BucketReader(File spillFile, RecordList inMemory) throws IOException {
+      this.spillFile = spillFile;
+      this.input = (spillFile == null) ? null : new DataInputStream(
+          new BufferedInputStream(new FileInputStream(spillFile), 1 << 16));
+      this.inMemory = inMemory;
+    }
+
+    /**
+     * The next messages, about maxBytes of heap, with their lines; null after the last one
+     */
+    RecordList next(long maxBytes) throws IOException {
+      RecordList slice = new RecordList();
+      long bytes = 0;
+      while (bytes < maxBytes) {
+        if (this.input != null) {
+          if (this.chunkRemaining == 0) {
+            this.chunkRemaining = nextChunk(this.input);
+            if (this.chunkRemaining < 0) {
+              close();
+            }
+            continue;
+          }
+          long lineNumber = this.input.readLong();
+          int lineCount = this.input.readInt();
+          byte[] messageBytes = new byte[this.input.readInt()];
+          this.input.readFully(messageBytes);
+          String message = new String(messageBytes, UTF8);
+          slice.add(message, lineNumber, lineCount);
+          this.chunkRemaining --;
+          bytes += MESSAGE_OVERHEAD + 2L * message.length();
+        } else if (this.inMemoryIndex < this.inMemory.size()) {
+          String message = this.inMemory.get(this.inMemoryIndex);
+          slice.add(message, this.inMemory.lineNumber(this.inMemoryIndex), this.inMemory.lineCount(this.inMemoryIndex));
+          this.inMemoryIndex ++;
+          bytes += MESSAGE_OVERHEAD + 2L * message.length();
+          SizePartitionSpiller.this.memoryUsed -= MESSAGE_OVERHEAD + 2L * message.length();
+        } else {
+          break;
+        }
+      }
+      if (this.inMemoryIndex == this.inMemory.size()) {
+        this.inMemory.clear();
+      }
+      return slice.isEmpty() ? null : slice;
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (this.input != null) {
+        this.input.close();
+        this.input = null;
+        Files.deleteIfExists(this.spillFile.toPath());
+      }
+    }
+
+  }
+
+}
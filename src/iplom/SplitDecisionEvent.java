@@ -0,0 +1,75 @@
+/**
+ * Class: SplitDecisionEvent
+ *
+ * Flight Recorder event of the Step 3 decision on one partition: the positions P1 and
+ * P2 chosen by determineP1P2, their cardinalities, and the partitions it was split into.
+ * The event spans the whole processing of the partition, so the slow partitions of a
+ * run are the longest events of the recording.
+ *
+ * The fields are only filled when the event is recorded (shouldCommit), so a run
+ * without recording does not pay for them.
+ *
+ * Initially Created: 2026-10-16
+ *
+ */
+
+package iplom;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("iplom.SplitDecision")
+@Label("Split Decision")
+@Category({"IPLoM", "Step 3"})
+@Description("Positions P1/P2 chosen for a partition and its split by token bijection")
+@StackTrace(false)
+final class SplitDecisionEvent extends Event {
+
+  @Label("Partition")
+  String partition;
+
+  @Label("Partition Size")
+  @Description("Number of logs in the partition")
+  int partitionSize;
+
+  @Label("Token Count")
+  int tokenCount;
+
+  @Label("P1")
+  @Description("First split position, -1 if the partition was not split")
+  int p1;
+
+  @Label("P2")
+  @Description("Second split position, -1 if the partition was not split")
+  int p2;
+
+  @Label("P1 Cardinality")
+  int p1Cardinality;
+
+  @Label("P2 Cardinality")
+  int p2Cardinality;
+
+  @Label("Constant Positions")
+  @Description("Positions with a single token, their share is the cluster goodness")
+  int constantPositions;
+
+  @Label("Mappings")
+  @Description("Number of P1 tokens whose mapping type was determined")
+  int mappings;
+
+  @Label("Output Partitions")
+  int outputPartitions;
+
+  @Label("Outliers")
+  @Description("Logs left in the outlier partition")
+  int outliers;
+
+  @Label("Rows Scanned")
+  @Description("Rows read: once for the token collections, twice more (index, split) when split")
+  long rowsScanned;
+
+}
@@ -0,0 +1,275 @@
+/**
+ * Class: StreamingIPLoM
+ *
+ * Online mode of IPLoM: logs are classified as they arrive.
+ *
+ * The engine is seeded with the templates of a batch run. Every incoming record is
+ * matched against the known templates of a TemplateRegistry; a record no template
+ * fits is buffered. When the buffer reaches its threshold, the IPLoM partition steps
+ * (Step 1 to Step 4) run on the buffered records alone, and the templates they
+ * discover are added to the known ones. The full history is never processed again.
+ *
+ * Each re-mining runs on a miner of its own, with the parameters of the configured one:
+ * its token dictionary only holds the tokens of the batch and is dropped with it, the
+ * registry only keeps the template constants.
+ *
+ * Every line gets its template in the result sink of the configured miner (see
+ * ResultSink.assignment), with the registry ID of the template: at once for a matched
+ * record, after the re-mining for a buffered one. The lines fed by offerLine are
+ * numbered from 1; a record given to classify counts as one line.
+ *
+ * An engine is meant to be fed by a single thread. Several engines, one per thread,
+ * can share one registry: the templates discovered by any of them are seen by all.
+ *
+ * Initially Created: 2026-10-16
+ *
+ */
+
+package iplom;
+
+import java.util.*;
+
+public class StreamingIPLoM {
+
+  /**
+   * Define the miner whose parameters re-mine the buffer (its delimiter, header detector
+   * and thresholds), and whose result sink receives the line assignments
+   */
+  private final IPLoM miner;
+
+  /**
+   * Define the registry of the known templates
+   */
+  private final TemplateRegistry registry;
+
+  /**
+   * Define the records which did not match any template yet, with their lines
+   */
+  private final RecordList unmatched = new RecordList();
+
+  /**
+   * Define the number of unmatched records which triggers a re-mining
+   * Default: 10000
+   */
+  private int bufferThreshold = 10000;
+
+  /**
+   * Record being merged by offerLine, null if none, with its first line and #lines
+   */
+  private String pendingRecord = null;
+  private long pendingLine = RecordList.NO_LINE;
+  private int pendingLineCount = 0;
+
+  /**
+   * Number of lines seen so far
+   */
+  private long lines = 0;
+
+  /**
+   * Token spans reused for every record
+   */
+  private final DelimiterTokenizer.Spans spans = new DelimiterTokenizer.Spans();
+
+
+  /**
+   * @param
+   * IPLoM miner: the configured miner, usually the one which produced the seed templates
+   * Collection<LogTemplate> seedTemplates: templates of a batch run (see IPLoM.dicoverLogTemplate)
+   */
+  public StreamingIPLoM(IPLoM miner, Collection<LogTemplate> seedTemplates) {
+    this(miner, miner.newTemplateRegistry(seedTemplates));
+  }
+
+  /**
+   * @param
+   * IPLoM miner: the configured miner, used by this engine only
+   * TemplateRegistry registry: the known templates, possibly shared with other engines
+   */
+  public StreamingIPLoM(IPLoM miner, TemplateRegistry registry) {
+    this.miner = miner;
+    this.registry = registry;
+  }
+
+
+  /**
+   * Set the number of unmatched records which triggers a re-mining
+   */
+  public void setBufferThreshold(int bufferThreshold) {
+    this.bufferThreshold = bufferThreshold;
+  }
+
+  /**
+   * Get all the known templates, seed templates first
+   */
+  public List<LogTemplate> getTemplates() {
+    return this.registry.snapshot().getTemplates();
+  }
+
+  /**
+   * Get the registry of the known templates
+   */
+  public TemplateRegistry getRegistry() {
+    return this.registry;
+  }
+
+  /**
+   * Get the number of buffered (unmatched) records
+   */
+  public int unmatchedCount() {
+    return this.unmatched.size();
+  }
+
+
+  /**
+   * Find the template of a record, without buffering it
+   * @param
+   * String record: the log record, with or without time-stamp
+   * @return the template, or null if none matches
+   */
+  public LogTemplate match(String record) {
+
+    String message = this.miner.stripRecordHeader(record);
+    return this.registry.match(message, this.spans);
+
+  }
+
+
+  /**
+   * Classify a complete record (its lines without time-stamp already merged)
+   * An unmatched record is buffered, and the buffer is re-mined once it is full.
+   * The record counts as one line.
+   * @return the template, or null if the record was buffered
+   */
+  public LogTemplate classify(String record) {
+    return classify(record, ++this.lines, 1);
+  }
+
+  private LogTemplate classify(String record, long lineNumber, int lineCount) {
+
+    String message = this.miner.stripRecordHeader(record);
+    TemplateIndex index = this.registry.snapshot();
+    int templateId = index.match(message, this.spans);
+    if (templateId != TemplateIndex.NO_MATCH) {
+      ResultSink resultSink = this.miner.getResultSink();
+      for (int l = 0; l < lineCount; l++) {
+        resultSink.assignment(lineNumber + l, templateId);
+      }
+      return index.template(templateId);
+    }
+
+    this.unmatched.add(record, lineNumber, lineCount);
+    if (this.unmatched.size() >= this.bufferThreshold) {
+      remine();
+    }
+    return null;
+
+  }
+
+
+  /**
+   * Feed one line of the log
+   * Lines without time-stamp are merged into their nearest previous one with time-stamp,
+   * the same way as Step 1 does; a line with time-stamp completes the previous record.
+   * @return the template of the completed record, or null if no record was completed or it was buffered
+   */
+  public LogTemplate offerLine(String line) {
+
+    this.lines ++;
+    if (!this.miner.isRecordHeader(line)) {
+      if (this.pendingRecord == null) {
+        this.pendingRecord = line;
+        this.pendingLine = this.lines;
+        this.pendingLineCount = 1;
+      } else {
+        this.pendingRecord = this.pendingRecord + " " + line;
+        this.pendingLineCount ++;
+      }
+      return null;
+    }
+
+    String record = this.pendingRecord;
+    long recordLine = this.pendingLine;
+    int recordLineCount = this.pendingLineCount;
+    this.pendingRecord = line;
+    this.pendingLine = this.lines;
+    this.pendingLineCount = 1;
+    return (record != null) ? classify(record, recordLine, recordLineCount) : null;
+
+  }
+
+
+  /**
+   * Classify the record being merged by offerLine, e.g. at the end of the input
+   * @return its template, or null if there was none or it was buffered
+   */
+  public LogTemplate flush() {
+    String record = this.pendingRecord;
+    this.pendingRecord = null;
+    return (record != null) ? classify(record, this.pendingLine, this.pendingLineCount) : null;
+  }
+
+
+  /**
+   * Run the IPLoM steps on the buffered records alone and add the templates they give,
+   * then assign the lines of the buffered records to the registry IDs of their templates
+   * The buffer is emptied.
+   * @return the templates which were not known before
+   */
+  public List<LogTemplate> remine() {
+
+    if (this.unmatched.isEmpty()) {
+      return new ArrayList<>();
+    }
+
+    /*
+     * Lines of the batch and the ID of their template in the batch, from Step 4
+     */
+    final List<long[]> batchAssignments = new ArrayList<>(this.unmatched.size());
+    IPLoM batchMiner = this.miner.newMinerWithParameters();
+    batchMiner.setResultSink(new ResultSink() {
+      @Override
+      public void message(String message) { }
+
+      @Override
+      public void partitionSupport(PartitionKey key, double supportRatio, TokenDictionary dictionary) { }
+
+      @Override
+      public void partitions(int step, Map<PartitionKey, ColumnarPartition> partitions, TokenDictionary dictionary) { }
+
+      @Override
+      public void template(int templateId, LogTemplate template) { }
+
+      @Override
+      public void assignment(long lineNumber, int templateId) {
+        batchAssignments.add(new long[] { lineNumber, templateId });
+      }
+
+      @Override
+      public void close() { }
+    });
+
+    Map<Integer, ArrayList<String>> partitionsBySize = batchMiner.partitionByTokenSize(this.unmatched);
+    Map<PartitionKey, ColumnarPartition> partitionByPosition = batchMiner.partitionByTokenPosition(partitionsBySize);
+    Map<PartitionKey, ColumnarPartition> partitionByBijection = batchMiner.partitionByTokenBijection(partitionByPosition);
+    List<LogTemplate> batchTemplates = batchMiner.dicoverLogTemplate(partitionByBijection);
+    List<LogTemplate> newTemplates = this.registry.addAll(batchTemplates);
+    this.unmatched.clear();
+
+    /*
+     * A batch template may have been registered before, by this engine or another one
+     */
+    TemplateIndex index = this.registry.snapshot();
+    Map<LogTemplate, Integer> registryIds = new HashMap<>();
+    for (int id = 0; id < index.size(); id++) {
+      registryIds.put(index.template(id), id);
+    }
+    ResultSink resultSink = this.miner.getResultSink();
+    for (long[] batchAssignment: batchAssignments) {
+      resultSink.assignment(batchAssignment[0], registryIds.get(batchTemplates.get((int) batchAssignment[1])));
+    }
+
+    return newTemplates;
+
+  }
+
+}
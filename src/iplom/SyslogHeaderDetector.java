@@ -0,0 +1,94 @@
+/**
+ * Class: SyslogHeaderDetector
+ *
+ * Hand-written matcher for the BSD syslog header "MMM dd HH:mm:ss ".
+ * The day may be written "07", " 7" or "7". The header carries no year, so the
+ * epoch time is computed in the configured year (UTC).
+ *
+ * Initially Created: 2026-10-16
+ *
+ */
+
+package iplom;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+public class SyslogHeaderDetector implements RecordHeaderDetector {
+
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * Shortest header: "MMM d HH:mm:ss"
+   */
+  private static final int MIN_LENGTH = 14;
+
+  private final int year;
+
+  /**
+   * Detector for logs of the current year
+   */
+  public SyslogHeaderDetector() {
+    this(Calendar.getInstance(TimeZone.getTimeZone("UTC")).get(Calendar.YEAR));
+  }
+
+  public SyslogHeaderDetector(int year) {
+    this.year = year;
+  }
+
+  @Override
+  public long match(CharSequence line) {
+
+    if (line.length() < MIN_LENGTH) {
+      return NO_MATCH;
+    }
+    int month = HeaderFields.month(line, 0);
+    if (month < 0 || line.charAt(3) != ' ') {
+      return NO_MATCH;
+    }
+
+    /*
+     * Day: "dd", " d" or "d"
+     */
+    int i = 4;
+    int day;
+    if (line.charAt(i) == ' ') {
+      i ++;
+    }
+    int first = HeaderFields.digit(line, i);
+    int second = HeaderFields.digit(line, i + 1);
+    if (first < 0) {
+      return NO_MATCH;
+    } else if (second < 0) {
+      day = first;
+      i += 1;
+    } else if (i == 4) {
+      day = first * 10 + second;
+      i += 2;
+    } else {
+      return NO_MATCH;
+    }
+    if (day < 1 || day > 31 || line.length() < i + 9 || line.charAt(i) != ' ') {
+      return NO_MATCH;
+    }
+
+    /*
+     * Time: "HH:mm:ss"
+     */
+    int hour = HeaderFields.twoDigits(line, i + 1);
+    int minute = HeaderFields.twoDigits(line, i + 4);
+    int sec = HeaderFields.twoDigits(line, i + 7);
+    if (hour < 0 || hour > 24 || line.charAt(i + 3) != ':' || minute < 0 || minute > 59 ||
+        line.charAt(i + 6) != ':' || sec < 0 || sec > 59) {
+      return NO_MATCH;
+    }
+
+    int headerLength = HeaderFields.endOfHeader(line, i + 9);
+    if (headerLength < 0) {
+      return NO_MATCH;
+    }
+    return RecordHeaderDetector.pack(headerLength, HeaderFields.epochMillis(this.year, month, day, hour, minute, sec));
+
+  }
+
+}
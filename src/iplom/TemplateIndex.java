@@ -0,0 +1,355 @@
+/**
+ * Class: TemplateIndex
+ *
+ * Compiled index assigning a log to its template without scanning all the templates.
+ *
+ * The templates are grouped by token count. Within a group, every position branches on
+ * the constant token found there: a table of constant -> bit set of the templates with
+ * that constant at the position, next to the bit set of the templates with a wildcard
+ * there. A log intersects, position by position, the templates whose constant or
+ * wildcard accepts its token, and stops as soon as none is left: there is no
+ * backtracking, a match costs one table lookup per token, and ANDs of 64 templates at
+ * a time.
+ *
+ * The bits follow the order a walk down a prefix tree trying the constant edge before
+ * the wildcard edge would find the templates in, so the lowest bit left is the most
+ * specific template: a constant wins over a wildcard at the first position they differ.
+ *
+ * Constant tables are keyed by the char span of the token, so matching a log creates
+ * no String. An index is immutable once built and can be shared by threads; each
+ * thread passes its own Spans.
+ *
+ * Initially Created: 2026-10-16
+ *
+ */
+
+package iplom;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+
+public final class TemplateIndex {
+
+  /**
+   * Returned when no template matches
+   */
+  public static final int NO_MATCH = -1;
+
+  /**
+   * Templates by ID (their position in the collection the index was built from)
+   */
+  private final List<LogTemplate> templates;
+
+  /**
+   * groups[tokenCount]: the templates with that token count, null if none
+   */
+  private final Group[] groups;
+
+  private final DelimiterTokenizer tokenizer;
+
+
+  /**
+   * Compile the templates
+   * A template equal to an earlier one is not indexed again, the earlier ID is kept.
+   * @param
+   * Collection<LogTemplate> templates: the templates, their ID is their position
+   * DelimiterTokenizer tokenizer: the tokenizer the templates were mined with
+   */
+  public TemplateIndex(Collection<LogTemplate> templates, DelimiterTokenizer tokenizer) {
+
+    this.templates = Collections.unmodifiableList(new ArrayList<>(templates));
+    this.tokenizer = tokenizer;
+
+    int maxTokenCount = -1;
+    for (LogTemplate template: this.templates) {
+      maxTokenCount = Math.max(maxTokenCount, template.tokenCount());
+    }
+    List<List<Integer>> idsBySize = new ArrayList<>(maxTokenCount + 1);
+    for (int tokenCount = 0; tokenCount <= maxTokenCount; tokenCount++) {
+      idsBySize.add(new ArrayList<Integer>());
+    }
+    for (int id = 0; id < this.templates.size(); id++) {
+      idsBySize.get(this.templates.get(id).tokenCount()).add(id);
+    }
+
+    this.groups = new Group[maxTokenCount + 1];
+    for (int tokenCount = 0; tokenCount <= maxTokenCount; tokenCount++) {
+      if (!idsBySize.get(tokenCount).isEmpty()) {
+        this.groups[tokenCount] = new Group(this.templates, idsBySize.get(tokenCount), tokenCount);
+      }
+    }
+
+  }
+
+
+  /**
+   * Number of indexed templates
+   */
+  public int size() {
+    return this.templates.size();
+  }
+
+  /**
+   * Get a template by ID
+   */
+  public LogTemplate template(int templateId) {
+    return this.templates.get(templateId);
+  }
+
+  /**
+   * Get all the templates, ordered by ID
+   */
+  public List<LogTemplate> getTemplates() {
+    return this.templates;
+  }
+
+
+  /**
+   * Find the template of a log message
+   * @param
+   * CharSequence message: the log, without time-stamp
+   * DelimiterTokenizer.Spans spans: reusable token spans, owned by the calling thread
+   * @return the template ID, or NO_MATCH
+   */
+  public int match(CharSequence message, DelimiterTokenizer.Spans spans) {
+    this.tokenizer.tokenize(message, spans);
+    return matchTokenized(message, spans);
+  }
+
+  /**
+   * Find the template of a log message already split into spans by the same tokenizer
+   * @return the template ID, or NO_MATCH
+   */
+  public int matchTokenized(CharSequence message, DelimiterTokenizer.Spans spans) {
+    int tokenCount = spans.count();
+    if (tokenCount >= this.groups.length || this.groups[tokenCount] == null) {
+      return NO_MATCH;
+    }
+    return this.groups[tokenCount].match(message, spans);
+  }
+
+
+  /**
+   * Most specific first: at the first position two templates differ, the constant
+   * before the wildcard (two constants never match the same log, their order is only
+   * made deterministic); equal templates by ID
+   */
+  private static Comparator<Integer> mostSpecificFirst(final List<LogTemplate> templates) {
+    return new Comparator<Integer>() {
+      @Override
+      public int compare(Integer id1, Integer id2) {
+        LogTemplate t1 = templates.get(id1);
+        LogTemplate t2 = templates.get(id2);
+        for (int i = 0; i < t1.tokenCount(); i++) {
+          String c1 = t1.constant(i);
+          String c2 = t2.constant(i);
+          if (c1 == null || c2 == null) {
+            if (c1 != c2) {
+              return (c1 == null) ? 1 : -1;
+            }
+          } else {
+            int diff = c1.compareTo(c2);
+            if (diff != 0) {
+              return diff;
+            }
+          }
+        }
+        return Integer.compare(id1, id2);
+      }
+    };
+  }
+
+  private static boolean sameTemplate(LogTemplate t1, LogTemplate t2) {
+    for (int i = 0; i < t1.tokenCount(); i++) {
+      if (!Objects.equals(t1.constant(i), t2.constant(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+
+  /**
+   * The templates of one token count, as bit sets per position
+   * Bit b of every set stands for templateIds[b].
+   */
+  private static final class Group {
+
+    /**
+     * Template ID of each bit, most specific first
+     */
+    private final int[] templateIds;
+
+    /**
+     * Bits of the templates of the group, #longs of every set
+     */
+    private final long[] indexed;
+    private final int words;
+
+    /**
+     * Per position: the constant tables, and the templates with a wildcard there
+     */
+    private final ConstantTable[] constants;
+    private final long[][] wildcards;
+
+    Group(List<LogTemplate> templates, List<Integer> ids, int tokenCount) {
+
+      List<Integer> sorted = new ArrayList<>(ids);
+      Collections.sort(sorted, mostSpecificFirst(templates));
+      List<Integer> distinct = new ArrayList<>(sorted.size());
+      for (Integer id: sorted) {
+        if (distinct.isEmpty() ||
+            !sameTemplate(templates.get(distinct.get(distinct.size() - 1)), templates.get(id))) {
+          distinct.add(id);
+        }
+      }
+
+      this.templateIds = new int[distinct.size()];
+      this.words = (distinct.size() + 63) >>> 6;
+      this.indexed = new long[this.words];
+      this.constants = new ConstantTable[tokenCount];
+      this.wildcards = new long[tokenCount][this.words];
+      for (int i = 0; i < tokenCount; i++) {
+        this.constants[i] = new ConstantTable(this.words);
+      }
+
+      for (int bit = 0; bit < distinct.size(); bit++) {
+        LogTemplate template = templates.get(distinct.get(bit));
+        this.templateIds[bit] = distinct.get(bit);
+        this.indexed[bit >>> 6] |= 1L << bit;
+        for (int i = 0; i < tokenCount; i++) {
+          long[] bits = template.isWildcard(i) ? this.wildcards[i] : this.constants[i].bits(template.constant(i));
+          bits[bit >>> 6] |= 1L << bit;
+        }
+      }
+
+    }
+
+    /**
+     * Intersect the templates accepting each token: the constant table of every position
+     * is looked up once, then its bits are ANDed 64 templates at a time; the first word
+     * with a template left holds the most specific one
+     */
+    int match(CharSequence message, DelimiterTokenizer.Spans spans) {
+
+      if (this.words == 1) {
+        long candidates = this.indexed[0];
+        for (int i = 0; i < this.constants.length && candidates != 0; i++) {
+          long[] bits = this.constants[i].find(message, spans.offset(i), spans.length(i));
+          candidates &= (bits == null) ? this.wildcards[i][0] : (bits[0] | this.wildcards[i][0]);
+        }
+        return (candidates == 0) ? NO_MATCH : this.templateIds[Long.numberOfTrailingZeros(candidates)];
+      }
+
+      long[] candidates = this.indexed.clone();
+      for (int i = 0; i < this.constants.length; i++) {
+        long[] bits = this.constants[i].find(message, spans.offset(i), spans.length(i));
+        long[] wildcardBits = this.wildcards[i];
+        long left = 0;
+        for (int w = 0; w < this.words; w++) {
+          candidates[w] &= (bits == null) ? wildcardBits[w] : (bits[w] | wildcardBits[w]);
+          left |= candidates[w];
+        }
+        if (left == 0) {
+          return NO_MATCH;
+        }
+      }
+      for (int w = 0; w < this.words; w++) {
+        if (candidates[w] != 0) {
+          return this.templateIds[(w << 6) + Long.numberOfTrailingZeros(candidates[w])];
+        }
+      }
+      return NO_MATCH;
+
+    }
+
+  }
+
+
+  /**
+   * Constants of one position: an open-addressing table of token -> template bits,
+   * keyed by span hash
+   */
+  private static final class ConstantTable {
+
+    private final int words;
+    private String[] keys = null;
+    private int[] hashes = null;
+    private long[][] bits = null;
+    private int constantCount = 0;
+
+    ConstantTable(int words) {
+      this.words = words;
+    }
+
+    /**
+     * The bits of a constant, added if new
+     */
+    long[] bits(String token) {
+      long[] tokenBits = find(token, 0, token.length());
+      if (tokenBits != null) {
+        return tokenBits;
+      }
+      if (this.keys == null) {
+        this.keys = new String[2];
+        this.hashes = new int[2];
+        this.bits = new long[2][];
+      } else if ((this.constantCount + 1) * 2 > this.keys.length) {
+        resize();
+      }
+      tokenBits = new long[this.words];
+      insert(token, TokenDictionary.hash(token, 0, token.length()), tokenBits);
+      return tokenBits;
+    }
+
+    long[] find(CharSequence str, int offset, int length) {
+      if (this.keys == null) {
+        return null;
+      }
+      int hash = TokenDictionary.hash(str, offset, length);
+      int mask = this.keys.length - 1;
+      int slot = hash & mask;
+      String key;
+      while ((key = this.keys[slot]) != null) {
+        if (this.hashes[slot] == hash && TokenDictionary.matches(key, str, offset, length)) {
+          return this.bits[slot];
+        }
+        slot = (slot + 1) & mask;
+      }
+      return null;
+    }
+
+    private void insert(String token, int hash, long[] tokenBits) {
+      int mask = this.keys.length - 1;
+      int slot = hash & mask;
+      while (this.keys[slot] != null) {
+        slot = (slot + 1) & mask;
+      }
+      this.keys[slot] = token;
+      this.hashes[slot] = hash;
+      this.bits[slot] = tokenBits;
+      this.constantCount ++;
+    }
+
+    private void resize() {
+      String[] oldKeys = this.keys;
+      int[] oldHashes = this.hashes;
+      long[][] oldBits = this.bits;
+      this.keys = new String[oldKeys.length * 2];
+      this.hashes = new int[oldKeys.length * 2];
+      this.bits = new long[oldKeys.length * 2][];
+      this.constantCount = 0;
+      for (int i = 0; i < oldKeys.length; i++) {
+        if (oldKeys[i] != null) {
+          insert(oldKeys[i], oldHashes[i], oldBits[i]);
+        }
+      }
+    }
+
+  }
+
+}
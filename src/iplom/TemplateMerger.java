@@ -0,0 +1,378 @@
+/**
+ * Class: TemplateMerger
+ *
+ * Merge of the templates mined independently on shards into one consistent set.
+ *
+ * Templates are only merged within the same token count and across shards: the
+ * templates of one shard were told apart by its own Steps 1 to 4, so a merged template
+ * takes at most one template of each shard. By default, templates are merged when they
+ * have the same constant tokens at the same positions, and the wildcards are recomputed
+ * from the merged statistics.
+ *
+ * Fuzzy merging is an opt-in (an agreement threshold below 1): a template is folded into
+ * the merged template whose constants agree best with its own, the #positions where both
+ * have the same constant over the #positions where either has a constant. Below the
+ * threshold it starts a merged template of its own. It may fold different events seen
+ * by different shards ("session opened for user *" and "session closed for user *")
+ * into one. The templates are taken from the most general to the most specific, so the
+ * result does not depend on the order of the shards.
+ *
+ * Every merged template keeps per-position statistics: the support of each constant
+ * folded at the position, and the summed #distinct tokens of the templates having a
+ * wildcard there. A position is a constant only while every folded template has that
+ * same constant there; with fuzzy merging, as soon as they disagree (two constants, or a
+ * constant and a wildcard) it becomes a wildcard, e.g. "user alice login" and "user bob
+ * login" of two shards merge into "user * login". The constant positions are recomputed after each
+ * fold, so the next templates are compared with the merged template as it stands.
+ *
+ * Two constants may not disagree at a position some shard split on: a shard with two
+ * templates equal but for their constants at one position ("request id 0 ..." and
+ * "request id 1 ...") found two events there, which stay apart in the merge. Merged
+ * templates which end up with the same constants are combined.
+ *
+ * Initially Created: 2026-10-16
+ *
+ */
+
+package iplom;
+
+import java.util.*;
+
+public final class TemplateMerger {
+
+  /**
+   * Default agreement threshold: the same constants at the same positions
+   */
+  public static final double DEFAULT_AGREEMENT_THRESHOLD = 1.0;
+
+  private TemplateMerger() { }
+
+
+  /**
+   * Merge the templates of several shards with the same constants
+   */
+  public static List<LogTemplate> merge(Collection<? extends Collection<LogTemplate>> shardTemplates) {
+    return merge(shardTemplates, DEFAULT_AGREEMENT_THRESHOLD);
+  }
+
+  /**
+   * Merge the templates of several shards
+   * @param
+   * Collection<? extends Collection<LogTemplate>> shardTemplates: the templates of each shard
+   * double agreementThreshold: least agreement (0 to 1) of a template with the merged
+   *                            template it is folded into, 1 (the default) only folds
+   *                            equal constants, below 1 is fuzzy merging
+   * @return the merged templates, most general first within each token count
+   */
+  public static List<LogTemplate> merge(Collection<? extends Collection<LogTemplate>> shardTemplates,
+                                        double agreementThreshold) {
+
+    List<ShardTemplate> allTemplates = new ArrayList<>();
+    int shard = 0;
+    for (Collection<LogTemplate> templates: shardTemplates) {
+      allTemplates.addAll(splitPositions(templates, shard));
+      shard ++;
+    }
+    Collections.sort(allTemplates, new Comparator<ShardTemplate>() {
+      @Override
+      public int compare(ShardTemplate t1, ShardTemplate t2) {
+        int diff = MOST_GENERAL_FIRST.compare(t1.template, t2.template);
+        return (diff != 0) ? diff : Integer.compare(t1.shard, t2.shard);
+      }
+    });
+
+    /*
+     * Merged templates of each token count
+     */
+    Map<Integer, List<MergedTemplate>> mergedBySize = new TreeMap<>();
+    for (ShardTemplate shardTemplate: allTemplates) {
+      LogTemplate template = shardTemplate.template;
+      List<MergedTemplate> group = mergedBySize.get(template.tokenCount());
+      if (group == null) {
+        group = new ArrayList<>();
+        mergedBySize.put(template.tokenCount(), group);
+      }
+
+      /*
+       * Best agreement first, then the merged template with more constants
+       */
+      MergedTemplate target = null;
+      double targetAgreement = 0;
+      for (MergedTemplate merged: group) {
+        if (!merged.accepts(shardTemplate)) {
+          continue;
+        }
+        double agreement = merged.agreement(template);
+        if (agreement >= agreementThreshold &&
+            (target == null || agreement > targetAgreement ||
+             (agreement == targetAgreement && merged.constantCount > target.constantCount))) {
+          target = merged;
+          targetAgreement = agreement;
+        }
+      }
+      if (target == null) {
+        group.add(new MergedTemplate(shardTemplate));
+      } else {
+        target.fold(shardTemplate);
+      }
+    }
+
+    List<LogTemplate> mergedTemplates = new ArrayList<>();
+    for (List<MergedTemplate> group: mergedBySize.values()) {
+      Map<List<String>, MergedTemplate> byConstants = new LinkedHashMap<>();
+      for (MergedTemplate merged: group) {
+        List<String> constants = Arrays.asList(merged.constants.clone());
+        MergedTemplate same = byConstants.get(constants);
+        if (same == null) {
+          byConstants.put(constants, merged);
+        } else {
+          same.combine(merged);
+        }
+      }
+      List<LogTemplate> groupTemplates = new ArrayList<>(byConstants.size());
+      for (MergedTemplate merged: byConstants.values()) {
+        groupTemplates.add(merged.toTemplate());
+      }
+      Collections.sort(groupTemplates, MOST_GENERAL_FIRST);
+      mergedTemplates.addAll(groupTemplates);
+    }
+    return mergedTemplates;
+
+  }
+
+
+  /**
+   * Tag the templates of one shard with the positions the shard split on: a position
+   * where the template has a constant, and another template of the shard differs from
+   * it by its constant there only
+   */
+  private static List<ShardTemplate> splitPositions(Collection<LogTemplate> templates, int shard) {
+
+    /*
+     * #templates of each token list with one constant position blanked out
+     */
+    Map<List<String>, Integer> blankedCounts = new HashMap<>();
+    for (LogTemplate template: templates) {
+      for (int i = 0; i < template.tokenCount(); i++) {
+        if (template.constant(i) != null) {
+          List<String> blanked = blank(template, i);
+          Integer count = blankedCounts.get(blanked);
+          blankedCounts.put(blanked, (count == null) ? 1 : count + 1);
+        }
+      }
+    }
+
+    List<ShardTemplate> shardTemplates = new ArrayList<>(templates.size());
+    for (LogTemplate template: templates) {
+      BitSet splitPositions = new BitSet();
+      for (int i = 0; i < template.tokenCount(); i++) {
+        if (template.constant(i) != null && blankedCounts.get(blank(template, i)) > 1) {
+          splitPositions.set(i);
+        }
+      }
+      shardTemplates.add(new ShardTemplate(template, shard, splitPositions));
+    }
+    return shardTemplates;
+
+  }
+
+  /**
+   * The tokens of a template, the position itself marked apart from the constants and
+   * the wildcards (null)
+   */
+  private static List<String> blank(LogTemplate template, int position) {
+    List<String> tokens = new ArrayList<>(template.tokenCount() + 1);
+    for (int i = 0; i < template.tokenCount(); i++) {
+      tokens.add((i == position) ? null : template.constant(i));
+    }
+    tokens.add(Integer.toString(position));
+    return tokens;
+  }
+
+
+  /**
+   * Fewer constants first, then higher support; the text breaks the ties so the result
+   * does not depend on the order of the shards
+   */
+  private static final Comparator<LogTemplate> MOST_GENERAL_FIRST = new Comparator<LogTemplate>() {
+    @Override
+    public int compare(LogTemplate t1, LogTemplate t2) {
+      int diff = Integer.compare(t1.constantCount(), t2.constantCount());
+      if (diff == 0) {
+        diff = Integer.compare(t2.getSupport(), t1.getSupport());
+      }
+      if (diff == 0) {
+        diff = t1.toString().compareTo(t2.toString());
+      }
+      return diff;
+    }
+  };
+
+
+  /**
+   * A template of a shard, with the positions its shard split on
+   */
+  private static final class ShardTemplate {
+
+    private final LogTemplate template;
+    private final int shard;
+    private final BitSet splitPositions;
+
+    ShardTemplate(LogTemplate template, int shard, BitSet splitPositions) {
+      this.template = template;
+      this.shard = shard;
+      this.splitPositions = splitPositions;
+    }
+
+  }
+
+
+  /**
+   * A template being merged, with its per-position statistics
+   */
+  private static final class MergedTemplate {
+
+    /**
+     * Support of each constant folded at a position
+     */
+    private final List<Map<String, Long>> constantSupports;
+
+    /**
+     * Summed #distinct tokens of the folded templates with a wildcard at a position
+     */
+    private final long[] wildcardCardinalities;
+
+    /**
+     * Current constant of each position, null for a wildcard
+     */
+    private final String[] constants;
+    private int constantCount;
+    private long support;
+
+    /**
+     * Shards of the folded templates, and the positions they split on
+     */
+    private final BitSet shards = new BitSet();
+    private final BitSet splitPositions = new BitSet();
+
+    MergedTemplate(ShardTemplate shardTemplate) {
+      int tokenCount = shardTemplate.template.tokenCount();
+      this.constantSupports = new ArrayList<>(tokenCount);
+      for (int i = 0; i < tokenCount; i++) {
+        this.constantSupports.add(new HashMap<String, Long>(2));
+      }
+      this.wildcardCardinalities = new long[tokenCount];
+      this.constants = new String[tokenCount];
+      fold(shardTemplate);
+    }
+
+    /**
+     * Check that a template comes from another shard, and that their constants do not
+     * disagree at a position split on by the shards of either
+     */
+    boolean accepts(ShardTemplate shardTemplate) {
+      if (this.shards.get(shardTemplate.shard)) {
+        return false;
+      }
+      LogTemplate template = shardTemplate.template;
+      for (int i = 0; i < this.constants.length; i++) {
+        if ((this.splitPositions.get(i) || shardTemplate.splitPositions.get(i)) &&
+            template.constant(i) != null && !this.constantSupports.get(i).containsKey(template.constant(i))) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    /**
+     * #positions where both templates have the same constant over the #positions where
+     * either has one, 1 when neither has a constant
+     */
+    double agreement(LogTemplate template) {
+      int same = 0;
+      int either = 0;
+      for (int i = 0; i < this.constants.length; i++) {
+        String constant = template.constant(i);
+        if (this.constants[i] != null || constant != null) {
+          either ++;
+          if (this.constants[i] != null && this.constants[i].equals(constant)) {
+            same ++;
+          }
+        }
+      }
+      return (either == 0) ? 1.0 : (double)same / either;
+    }
+
+    /**
+     * Add the statistics of a template and recompute the constant positions
+     */
+    void fold(ShardTemplate shardTemplate) {
+      LogTemplate template = shardTemplate.template;
+      for (int i = 0; i < this.constants.length; i++) {
+        String constant = template.constant(i);
+        if (constant != null) {
+          addConstant(i, constant, template.getSupport());
+        } else {
+          this.wildcardCardinalities[i] += template.cardinality(i);
+        }
+      }
+      this.support += template.getSupport();
+      this.shards.set(shardTemplate.shard);
+      this.splitPositions.or(shardTemplate.splitPositions);
+      updateConstants();
+    }
+
+    /**
+     * Add the statistics of another merged template with the same constants
+     */
+    void combine(MergedTemplate other) {
+      for (int i = 0; i < this.constants.length; i++) {
+        for (Map.Entry<String, Long> entry: other.constantSupports.get(i).entrySet()) {
+          addConstant(i, entry.getKey(), entry.getValue());
+        }
+        this.wildcardCardinalities[i] += other.wildcardCardinalities[i];
+      }
+      this.support += other.support;
+      this.shards.or(other.shards);
+      this.splitPositions.or(other.splitPositions);
+      updateConstants();
+    }
+
+    private void addConstant(int position, String constant, long constantSupport) {
+      Map<String, Long> supports = this.constantSupports.get(position);
+      Long previous = supports.get(constant);
+      supports.put(constant, ((previous == null) ? 0L : previous) + constantSupport);
+    }
+
+    /**
+     * A position is a constant if all the folded templates have the same constant there
+     */
+    private void updateConstants() {
+      this.constantCount = 0;
+      for (int i = 0; i < this.constants.length; i++) {
+        Map<String, Long> supports = this.constantSupports.get(i);
+        if (supports.size() == 1 && this.wildcardCardinalities[i] == 0) {
+          this.constants[i] = supports.keySet().iterator().next();
+          this.constantCount ++;
+        } else {
+          this.constants[i] = null;
+        }
+      }
+    }
+
+    /**
+     * The union of the distinct tokens is bounded by the #distinct constants plus the
+     * #distinct tokens of the wildcards, and by the support
+     */
+    LogTemplate toTemplate() {
+      int[] tempCardinalities = new int[this.constants.length];
+      for (int i = 0; i < this.constants.length; i++) {
+        long cardinality = this.constantSupports.get(i).size() + this.wildcardCardinalities[i];
+        tempCardinalities[i] = (int)Math.min(cardinality, Math.min(this.support, Integer.MAX_VALUE));
+      }
+      return new LogTemplate(this.constants, (int)Math.min(this.support, Integer.MAX_VALUE), tempCardinalities);
+    }
+
+  }
+
+}
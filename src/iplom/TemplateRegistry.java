@@ -0,0 +1,114 @@
+/**
+ * Class: TemplateRegistry
+ *
+ * Shared registry of the known templates, queried by many threads while new
+ * templates are added.
+ *
+ * The templates are held in an immutable TemplateIndex snapshot behind a volatile
+ * reference: a reader takes the current snapshot and matches against it without
+ * any lock. A writer copies the templates, compiles a new snapshot and publishes
+ * it with a compare-and-set, retrying if another writer published first.
+ *
+ * Templates are only appended, so the ID of a template stays the same in every
+ * later snapshot.
+ *
+ * Initially Created: 2026-10-16
+ *
+ */
+
+package iplom;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
+
+public final class TemplateRegistry {
+
+  private final AtomicReference<TemplateIndex> snapshot;
+  private final DelimiterTokenizer tokenizer;
+
+
+  /**
+   * @param
+   * Collection<LogTemplate> templates: initial templates, e.g. from IPLoM.dicoverLogTemplate
+   * DelimiterTokenizer tokenizer: the tokenizer the templates were mined with
+   */
+  public TemplateRegistry(Collection<LogTemplate> templates, DelimiterTokenizer tokenizer) {
+    this.tokenizer = tokenizer;
+    this.snapshot = new AtomicReference<>(new TemplateIndex(distinct(templates), tokenizer));
+  }
+
+
+  /**
+   * Get the current snapshot
+   * Matching several logs against one snapshot gives consistent template IDs.
+   */
+  public TemplateIndex snapshot() {
+    return this.snapshot.get();
+  }
+
+  /**
+   * Number of registered templates
+   */
+  public int size() {
+    return this.snapshot.get().size();
+  }
+
+
+  /**
+   * Find the template of a log message in the current snapshot
+   * @param
+   * CharSequence message: the log, without time-stamp
+   * DelimiterTokenizer.Spans spans: reusable token spans, owned by the calling thread
+   * @return the template, or null if none matches
+   */
+  public LogTemplate match(CharSequence message, DelimiterTokenizer.Spans spans) {
+    TemplateIndex index = this.snapshot.get();
+    int templateId = index.match(message, spans);
+    return (templateId != TemplateIndex.NO_MATCH) ? index.template(templateId) : null;
+  }
+
+
+  /**
+   * Add templates and publish the new snapshot
+   * Templates already registered are skipped.
+   * @return the templates which were actually added
+   */
+  public List<LogTemplate> addAll(Collection<LogTemplate> newTemplates) {
+
+    while (true) {
+      TemplateIndex current = this.snapshot.get();
+      Set<LogTemplate> known = new HashSet<>(current.getTemplates());
+      List<LogTemplate> added = new ArrayList<>();
+      for (LogTemplate template: newTemplates) {
+        if (known.add(template)) {
+          added.add(template);
+        }
+      }
+      if (added.isEmpty()) {
+        return added;
+      }
+
+      List<LogTemplate> templates = new ArrayList<>(current.size() + added.size());
+      templates.addAll(current.getTemplates());
+      templates.addAll(added);
+      if (this.snapshot.compareAndSet(current, new TemplateIndex(templates, this.tokenizer))) {
+        return added;
+      }
+    }
+
+  }
+
+  /**
+   * Add one template and publish the new snapshot
+   * @return false if it was already registered
+   */
+  public boolean add(LogTemplate template) {
+    return !addAll(Collections.singletonList(template)).isEmpty();
+  }
+
+
+  private static List<LogTemplate> distinct(Collection<LogTemplate> templates) {
+    return new ArrayList<>(new LinkedHashSet<>(templates));
+  }
+
+}
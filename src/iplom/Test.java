@@ -36,6 +36,7 @@ public class Test {
     /* ------------------------- Main program  ------------------------- */
     String fileName = "/home/cliu/Documents/SC-1/temp";
     IPLoM logAnalyzer = new IPLoM(fileName);
+    logAnalyzer.setResultSink(new DebugResultSink(out));
     
     //logAnalyzer.readByLines();
     //logAnalyzer.partitionByTokenSize();
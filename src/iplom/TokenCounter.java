@@ -0,0 +1,176 @@
+/**
+ * Class: TokenCounter
+ *
+ * Counts of the token IDs seen at one token position.
+ * Primitive int key -> int count map with open addressing (linear probing),
+ * resized when half full. An update is a single probe sequence without boxing.
+ *
+ * Initially Created: 2026-10-16
+ *
+ */
+
+package iplom;
+
+import java.util.Arrays;
+
+public final class TokenCounter {
+
+  /**
+   * Marks an empty slot, token IDs are never negative
+   */
+  private static final int EMPTY = -1;
+
+  private int[] keys;
+  private int[] counts;
+  private int cardinality = 0;
+
+
+  public TokenCounter() {
+    this(8);
+  }
+
+  /**
+   * @param
+   * int expected: expected number of distinct tokens
+   */
+  public TokenCounter(int expected) {
+    int capacity = 4;
+    while (capacity < expected * 2) {
+      capacity <<= 1;
+    }
+    this.keys = new int[capacity];
+    this.counts = new int[capacity];
+    Arrays.fill(this.keys, EMPTY);
+  }
+
+
+  /**
+   * Count one more occurrence of a token
+   */
+  public void add(int token) {
+    add(token, 1);
+  }
+
+  /**
+   * Count occurrences of a token
+   */
+  public void add(int token, int count) {
+    int slot = slot(token);
+    if (this.keys[slot] == EMPTY) {
+      if ((this.cardinality + 1) * 2 > this.keys.length) {
+        resize();
+        slot = slot(token);
+      }
+      this.keys[slot] = token;
+      this.cardinality ++;
+    }
+    this.counts[slot] += count;
+  }
+
+  /**
+   * Add all the counts of another counter
+   */
+  public void addAll(TokenCounter other) {
+    int[] otherKeys = other.keys;
+    for (int i = 0; i < otherKeys.length; i++) {
+      if (otherKeys[i] != EMPTY) {
+        add(otherKeys[i], other.counts[i]);
+      }
+    }
+  }
+
+  /**
+   * Occurrences of a token, 0 if it has not been seen
+   */
+  public int count(int token) {
+    int slot = slot(token);
+    return (this.keys[slot] == EMPTY) ? 0 : this.counts[slot];
+  }
+
+  public boolean contains(int token) {
+    return this.keys[slot(token)] != EMPTY;
+  }
+
+  /**
+   * Number of distinct tokens
+   */
+  public int cardinality() {
+    return this.cardinality;
+  }
+
+  /**
+   * Sum of all the counts
+   */
+  public long total() {
+    long total = 0;
+    for (int i = 0; i < this.keys.length; i++) {
+      if (this.keys[i] != EMPTY) {
+        total += this.counts[i];
+      }
+    }
+    return total;
+  }
+
+  /**
+   * Check whether exactly one distinct token has been seen, i.e. the position is a constant
+   */
+  public boolean isSingleValued() {
+    return this.cardinality == 1;
+  }
+
+  /**
+   * The distinct tokens, in no particular order
+   */
+  public int[] tokens() {
+    int[] tokens = new int[this.cardinality];
+    int i = 0;
+    for (int key: this.keys) {
+      if (key != EMPTY) {
+        tokens[i++] = key;
+      }
+    }
+    return tokens;
+  }
+
+
+  /**
+   * Slot holding the token, or the empty slot where it would be inserted
+   */
+  private int slot(int token) {
+    int mask = this.keys.length - 1;
+    int hash = token * 0x9E3779B9;
+    int slot = (hash ^ (hash >>> 16)) & mask;
+    int key;
+    while ((key = this.keys[slot]) != EMPTY && key != token) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  private void resize() {
+    int[] oldKeys = this.keys;
+    int[] oldCounts = this.counts;
+    this.keys = new int[oldKeys.length * 2];
+    this.counts = new int[oldKeys.length * 2];
+    Arrays.fill(this.keys, EMPTY);
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldKeys[i] != EMPTY) {
+        int slot = slot(oldKeys[i]);
+        this.keys[slot] = oldKeys[i];
+        this.counts[slot] = oldCounts[i];
+      }
+    }
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder builder = new StringBuilder("{");
+    for (int i = 0; i < this.keys.length; i++) {
+      if (this.keys[i] != EMPTY) {
+        builder.append(builder.length() > 1 ? ", " : "").append(this.keys[i]).append('=').append(this.counts[i]);
+      }
+    }
+    return builder.append('}').toString();
+  }
+
+}
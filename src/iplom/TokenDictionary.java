@@ -0,0 +1,215 @@
+/**
+ * Class: TokenDictionary
+ *
+ * Global dictionary of the tokens seen while mining.
+ * Every distinct token is interned once and gets a dense int ID (0, 1, 2, ...),
+ * so that the log messages can be carried as int[] rows and compared by ID.
+ * The strings are only decoded again when templates are printed.
+ *
+ * Interning is thread-safe; looking up an ID never blocks.
+ *
+ * Initially Created: 2026-10-16
+ *
+ */
+
+package iplom;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class TokenDictionary {
+
+  /**
+   * Returned by lookup() for a token which has never been interned
+   */
+  public static final int UNKNOWN = -1;
+
+  /**
+   * Token -> ID
+   */
+  private final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<>();
+
+  /**
+   * ID -> token
+   * Slots are written before the ID is published in ids, so any ID obtained from
+   * this dictionary can be decoded from any thread.
+   */
+  private volatile String[] tokens = new String[1024];
+
+  /**
+   * Number of interned tokens, guarded by this
+   */
+  private int size = 0;
+
+
+  /**
+   * Get the ID of a token, adding it to the dictionary if it is new
+   */
+  public int intern(String token) {
+    Integer id = this.ids.get(token);
+    return (id != null) ? id : add(token);
+  }
+
+  /**
+   * Get the ID of a token without adding it
+   * @return the ID, or UNKNOWN
+   */
+  public int lookup(String token) {
+    Integer id = this.ids.get(token);
+    return (id != null) ? id : UNKNOWN;
+  }
+
+  /**
+   * Decode an ID back into its token
+   */
+  public String token(int id) {
+    return this.tokens[id];
+  }
+
+  /**
+   * Number of distinct tokens
+   */
+  public synchronized int size() {
+    return this.size;
+  }
+
+
+  /**
+   * Forget every token, the IDs start again from 0
+   * IDs handed out before, and the interners created before, must not be used anymore.
+   */
+  synchronized void clear() {
+    this.ids.clear();
+    this.tokens = new String[1024];
+    this.size = 0;
+  }
+
+
+  /**
+   * Create a span interner in front of this dictionary, for use by a single thread
+   */
+  public Interner newInterner() {
+    return new Interner();
+  }
+
+
+  private synchronized int add(String token) {
+    Integer id = this.ids.get(token);
+    if (id != null) {
+      return id;
+    }
+    String[] tempTokens = this.tokens;
+    if (this.size == tempTokens.length) {
+      tempTokens = Arrays.copyOf(tempTokens, tempTokens.length * 2);
+    }
+    tempTokens[this.size] = token;
+    this.tokens = tempTokens;
+    this.ids.put(token, this.size);
+    return this.size ++;
+  }
+
+
+  /**
+   * Single-threaded cache in front of the dictionary, keyed by char spans
+   * A token already seen by this interner is resolved from its span without creating
+   * a String; the substring is only built the first time a token is met.
+   */
+  public final class Interner {
+
+    /**
+     * The cache is dropped when it grows beyond this size
+     */
+    private static final int MAX_CACHED = 1 << 20;
+
+    private String[] keys = new String[1024];
+    private int[] hashes = new int[1024];
+    private int[] values = new int[1024];
+    private int cached = 0;
+
+    private Interner() { }
+
+    /**
+     * Get the ID of the token str[offset, offset + length), adding it to the dictionary if it is new
+     */
+    public int intern(CharSequence str, int offset, int length) {
+      int hash = hash(str, offset, length);
+      int mask = this.keys.length - 1;
+      int slot = hash & mask;
+      String key;
+      while ((key = this.keys[slot]) != null) {
+        if (this.hashes[slot] == hash && matches(key, str, offset, length)) {
+          return this.values[slot];
+        }
+        slot = (slot + 1) & mask;
+      }
+
+      String token = str.subSequence(offset, offset + length).toString();
+      int id = TokenDictionary.this.intern(token);
+      if (this.cached >= MAX_CACHED) {
+        clear();
+      } else if ((this.cached + 1) * 2 > this.keys.length) {
+        resize();
+      }
+      insert(token, hash, id);
+      return id;
+    }
+
+    private void insert(String token, int hash, int id) {
+      int mask = this.keys.length - 1;
+      int slot = hash & mask;
+      while (this.keys[slot] != null) {
+        slot = (slot + 1) & mask;
+      }
+      this.keys[slot] = token;
+      this.hashes[slot] = hash;
+      this.values[slot] = id;
+      this.cached ++;
+    }
+
+    private void resize() {
+      String[] oldKeys = this.keys;
+      int[] oldHashes = this.hashes;
+      int[] oldValues = this.values;
+      this.keys = new String[oldKeys.length * 2];
+      this.hashes = new int[oldKeys.length * 2];
+      this.values = new int[oldKeys.length * 2];
+      this.cached = 0;
+      for (int i = 0; i < oldKeys.length; i++) {
+        if (oldKeys[i] != null) {
+          insert(oldKeys[i], oldHashes[i], oldValues[i]);
+        }
+      }
+    }
+
+    private void clear() {
+      Arrays.fill(this.keys, null);
+      this.cached = 0;
+    }
+
+  }
+
+
+  /**
+   * String.hashCode() of a span, with the high bits spread over the low ones
+   */
+  static int hash(CharSequence str, int offset, int length) {
+    int h = 0;
+    for (int i = offset, end = offset + length; i < end; i++) {
+      h = 31 * h + str.charAt(i);
+    }
+    return h ^ (h >>> 16);
+  }
+
+  static boolean matches(String key, CharSequence str, int offset, int length) {
+    if (key.length() != length) {
+      return false;
+    }
+    for (int i = 0; i < length; i++) {
+      if (key.charAt(i) != str.charAt(offset + i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+}